@@ -0,0 +1,208 @@
+package configs.cloud.client;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the work done by a CloudConfigClient. Obtain it with
+ * {@link CloudConfigClient#getMetrics()}.
+ *
+ * @author Pushkar
+ *
+ */
+public class ClientMetrics {
+
+	private final LongAdder coalescedRequests = new LongAdder();
+	private final LongAdder notModifiedListings = new LongAdder();
+	private final LongAdder responseBytesOnWire = new LongAdder();
+	private final LongAdder responseBytesDecoded = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder circuitOpenRejections = new LongAdder();
+	private final LongAdder staleResponses = new LongAdder();
+	private final LongAdder hedgedRequests = new LongAdder();
+	private final LongAdder deadlinesExceeded = new LongAdder();
+	private final LongAdder backgroundRefreshes = new LongAdder();
+	private final LongAdder syncs = new LongAdder();
+	private final LongAdder syncedChanges = new LongAdder();
+
+	/**
+	 * Number of server calls saved because an identical call was already in
+	 * flight and its result was shared.
+	 *
+	 * @return long Coalesced request count
+	 */
+	public long getCoalescedRequests() {
+		return coalescedRequests.sum();
+	}
+
+	public void recordCoalescedRequest() {
+		coalescedRequests.increment();
+	}
+
+	/**
+	 * Number of dataset listings the server confirmed unchanged (304), which
+	 * were served again without downloading them.
+	 *
+	 * @return long Not modified listing count
+	 */
+	public long getNotModifiedListings() {
+		return notModifiedListings.sum();
+	}
+
+	public void recordNotModifiedListing() {
+		notModifiedListings.increment();
+	}
+
+	/**
+	 * Number of response body bytes received from the server, compressed if
+	 * the server encoded them.
+	 *
+	 * @return long Bytes received
+	 */
+	public long getResponseBytesOnWire() {
+		return responseBytesOnWire.sum();
+	}
+
+	/**
+	 * Number of response body bytes after decompression, i.e. the JSON
+	 * actually parsed. Compared with {@link #getResponseBytesOnWire()} it
+	 * gives the saving of compression.
+	 *
+	 * @return long Decoded bytes
+	 */
+	public long getResponseBytesDecoded() {
+		return responseBytesDecoded.sum();
+	}
+
+	public void recordResponseBytes(long onWire, long decoded) {
+		responseBytesOnWire.add(onWire);
+		responseBytesDecoded.add(decoded);
+	}
+
+	/**
+	 * Number of server calls retried after a connection error or a 5xx
+	 * status.
+	 *
+	 * @return long Retry count
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	public void recordRetry() {
+		retries.increment();
+	}
+
+	/**
+	 * Number of server calls refused because the circuit of their endpoint
+	 * was open.
+	 *
+	 * @return long Rejected call count
+	 */
+	public long getCircuitOpenRejections() {
+		return circuitOpenRejections.sum();
+	}
+
+	public void recordCircuitOpenRejection() {
+		circuitOpenRejections.increment();
+	}
+
+	/**
+	 * Number of lookups answered with the last known configs because the
+	 * server could not be called.
+	 *
+	 * @return long Stale response count
+	 */
+	public long getStaleResponses() {
+		return staleResponses.sum();
+	}
+
+	public void recordStaleResponse() {
+		staleResponses.increment();
+	}
+
+	/**
+	 * Number of second requests sent because the first one had not answered
+	 * within the hedge delay.
+	 *
+	 * @return long Hedged request count
+	 */
+	public long getHedgedRequests() {
+		return hedgedRequests.sum();
+	}
+
+	public void recordHedgedRequest() {
+		hedgedRequests.increment();
+	}
+
+	/**
+	 * Number of server calls abandoned because their deadline expired.
+	 *
+	 * @return long Deadline exceeded count
+	 */
+	public long getDeadlinesExceeded() {
+		return deadlinesExceeded.sum();
+	}
+
+	public void recordDeadlineExceeded() {
+		deadlinesExceeded.increment();
+	}
+
+	/**
+	 * Number of configs reloaded in the background, ahead of their expiry or
+	 * while their stale value was served.
+	 *
+	 * @return long Background refresh count
+	 */
+	public long getBackgroundRefreshes() {
+		return backgroundRefreshes.sum();
+	}
+
+	public void recordBackgroundRefresh() {
+		backgroundRefreshes.increment();
+	}
+
+	/**
+	 * Number of listings polled by the background sync.
+	 *
+	 * @return long Sync count
+	 */
+	public long getSyncs() {
+		return syncs.sum();
+	}
+
+	public void recordSync() {
+		syncs.increment();
+	}
+
+	/**
+	 * Number of configs added, changed or removed in the cache by the
+	 * background sync.
+	 *
+	 * @return long Synced change count
+	 */
+	public long getSyncedChanges() {
+		return syncedChanges.sum();
+	}
+
+	public void recordSyncedChanges(int changes) {
+		syncedChanges.add(changes);
+	}
+
+	@Override
+	public String toString() {
+		return "ClientMetrics{" +
+				"coalescedRequests=" + getCoalescedRequests() +
+				", notModifiedListings=" + getNotModifiedListings() +
+				", responseBytesOnWire=" + getResponseBytesOnWire() +
+				", responseBytesDecoded=" + getResponseBytesDecoded() +
+				", retries=" + getRetries() +
+				", circuitOpenRejections=" + getCircuitOpenRejections() +
+				", staleResponses=" + getStaleResponses() +
+				", hedgedRequests=" + getHedgedRequests() +
+				", deadlinesExceeded=" + getDeadlinesExceeded() +
+				", backgroundRefreshes=" + getBackgroundRefreshes() +
+				", syncs=" + getSyncs() +
+				", syncedChanges=" + getSyncedChanges() +
+				'}';
+	}
+}
@@ -1,9 +1,35 @@
 package configs.cloud.client;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.ws.rs.core.MultivaluedMap;
 import org.apache.log4j.Logger;
 import com.sun.jersey.core.util.MultivaluedMapImpl;
@@ -12,11 +38,27 @@ import configs.cloud.client.entity.Dataset;
 import configs.cloud.client.entity.Env;
 import configs.cloud.client.entity.EnvWrapper;
 import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.enums.ChangeType;
+import configs.cloud.client.enums.RefreshMode;
+import configs.cloud.client.exceptions.CircuitOpenException;
 import configs.cloud.client.exceptions.ContextNotFoundException;
+import configs.cloud.client.exceptions.DeadlineExceededException;
 import configs.cloud.client.exceptions.NotFoundException;
 import configs.cloud.client.factory.CacheFactory;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
 import configs.cloud.client.service.CacheService;
+import configs.cloud.client.service.WarmUpTarget;
+import configs.cloud.client.transport.CircuitBreaker;
+import configs.cloud.client.transport.Deadline;
+import configs.cloud.client.transport.HttpTransport;
+import configs.cloud.client.transport.LatencyHistogram;
+import configs.cloud.client.transport.TransportConfig;
 import configs.cloud.client.util.ClientUtilities;
+import configs.cloud.client.util.ConfigListing;
+import configs.cloud.client.util.NamedThreadFactory;
+import configs.cloud.client.util.SingleFlight;
+import configs.cloud.client.util.SnapshotStore;
 
 /**
  * 
@@ -27,6 +69,13 @@ import configs.cloud.client.util.ClientUtilities;
 public class CloudConfigClient {
 
 	private static final Logger logger = Logger.getLogger(CloudConfigClient.class);
+	private static final String ENV_KEY_SEPARATOR = ":";
+	// number of missing keys from which listing the environment is cheaper than a call per key
+	private static final int ENV_FETCH_THRESHOLD = 8;
+	// sync period started by the first watch when the sync is not running
+	private static final int DEFAULT_WATCH_PERIOD_SECONDS = 5;
+	// calls queued for each thread of the async executor, past them async calls are rejected
+	private static final int ASYNC_QUEUE_PER_THREAD = 64;
 
 	private String apiKey;
 	private String url;
@@ -35,6 +84,33 @@ public class CloudConfigClient {
 	private Integer currentDataset = 0;
 	private CacheService cacheService;
 	private CacheProvider cacheProvider = CacheProvider.EHCACHE;
+	private CacheConfig cacheConfig;
+	private final ClientMetrics metrics = new ClientMetrics();
+	private final SingleFlight<String, Config> configFlights = new SingleFlight<>(metrics);
+	private final SingleFlight<String, List<Config>> configListFlights = new SingleFlight<>(metrics);
+	private final ConcurrentMap<String, ConfigListing> listings = new ConcurrentHashMap<>();
+	private HttpTransport transport;
+	private int asyncThreads;
+	private Executor asyncExecutor;
+	private ExecutorService ownedAsyncExecutor;
+	private int negativeCacheTtlSeconds = 30;
+	private SnapshotStore snapshotStore;
+	// latest listing of each snapshot waiting to be written, and the lock writing or deleting it
+	private final ConcurrentMap<String, ConfigListing> pendingSnapshots = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Object> snapshotLocks = new ConcurrentHashMap<>();
+	private double refreshAheadFactor = 0;
+	private int staleWhileRevalidateSeconds = 0;
+	// load time of the cached configs, kept when refreshing ahead or serving stale configs
+	private final ConcurrentMap<String, LoadedConfig> loadedConfigs = new ConcurrentHashMap<>();
+	// false when the cache keeps configs off heap : listings keep their validators, loads their time only
+	private boolean configsOnHeap = true;
+	private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+	// listings polled by the background sync, by listing key
+	private final ConcurrentMap<String, SyncedListing> syncedListings = new ConcurrentHashMap<>();
+	private ScheduledExecutorService syncExecutor;
+	private long syncPeriodMillis;
+	private final List<ConfigWatch> watches = new CopyOnWriteArrayList<>();
+	private CompletableFuture<WarmUpResult> readiness;
 
 	/**
 	 * 
@@ -45,26 +121,50 @@ public class CloudConfigClient {
 	 * @param cprovider CacheProvider name - Choose from EHCACHE | HAZELCAST
 	 */
 	public CloudConfigClient(String apiKey, String url, boolean isCached, CacheProvider cprovider) {
+		this(apiKey, url, isCached, 0, null, cprovider, new TransportConfig());
+	}
 
-		super();
-		logger.debug("Initializing cloud config client...");
-
-		this.apiKey = apiKey;
-		this.url = url;
-		this.isCached = isCached;
-		this.cacheProvider = cprovider;
-		if (this.isCached) {
-
-			if (this.cacheProvider == null) {
-				this.cacheProvider = CacheProvider.EHCACHE;
-			}
+	/**
+	 * 
+	 * @param apiKey Api Key
+	 * @param url Api endpoint
+	 * @param isCached if cache enabled or disabled. <br>
+	 * 					By default disabled
+	 * @param cprovider CacheProvider name - Choose from EHCACHE | HAZELCAST
+	 * @param transportConfig Connection pool and timeout settings of the http transport
+	 */
+	public CloudConfigClient(String apiKey, String url, boolean isCached, CacheProvider cprovider,
+			TransportConfig transportConfig) {
+		this(apiKey, url, isCached, 0, null, cprovider, transportConfig);
+	}
 
-			cacheService = CacheFactory.getCacheService(cacheProvider);
-			logger.debug("Cache is enabled. Creating Cache cache manager..");
-			logger.debug("Cache cache manager created.");
-		}
+	/**
+	 * 
+	 * @param apiKey Api Key
+	 * @param url  Api endpoint
+	 * @param isCached if cache enabled or disabled. By default disabled
+	 * @param dataset  Current dataset
+	 * @param environment Current environment
+	 * @param cprovider CacheProvider name - Choose from EHCACHE | HAZELCAST          
+	 */
+	public CloudConfigClient(String apiKey, String url, boolean isCached, Integer dataset, String environment,
+			CacheProvider cprovider) {
+		this(apiKey, url, isCached, dataset, environment, cprovider, new TransportConfig());
+	}
 
-		logger.debug("Cloud config client initialized successfully.");
+	/**
+	 * 
+	 * @param apiKey Api Key
+	 * @param url  Api endpoint
+	 * @param isCached if cache enabled or disabled. By default disabled
+	 * @param dataset  Current dataset
+	 * @param environment Current environment
+	 * @param cprovider CacheProvider name - Choose from EHCACHE | HAZELCAST          
+	 * @param transportConfig Connection pool and timeout settings of the http transport
+	 */
+	public CloudConfigClient(String apiKey, String url, boolean isCached, Integer dataset, String environment,
+			CacheProvider cprovider, TransportConfig transportConfig) {
+		this(apiKey, url, isCached, dataset, environment, cprovider, transportConfig, new CacheConfig());
 	}
 
 	/**
@@ -75,9 +175,11 @@ public class CloudConfigClient {
 	 * @param dataset  Current dataset
 	 * @param environment Current environment
 	 * @param cprovider CacheProvider name - Choose from EHCACHE | HAZELCAST          
+	 * @param transportConfig Connection pool and timeout settings of the http transport
+	 * @param cacheConfig Size, expiry and refresh policies of the cache, by dataset
 	 */
 	public CloudConfigClient(String apiKey, String url, boolean isCached, Integer dataset, String environment,
-			CacheProvider cprovider) {
+			CacheProvider cprovider, TransportConfig transportConfig, CacheConfig cacheConfig) {
 
 		super();
 		logger.debug("Initializing cloud config client...");
@@ -88,20 +190,296 @@ public class CloudConfigClient {
 		this.currentDataset = dataset;
 		this.currentEnvironment = environment;
 		this.cacheProvider = cprovider;
+		this.cacheConfig = (cacheConfig != null) ? cacheConfig : new CacheConfig();
 		if (this.isCached) {
 
 			if (this.cacheProvider == null) {
 				this.cacheProvider = CacheProvider.EHCACHE;
 			}
 
-			cacheService = CacheFactory.getCacheService(cacheProvider);
+			cacheService = CacheFactory.getCacheService(cacheProvider, this.cacheConfig);
+			configsOnHeap = (cacheProvider != CacheProvider.OFFHEAP);
 			logger.debug("Cache is enabled. Creating cache manager..");
 			logger.debug("Cache manager created.");
 		}
 
+		if (transportConfig == null) {
+			transportConfig = new TransportConfig();
+		}
+		transport = new HttpTransport(transportConfig, metrics);
+		asyncThreads = transportConfig.getMaxConnections();
+
+		if (this.cacheConfig.getSnapshotDirectory() != null) {
+			try {
+				setSnapshotDirectory(this.cacheConfig.getSnapshotDirectory());
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to open the snapshot directory : " + e.getMessage(), e);
+			}
+		}
+
+		// after the snapshots, unchanged listings are only revalidated
+		if (this.isCached && !this.cacheConfig.getWarmUps().isEmpty()) {
+			readiness = warmUpAsync(this.cacheConfig.getWarmUps(), this.cacheConfig.getWarmUpParallelism());
+			if (!this.cacheConfig.isWarmUpInBackground()) {
+				awaitWarmUp(this.cacheConfig.getWarmUpTimeoutMillis());
+			}
+		} else {
+			readiness = CompletableFuture.completedFuture(new WarmUpResult(0, new HashMap<>(), 0));
+		}
+
 		logger.debug("Cloud config client initialized successfully.");
 	}
 
+	/**
+	 * Returns the warm-up of the cache run when the client was built, as
+	 * set in its {@link CacheConfig}. It completes, never exceptionally, once
+	 * every target is loaded or failed; right away when there is none.
+	 * 
+	 * @return {@link CompletableFuture}&lt;{@link WarmUpResult}&gt; Warm-up outcome
+	 */
+	public CompletableFuture<WarmUpResult> getReadiness() {
+		return readiness;
+	}
+
+	/**
+	 * @return boolean true once the warm-up run when the client was built is over
+	 */
+	public boolean isReady() {
+		return readiness.isDone();
+	}
+
+	/**
+	 * Loads datasets or environments into the cache, several at a time, and
+	 * waits until they are all loaded. A target without key prefixes is
+	 * listed like getConfigs, and kept up to date by the background sync;
+	 * with prefixes, only the matching configs of the listing are cached.
+	 * Targets failing to load are counted and logged, not thrown. Requires
+	 * caching to be enabled.
+	 * 
+	 * @param targets Datasets or environments to load
+	 * @param parallelism Maximum number of targets loaded at the same time
+	 * @return WarmUpResult Duration and number of configs cached
+	 * @throws Exception Exception
+	 */
+	public WarmUpResult warmUp(Collection<WarmUpTarget> targets, int parallelism) throws Exception {
+		return Deadline.await(warmUpAsync(targets, parallelism));
+	}
+
+	/**
+	 * Asynchronous variant of {@link #warmUp(Collection, int)}, run on the
+	 * async executor.
+	 * 
+	 * @param targets Datasets or environments to load
+	 * @param parallelism Maximum number of targets loaded at the same time
+	 * @return {@link CompletableFuture}&lt;{@link WarmUpResult}&gt; Duration and number of configs cached
+	 */
+	public CompletableFuture<WarmUpResult> warmUpAsync(Collection<WarmUpTarget> targets, int parallelism) {
+
+		if (!isCached) {
+			throw new IllegalStateException("Warm-up requires caching to be enabled");
+		}
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Warm-up parallelism should be positive : " + parallelism);
+		}
+
+		long startedAt = System.nanoTime();
+		Queue<WarmUpTarget> pending = new ConcurrentLinkedQueue<>(targets);
+		Map<String, Integer> entries = new ConcurrentHashMap<>();
+		AtomicInteger loaded = new AtomicInteger();
+
+		// each lane loads one target after the other, bounding the calls in flight
+		int lanes = Math.max(1, Math.min(parallelism, targets.size()));
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[lanes];
+		for (int i = 0; i < lanes; i++) {
+			futures[i] = callAsync(() -> {
+				WarmUpTarget target;
+				while ((target = pending.poll()) != null) {
+					try {
+						entries.merge(target.toString(), warmUpTarget(target), Integer::sum);
+						loaded.incrementAndGet();
+					} catch (Exception e) {
+						logger.warn("Unable to warm up " + target + " : " + e.getMessage());
+					}
+				}
+				return null;
+			});
+		}
+
+		return CompletableFuture.allOf(futures).handle((done, e) -> {
+			WarmUpResult result = new WarmUpResult(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt),
+					entries, targets.size() - loaded.get());
+			logger.info("Cache warmed up : " + result);
+			return result;
+		});
+	}
+
+	/**
+	 * Releases the pooled connections held by this client, and its cache,
+	 * e.g. the Hazelcast member or client it started. The client cannot be
+	 * used once closed.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (ownedAsyncExecutor != null) {
+				ownedAsyncExecutor.shutdown();
+			}
+		}
+		stopSync();
+		transport.close();
+		if (cacheService != null) {
+			cacheService.shutdown();
+		}
+	}
+
+	/**
+	 * Starts polling the server for changes of the datasets and environments
+	 * this client has loaded. Each poll is a conditional listing request; when
+	 * the listing changed, only the configs whose version changed, and the
+	 * added and removed ones, are applied to the cache. Polls are spread
+	 * randomly over 75% to 125% of the period so that a fleet of clients does
+	 * not poll in step. Requires caching to be enabled.
+	 * 
+	 * @param period Average time between two polls of a listing
+	 * @param unit Unit of period
+	 */
+	public synchronized void startSync(long period, TimeUnit unit) {
+		if (!isCached) {
+			throw new IllegalStateException("Sync requires caching to be enabled.");
+		}
+		stopSync();
+		syncPeriodMillis = unit.toMillis(period);
+		syncExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("configs-cloud-sync"));
+		scheduleSync(syncExecutor);
+	}
+
+	/**
+	 * Stops polling the server for changes.
+	 */
+	public synchronized void stopSync() {
+		if (syncExecutor != null) {
+			syncExecutor.shutdownNow();
+			syncExecutor = null;
+		}
+	}
+
+	/**
+	 * Watches a config, or the configs of a prefix such as "myapp.module.*",
+	 * of a dataset and environment. Changes are found by the background sync,
+	 * started with a period of 5 seconds when not running, applied to the
+	 * cache and delivered in one batch per poll. A single thread serves all
+	 * watches. Requires caching to be enabled.
+	 * 
+	 * @param datasetId Dataset Id
+	 * @param env Environment Short name, null for all environments of the dataset
+	 * @param keyOrPrefix Key, or prefix ending with *, null for all keys
+	 * @param listener Listener of the changes
+	 * @return ConfigWatch Watch, to cancel once no longer needed
+	 * @throws Exception Thrown when the configs cannot be loaded
+	 */
+	public ConfigWatch watch(Integer datasetId, String env, String keyOrPrefix, ConfigChangeListener listener)
+			throws Exception {
+
+		if (!isCached) {
+			throw new IllegalStateException("Watching configs requires caching to be enabled.");
+		} else if (datasetId == 0) {
+			throw new ContextNotFoundException("Cannot identify current Dataset.");
+		}
+
+		// changes are reported from the listing known now
+		fetchConfigs(datasetId, env);
+		trackListing(datasetId, env);
+
+		ConfigWatch watch = new ConfigWatch(datasetId, env, keyOrPrefix, listener, watches);
+		watches.add(watch);
+		synchronized (this) {
+			if (syncExecutor == null) {
+				startSync(DEFAULT_WATCH_PERIOD_SECONDS, TimeUnit.SECONDS);
+			}
+		}
+		return watch;
+	}
+
+	/**
+	 * Returns the time since the least recently synchronized listing was
+	 * last known to match the server, i.e. the maximum age of the cached
+	 * configs with the sync running.
+	 * 
+	 * @return long Sync lag in milliseconds, 0 when no listing is synchronized
+	 */
+	public long getSyncLagMillis() {
+		long now = System.nanoTime();
+		long lag = 0;
+		for (SyncedListing synced : syncedListings.values()) {
+			lag = Math.max(lag, now - synced.syncedAt);
+		}
+		return TimeUnit.NANOSECONDS.toMillis(lag);
+	}
+
+	/**
+	 * Returns the counters of this client.
+	 * 
+	 * @return ClientMetrics Client metrics
+	 */
+	public ClientMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the circuit breaker state of each server endpoint called so
+	 * far. While a circuit is open calls to its endpoint fail fast with
+	 * {@link CircuitOpenException}, or are answered from the last known
+	 * configs when available.
+	 * 
+	 * @return {@link Map}&lt;String, State&gt; Circuit state by endpoint
+	 */
+	public Map<String, CircuitBreaker.State> getCircuitBreakerStates() {
+		return transport.getCircuitBreakerStates();
+	}
+
+	/**
+	 * Returns the latency histogram of each server endpoint called so far.
+	 * With hedging enabled, the hedge delay of an endpoint follows its
+	 * latency percentile.
+	 * 
+	 * @return {@link Map}&lt;String, LatencyHistogram&gt; Latencies by endpoint
+	 */
+	public Map<String, LatencyHistogram> getLatencyHistograms() {
+		return transport.getLatencyHistograms();
+	}
+
+	/**
+	 * Runs lookups bounded by a deadline. Every server call made by the
+	 * callable, retries, hedges and asynchronous calls included, gives up
+	 * with {@link DeadlineExceededException} once the timeout elapsed.<br>
+	 * e.g. <code>client.withDeadline(200, TimeUnit.MILLISECONDS, () -&gt; client.getConfigValue("key"))</code>
+	 * 
+	 * @param timeout Time allowed to the callable
+	 * @param unit Unit of timeout
+	 * @param call Lookups to run
+	 * @return T Result of the callable
+	 * @throws Exception Exception thrown by the callable
+	 */
+	public <T> T withDeadline(long timeout, TimeUnit unit, Callable<T> call) throws Exception {
+		return Deadline.after(timeout, unit).call(call);
+	}
+
+	/**
+	 * Sets the executor running the server calls of the *Async methods.<br>
+	 * When not set, the client uses its own pool of daemon threads, sized to
+	 * the maximum number of pooled connections, queueing at most 64 calls per
+	 * thread. Calls past that complete exceptionally with a
+	 * RejectedExecutionException instead of piling up.
+	 * 
+	 * @param executor Executor for asynchronous calls
+	 */
+	public synchronized void setAsyncExecutor(Executor executor) {
+		if (ownedAsyncExecutor != null) {
+			ownedAsyncExecutor.shutdown();
+			ownedAsyncExecutor = null;
+		}
+		this.asyncExecutor = executor;
+	}
+
 	/**
 	 * Returns Environment Short name under context
 	 * 
@@ -120,6 +498,95 @@ public class CloudConfigClient {
 		return currentDataset;
 	}
 
+	public int getNegativeCacheTtlSeconds() {
+		return negativeCacheTtlSeconds;
+	}
+
+	/**
+	 * Sets how long keys the server has no config for, and empty datasets or
+	 * environments, are remembered in the cache. Lookups of them are then
+	 * answered without calling the server. 0 disables negative caching.
+	 * Applies only when caching is enabled.
+	 * 
+	 * @param negativeCacheTtlSeconds Time to live of negative entries
+	 */
+	public void setNegativeCacheTtlSeconds(int negativeCacheTtlSeconds) {
+		this.negativeCacheTtlSeconds = negativeCacheTtlSeconds;
+	}
+
+	public double getRefreshAheadFactor() {
+		return refreshAheadFactor;
+	}
+
+	/**
+	 * Reloads cached configs in the background once they reach this fraction
+	 * of the cache time to live, e.g. 0.8, so that they are refreshed before
+	 * they expire. The lookup itself is still answered from the cache. 0
+	 * disables refresh-ahead. Applies only when caching is enabled, to the
+	 * datasets whose {@link CachePolicy} sets no refresh mode.
+	 * 
+	 * @param refreshAheadFactor Fraction of the time to live, from 0 to 1
+	 */
+	public void setRefreshAheadFactor(double refreshAheadFactor) {
+		if (refreshAheadFactor < 0 || refreshAheadFactor >= 1) {
+			throw new IllegalArgumentException("Refresh ahead factor should be between 0 and 1 : " + refreshAheadFactor);
+		}
+		this.refreshAheadFactor = refreshAheadFactor;
+	}
+
+	public int getStaleWhileRevalidateSeconds() {
+		return staleWhileRevalidateSeconds;
+	}
+
+	/**
+	 * Serves a config expired from the cache for up to this many seconds past
+	 * its time to live, while a single background reload fetches it again.
+	 * 0 disables it, lookups of expired configs then wait for the server.
+	 * Applies only when caching is enabled, to the datasets whose
+	 * {@link CachePolicy} sets no refresh mode.
+	 * 
+	 * @param staleWhileRevalidateSeconds Time an expired config may still be served
+	 */
+	public void setStaleWhileRevalidateSeconds(int staleWhileRevalidateSeconds) {
+		this.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+	}
+
+	/**
+	 * Keeps the listings fetched by this client in files of the directory,
+	 * and loads the ones already there. Loaded configs are put in the cache
+	 * and served right away, without calling the server, then revalidated
+	 * against the server in the background. Applies only when caching is
+	 * enabled. Set it in the {@link CacheConfig} instead for the snapshots to
+	 * be restored before the warm-up.
+	 * 
+	 * @param directory Snapshot directory, created if needed
+	 * @throws IOException Thrown when the directory cannot be created
+	 */
+	public void setSnapshotDirectory(String directory) throws IOException {
+
+		snapshotStore = new SnapshotStore(new File(directory));
+		if (!isCached) {
+			return;
+		}
+
+		for (SnapshotStore.Snapshot snapshot : snapshotStore.load()) {
+			Integer datasetId = snapshot.getDatasetId();
+			String envsname = snapshot.getEnvsname();
+			String listingKey = getListingKey(datasetId, envsname);
+			logger.debug("Loading snapshot : " + listingKey);
+
+			listings.putIfAbsent(listingKey, configsOnHeap ? snapshot.getListing() : snapshot.getListing().withoutConfigs());
+			cacheService.storeConfigToCache(datasetId, snapshot.getListing().getConfigs());
+
+			// conditional request, unchanged listings are not downloaded again
+			callAsync(() -> fetchConfigs(datasetId, envsname)).whenComplete((configs, e) -> {
+				if (e != null) {
+					logger.warn("Unable to revalidate snapshot " + listingKey + " : " + e.getMessage());
+				}
+			});
+		}
+	}
+
 	/**
 	 * Sets Default Datasetid and Environment ShortName in the context for all
 	 * further API calls
@@ -170,14 +637,9 @@ public class CloudConfigClient {
 			configs = cacheService.getConfigListFromCache(datasetId);
 		}
 
-		// Note : For datasets having size 0, always hit url
+		// Note : Datasets having size 0 are remembered by the negative cache only
 		if (configs == null || configs.size() == 0) {
-
-			Map<String, String> parameters = new HashMap<>();
-			parameters.put(Constant.DATASETID, String.valueOf(datasetId));
-			configs = ClientUtilities.getConfigCall(parameters, url, Constant.GET_ALL_CONFIGS, apiKey);
-
-			cacheService.storeConfigToCache(datasetId, configs);
+			configs = fetchConfigs(datasetId, null);
 		}
 
 		return configs;
@@ -202,15 +664,9 @@ public class CloudConfigClient {
 			configs = cacheService.getConfigListFromCache(datasetId, sname);
 		}
 
-		// Note : For datasets having size 0, always hit url
+		// Note : Datasets having size 0 are remembered by the negative cache only
 		if (configs == null || configs.size() == 0) {
-
-			Map<String, String> parameters = new HashMap<>();
-			parameters.put(Constant.DATASETID, String.valueOf(datasetId));
-			parameters.put(Constant.ENV_SHORTNAME, sname);
-			configs = ClientUtilities.getConfigCall(parameters, url, Constant.GET_ALL_CONFIGS_FOR_ENV, apiKey);
-
-			cacheService.storeConfigToCache(datasetId, configs);
+			configs = fetchConfigs(datasetId, sname);
 		}
 
 		return configs;
@@ -235,26 +691,7 @@ public class CloudConfigClient {
 
 		}
 
-		Config config = null;
-		if (isCached) {
-			config = cacheService.getConfigFromCache(currentDataset, currentEnvironment, key);
-		}
-
-		if (config == null) {
-
-			Map<String, String> parameters = new HashMap<>();
-			parameters.put(Constant.DATASETID, String.valueOf(currentDataset));
-			parameters.put(Constant.ENV_SHORTNAME, currentEnvironment);
-			parameters.put(Constant.KEY, key);
-
-			List<Config> configs = ClientUtilities.getConfigCall(parameters, url,
-					Constant.GET_CONFIGS_BY_DATASET_AND_ENV_AND_KEY, apiKey);
-
-			if (configs != null && configs.size() > 0) {
-				config = configs.get(0);
-				cacheService.storeConfigToCache(currentDataset, currentEnvironment, config);
-			}
-		}
+		Config config = lookupConfig(currentDataset, currentEnvironment, key);
 
 		return ((config != null) ? config.getValue() : null);
 	}
@@ -278,26 +715,7 @@ public class CloudConfigClient {
 			throw new NotFoundException("Key Cannot be Null");
 		}
 
-		Config config = null;
-		if (isCached) {
-			config = cacheService.getConfigFromCache(currentDataset, currentEnvironment, key);
-		}
-
-		if (config == null) {
-
-			Map<String, String> parameters = new HashMap<>();
-			parameters.put(Constant.DATASETID, String.valueOf(currentDataset));
-			parameters.put(Constant.ENV_SHORTNAME, currentEnvironment);
-			parameters.put(Constant.KEY, key);
-
-			List<Config> configs = ClientUtilities.getConfigCall(parameters, url,
-					Constant.GET_CONFIGS_BY_DATASET_AND_ENV_AND_KEY, apiKey);
-
-			if (configs != null && configs.size() > 0) {
-				config = configs.get(0);
-				cacheService.storeConfigToCache(currentDataset, currentEnvironment, config);
-			}
-		}
+		Config config = lookupConfig(currentDataset, currentEnvironment, key);
 
 		return config;
 	}
@@ -325,27 +743,74 @@ public class CloudConfigClient {
 			throw new NotFoundException("Key Cannot be Null");
 		}
 
-		Config config = null;
-		if (isCached) {
-			config = cacheService.getConfigFromCache(currentDataset, envsname, key);
+		Config config = lookupConfig(currentDataset, envsname, key);
+
+		return config;
+	}
+
+	/**
+	 * Get the values of a set of keys in the current environment.<br>
+	 * Use the setClientDefaults function to set the environment and dataset
+	 * defaults.<br>
+	 * Keys that doesnt exist are not present in the returned map.
+	 * 
+	 * @param keys Keys
+	 * @return {@link Map}&lt;String, String&gt; Values by key
+	 * @throws Exception Any other Exception 
+	 */
+	public Map<String, String> getConfigValues(Collection<String> keys) throws Exception {
+
+		if (currentEnvironment == null || currentEnvironment.isEmpty()) {
+			throw new ContextNotFoundException(
+					"Cannot identify current Dataset or Environment. Recommendation: Call setClientDefaults to set current dataset and environment.");
 		}
 
-		if (config == null) {
+		Map<String, String> values = new HashMap<>();
+		for (Config config : getConfigs(currentEnvironment, keys).values()) {
+			values.put(config.getKey(), config.getValue());
+		}
+		return values;
+	}
 
-			Map<String, String> parameters = new HashMap<>();
-			parameters.put(Constant.DATASETID, String.valueOf(currentDataset));
-			parameters.put(Constant.ENV_SHORTNAME, envsname);
-			parameters.put(Constant.KEY, key);
+	/**
+	 * Get the Config objects for a set of keys in the given environment of
+	 * the current dataset.<br>
+	 * Keys found in the cache are read in one bulk operation. The remaining
+	 * keys are loaded from the server together: with a single call listing
+	 * the environment when many are missing, otherwise with parallel calls
+	 * per key.<br>
+	 * Keys that doesnt exist are not present in the returned map.
+	 * 
+	 * @param envsname Environment Short name
+	 * @param keys Keys
+	 * @return {@link Map}&lt;String, {@link Config}&gt; Config objects by key
+	 * @throws Exception Any other Exception 
+	 */
+	public Map<String, Config> getConfigs(String envsname, Collection<String> keys) throws Exception {
 
-			List<Config> configs = ClientUtilities.getConfigCall(parameters, url,
-					Constant.GET_CONFIGS_BY_DATASET_AND_ENV_AND_KEY, apiKey);
-			if (configs.size() > 0) {
-				config = configs.get(0);
-				cacheService.storeConfigToCache(currentDataset, envsname, config);
+		if (currentDataset == 0 || envsname.isEmpty()) {
+			throw new ContextNotFoundException(
+					"Cannot identify current Dataset or Environment. Recommendation: Call setClientDefaults to set current dataset and environment.");
+		}
+		for (String key : keys) {
+			if (key.isEmpty()) {
+				throw new NotFoundException("Key Cannot be Null");
 			}
 		}
 
-		return config;
+		Map<String, Config> configs = new HashMap<>();
+		if (isCached) {
+			configs.putAll(cacheService.getConfigsFromCache(currentDataset, envsname, keys));
+		}
+
+		Set<String> misses = new HashSet<>(keys);
+		misses.removeAll(configs.keySet());
+
+		if (misses.size() > 0) {
+			configs.putAll(fetchConfigs(currentDataset, envsname, misses));
+		}
+
+		return configs;
 	}
 
 	/**
@@ -374,13 +839,7 @@ public class CloudConfigClient {
 		}
 
 		if (configs == null || configs.size() == 0) {
-
-			Map<String, String> parameters = new HashMap<>();
-			parameters.put(Constant.DATASETID, String.valueOf(currentDataset));
-			parameters.put(Constant.ENV_SHORTNAME, envsname);
-
-			configs = ClientUtilities.getConfigCall(parameters, url, Constant.GET_ALL_CONFIGS_FOR_ENV, apiKey);
-			cacheService.storeConfigToCache(currentDataset, configs);
+			configs = fetchConfigs(currentDataset, envsname);
 		}
 
 		return configs;
@@ -403,7 +862,7 @@ public class CloudConfigClient {
 		}
 		searchQuery = "key=="+searchQuery;
 		
-		List<Config> configs = ClientUtilities.searchConfigCall(searchQuery,String.valueOf(currentDataset.longValue()),currentEnvironment, false, url, Constant.CONFIG_BY_RSQL_SEARCH,
+		List<Config> configs = ClientUtilities.searchConfigCall(transport, searchQuery,String.valueOf(currentDataset.longValue()),currentEnvironment, false, url, Constant.CONFIG_BY_RSQL_SEARCH,
 				apiKey);
 		return configs;
 
@@ -446,7 +905,7 @@ public class CloudConfigClient {
 		}
 		
 		searchQuery = "key=="+searchQuery;
-		List<Config> configs = ClientUtilities.searchConfigCall(searchQuery,String.valueOf(currentDataset.longValue()),currentEnvironment, iqk, url, Constant.CONFIG_BY_RSQL_SEARCH,
+		List<Config> configs = ClientUtilities.searchConfigCall(transport, searchQuery,String.valueOf(currentDataset.longValue()),currentEnvironment, iqk, url, Constant.CONFIG_BY_RSQL_SEARCH,
 				apiKey);
 		return configs;
 	}
@@ -476,11 +935,12 @@ public class CloudConfigClient {
 		MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
 		queryParams.add(Constant.VALUE, value);
 
-		Integer response = ClientUtilities.updateConfigCall(parameters, queryParams, url,
+		Integer response = ClientUtilities.updateConfigCall(transport, parameters, queryParams, url,
 				Constant.UPDATE_VALUE_FOR_CONFIG_KEY, apiKey);
 		boolean updateStatus = false;
 		if (response == 200 || response == 201) {
 			updateStatus = true;
+			writeThrough(key);
 		}
 
 		return updateStatus;
@@ -515,11 +975,12 @@ public class CloudConfigClient {
 
 		MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
 
-		Integer response = ClientUtilities.updateConfigCall(parameters, queryParams, url,
+		Integer response = ClientUtilities.updateConfigCall(transport, parameters, queryParams, url,
 				Constant.UPDATE_CONFIG_ENABLED_STATUS_FOR_ENV, apiKey);
 		boolean updateStatus = false;
 		if (response == 200 || response == 201) {
 			updateStatus = true;
+			writeThrough(key);
 		}
 
 		return updateStatus;
@@ -535,7 +996,7 @@ public class CloudConfigClient {
 	public List<Dataset> getDatasets() throws Exception {
 
 		Map<String, String> parameters = new HashMap<>();
-		List<Dataset> datasets = ClientUtilities.getDatasetCall(parameters, url, Constant.GET_ALL_DATASET, apiKey);
+		List<Dataset> datasets = ClientUtilities.getDatasetCall(transport, parameters, url, Constant.GET_ALL_DATASET, apiKey);
 		return datasets;
 	}
 
@@ -557,7 +1018,7 @@ public class CloudConfigClient {
 		Map<String, String> parameters = new HashMap<>();
 		parameters.put(Constant.DATASETID, String.valueOf(datasetId));
 
-		List<Dataset> datasets = ClientUtilities.getDatasetCall(parameters, url, Constant.GET_DATASET_BY_DATASET,
+		List<Dataset> datasets = ClientUtilities.getDatasetCall(transport, parameters, url, Constant.GET_DATASET_BY_DATASET,
 				apiKey);
 
 		if (datasets.size() > 0) {
@@ -576,7 +1037,7 @@ public class CloudConfigClient {
 	 */
 	public List<Env> getEnvironments() throws Exception {
 		Map<String, String> parameters = new HashMap<>();
-		EnvWrapper envWrapper = ClientUtilities.getEnvCall(parameters, url, Constant.GET_ALL_ENV, apiKey, true);
+		EnvWrapper envWrapper = ClientUtilities.getEnvCall(transport, parameters, url, Constant.GET_ALL_ENV, apiKey, true);
 		return envWrapper.getEnv();
 	}
 
@@ -591,8 +1052,945 @@ public class CloudConfigClient {
 	public Env getEnvironment(String shortname) throws Exception {
 		Map<String, String> parameters = new HashMap<>();
 		parameters.put(Constant.ENV_SHORTNAME, shortname);
-		EnvWrapper envWrapper = ClientUtilities.getEnvCall(parameters, url, Constant.GET_ENV_BY_ENV, apiKey, false);
+		EnvWrapper envWrapper = ClientUtilities.getEnvCall(transport, parameters, url, Constant.GET_ENV_BY_ENV, apiKey, false);
 		return (envWrapper.getEnv()).get(0);
 	}
 
-}
\ No newline at end of file
+	/** ============================= **/
+	/**        Asynchronous API       **/
+	/** ============================= **/
+
+	/**
+	 * Asynchronous version of {@link #getConfigs()}.
+	 * 
+	 * @return {@link CompletableFuture} of the list of Configs
+	 */
+	public CompletableFuture<List<Config>> getConfigsAsync() {
+		return callAsync(() -> getConfigs());
+	}
+
+	/**
+	 * Asynchronous version of {@link #getConfigs(Integer)}.
+	 * 
+	 * @param datasetId Dataset Id
+	 * @return {@link CompletableFuture} of the list of Configs
+	 */
+	public CompletableFuture<List<Config>> getConfigsAsync(Integer datasetId) {
+		return callAsync(() -> getConfigs(datasetId));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getConfigs(Integer, String)}.
+	 * 
+	 * @param datasetId Dataset Id
+	 * @param sname Environment Short name
+	 * @return {@link CompletableFuture} of the list of Configs
+	 */
+	public CompletableFuture<List<Config>> getConfigsAsync(Integer datasetId, String sname) {
+		return callAsync(() -> getConfigs(datasetId, sname));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getConfigs(String)}.
+	 * 
+	 * @param envsname Environment Short name
+	 * @return {@link CompletableFuture} of the list of Configs
+	 */
+	public CompletableFuture<List<Config>> getConfigsAsync(String envsname) {
+		return callAsync(() -> getConfigs(envsname));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getConfigValue(String)}. A value found
+	 * in the cache completes the future right away, on the calling thread.
+	 * 
+	 * @param key Key
+	 * @return {@link CompletableFuture} of the value, completed with null if the key doesnt exist
+	 */
+	public CompletableFuture<String> getConfigValueAsync(String key) {
+		Config cached = getCachedConfig(currentEnvironment, key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached.getValue());
+		}
+		return callAsync(() -> getConfigValue(key));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getConfig(String)}. A config found in
+	 * the cache completes the future right away, on the calling thread.
+	 * 
+	 * @param key Key
+	 * @return {@link CompletableFuture} of the Config, completed with null if the key doesnt exist
+	 */
+	public CompletableFuture<Config> getConfigAsync(String key) {
+		Config cached = getCachedConfig(currentEnvironment, key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		return callAsync(() -> getConfig(key));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getConfig(String, String)}. A config
+	 * found in the cache completes the future right away, on the calling
+	 * thread.
+	 * 
+	 * @param envsname Environment Short name
+	 * @param key Key
+	 * @return {@link CompletableFuture} of the Config, completed with null if the key doesnt exist
+	 */
+	public CompletableFuture<Config> getConfigAsync(String envsname, String key) {
+		Config cached = getCachedConfig(envsname, key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		return callAsync(() -> getConfig(envsname, key));
+	}
+
+	/**
+	 * Asynchronous version of {@link #searchConfigs(String)}.
+	 * 
+	 * @param searchQuery Search Query
+	 * @return {@link CompletableFuture} of the list of Configs
+	 */
+	public CompletableFuture<List<Config>> searchConfigsAsync(String searchQuery) {
+		return callAsync(() -> searchConfigs(searchQuery));
+	}
+
+	/**
+	 * Asynchronous version of {@link #searchConfigs(String, boolean)}.
+	 * 
+	 * @param searchQuery Search Query
+	 * @param iqk Ignore Query Key
+	 * @return {@link CompletableFuture} of the list of Configs
+	 */
+	public CompletableFuture<List<Config>> searchConfigsAsync(String searchQuery, boolean iqk) {
+		return callAsync(() -> searchConfigs(searchQuery, iqk));
+	}
+
+	/**
+	 * Asynchronous version of {@link #updateConfig(String, String)}.
+	 * 
+	 * @param key Key
+	 * @param value Value
+	 * @return {@link CompletableFuture} of the update status
+	 */
+	public CompletableFuture<Boolean> updateConfigAsync(String key, String value) {
+		return callAsync(() -> updateConfig(key, value));
+	}
+
+	/**
+	 * Asynchronous version of {@link #updateConfig(String, Character)}.
+	 * 
+	 * @param key Key
+	 * @param isenabled isEnabled - Y or N
+	 * @return {@link CompletableFuture} of the update status
+	 */
+	public CompletableFuture<Boolean> updateConfigAsync(String key, Character isenabled) {
+		return callAsync(() -> updateConfig(key, isenabled));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getDatasets()}.
+	 * 
+	 * @return {@link CompletableFuture} of the list of Datasets
+	 */
+	public CompletableFuture<List<Dataset>> getDatasetsAsync() {
+		return callAsync(() -> getDatasets());
+	}
+
+	/**
+	 * Asynchronous version of {@link #getDataset(Long)}.
+	 * 
+	 * @param datasetId Dataset Id
+	 * @return {@link CompletableFuture} of the Dataset
+	 */
+	public CompletableFuture<Dataset> getDatasetAsync(Long datasetId) {
+		return callAsync(() -> getDataset(datasetId));
+	}
+
+	/**
+	 * Asynchronous version of {@link #getEnvironments()}.
+	 * 
+	 * @return {@link CompletableFuture} of the list of Environments
+	 */
+	public CompletableFuture<List<Env>> getEnvironmentsAsync() {
+		return callAsync(() -> getEnvironments());
+	}
+
+	/**
+	 * Asynchronous version of {@link #getEnvironment(String)}.
+	 * 
+	 * @param shortname Environment Short name
+	 * @return {@link CompletableFuture} of the Environment
+	 */
+	public CompletableFuture<Env> getEnvironmentAsync(String shortname) {
+		return callAsync(() -> getEnvironment(shortname));
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	/**
+	 * Reads back a config of the current dataset and environment whose update
+	 * the server accepted, caches the server's copy and hands it to the
+	 * watches. Loads of the config or of its listings in flight may have been
+	 * answered before the update, they are awaited first so that they do not
+	 * store their copy over it, and an older version never replaces a newer
+	 * one. The listings kept for the environment and the dataset, and their
+	 * snapshots, are dropped, the next load or sync downloads them again, and
+	 * so are the negative entries which would hide the key.
+	 */
+	private void writeThrough(String key) {
+
+		if (!isCached) {
+			return;
+		}
+
+		Integer datasetId = currentDataset;
+		String envsname = currentEnvironment;
+		dropListing(datasetId, envsname);
+		dropListing(datasetId, null);
+		cacheService.removeMissingConfigFromCache(datasetId, envsname, key);
+
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put(Constant.DATASETID, String.valueOf(datasetId));
+		parameters.put(Constant.ENV_SHORTNAME, envsname);
+		parameters.put(Constant.KEY, key);
+
+		List<Config> configs;
+		try {
+			configFlights.await(datasetId + ENV_KEY_SEPARATOR + envsname + ENV_KEY_SEPARATOR + key);
+			configListFlights.await(getListingKey(datasetId, envsname));
+			configListFlights.await(getListingKey(datasetId, null));
+			configs = ClientUtilities.getConfigCall(transport, parameters, url,
+					Constant.GET_CONFIGS_BY_DATASET_AND_ENV_AND_KEY, apiKey);
+
+		} catch (Exception e) {
+			logger.warn("Unable to read back updated config " + key + " : " + e.getMessage());
+			cacheService.removeConfigFromCache(datasetId, envsname, key);
+			loadedConfigs.remove(datasetId + ENV_KEY_SEPARATOR + envsname + ENV_KEY_SEPARATOR + key);
+			return;
+		}
+
+		if (configs != null && configs.size() > 0) {
+			Config config = configs.get(0);
+			if (cacheService.getConfigFromCache(datasetId, envsname, key) == null) {
+				cacheService.storeConfigToCache(datasetId, envsname, config);
+			} else {
+				cacheService.updateConfigInCache(datasetId, envsname, key,
+						cached -> (cached.getVersion() > config.getVersion()) ? cached : config);
+			}
+			recordLoad(datasetId, envsname, config);
+			deliverChanges(Collections.singletonList(new ConfigChange(ChangeType.UPDATED, datasetId, envsname, config)));
+		}
+	}
+
+	private void dropListing(Integer datasetId, String envsname) {
+		String listingKey = getListingKey(datasetId, envsname);
+		listings.remove(listingKey);
+		if (snapshotStore != null) {
+			synchronized (snapshotLocks.computeIfAbsent(listingKey, k -> new Object())) {
+				pendingSnapshots.remove(listingKey);
+				try {
+					snapshotStore.delete(datasetId, envsname);
+				} catch (IOException e) {
+					logger.warn("Unable to delete snapshot " + listingKey + " : " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Looks a config up in the cache, loading it from the server on a miss.
+	 * With refresh-ahead or stale-while-revalidate, an aging or recently
+	 * expired config is answered at once and reloaded in the background.
+	 */
+	private Config lookupConfig(Integer datasetId, String envsname, String key) throws Exception {
+
+		Config config = null;
+		if (isCached) {
+			config = cacheService.getConfigFromCache(datasetId, envsname, key);
+		}
+
+		if (isRefreshed(datasetId)) {
+			config = revalidate(datasetId, envsname, key, config);
+		}
+
+		if (config == null) {
+			config = fetchConfig(datasetId, envsname, key);
+		}
+		return config;
+	}
+
+	/**
+	 * Schedules the reload of a config due for refresh, returning the config
+	 * to serve meanwhile: the cached one, or the stale one when it expired
+	 * from the cache less than staleWhileRevalidateSeconds ago.
+	 */
+	private Config revalidate(Integer datasetId, String envsname, String key, Config cached) {
+
+		String configKey = datasetId + ENV_KEY_SEPARATOR + envsname + ENV_KEY_SEPARATOR + key;
+		LoadedConfig loaded = loadedConfigs.get(configKey);
+		if (loaded == null) {
+			return cached;
+		}
+
+		long ttl = TimeUnit.SECONDS.toNanos(cacheService.getTimeToLiveSeconds(datasetId));
+		long age = System.nanoTime() - loaded.loadedAt;
+		double refreshAheadFactor = getRefreshAheadFactor(datasetId);
+		int staleWhileRevalidateSeconds = getStaleWhileRevalidateSeconds(datasetId);
+
+		if (cached != null) {
+			if (refreshAheadFactor > 0 && age >= ttl * refreshAheadFactor) {
+				reloadInBackground(datasetId, envsname, key, configKey);
+			}
+			return cached;
+		}
+
+		if (staleWhileRevalidateSeconds > 0 && age < ttl + TimeUnit.SECONDS.toNanos(staleWhileRevalidateSeconds)
+				&& loaded.config != null) {
+			logger.debug("Serving stale config while reloading : " + configKey);
+			metrics.recordStaleResponse();
+			reloadInBackground(datasetId, envsname, key, configKey);
+			return loaded.config;
+		}
+		return null;
+	}
+
+	/**
+	 * Reloads a config on the async executor, once however many lookups ask
+	 * for it meanwhile. The reload is not bound by the deadline of the lookup
+	 * that triggered it.
+	 */
+	private void reloadInBackground(Integer datasetId, String envsname, String key, String configKey) {
+
+		if (!refreshing.add(configKey)) {
+			return;
+		}
+		try {
+			getAsyncExecutor().execute(() -> {
+				try {
+					fetchConfig(datasetId, envsname, key);
+					metrics.recordBackgroundRefresh();
+				} catch (Exception e) {
+					logger.warn("Unable to refresh config " + configKey + " : " + e.getMessage());
+				} finally {
+					refreshing.remove(configKey);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			refreshing.remove(configKey);
+		}
+	}
+
+	private void recordLoad(Integer datasetId, String envsname, Config config) {
+		if (isRefreshed(datasetId)) {
+			loadedConfigs.put(datasetId + ENV_KEY_SEPARATOR + envsname + ENV_KEY_SEPARATOR + config.getKey(),
+					new LoadedConfig(configsOnHeap ? config : null, System.nanoTime()));
+		}
+	}
+
+	private boolean isRefreshed(Integer datasetId) {
+		return isCached && (getRefreshAheadFactor(datasetId) > 0 || getStaleWhileRevalidateSeconds(datasetId) > 0)
+				&& cacheService.getTimeToLiveSeconds(datasetId) > 0;
+	}
+
+	// the refresh mode of the dataset policy, if any, overrides the client settings
+	private double getRefreshAheadFactor(Integer datasetId) {
+		CachePolicy policy = cacheConfig.getPolicy(datasetId);
+		return (policy.getRefreshMode() == RefreshMode.REFRESH_AHEAD) ? policy.getRefreshAheadFactor()
+				: refreshAheadFactor;
+	}
+
+	private int getStaleWhileRevalidateSeconds(Integer datasetId) {
+		CachePolicy policy = cacheConfig.getPolicy(datasetId);
+		return (policy.getRefreshMode() == RefreshMode.STALE_WHILE_REVALIDATE)
+				? policy.getStaleWhileRevalidateSeconds() : staleWhileRevalidateSeconds;
+	}
+
+	/**
+	 * Loads a single config from the server and caches it. Concurrent misses
+	 * for the same dataset, environment and key share one server call.
+	 */
+	private Config fetchConfig(Integer datasetId, String envsname, String key) throws Exception {
+
+		if (isNegativeCached() && cacheService.isConfigMissingInCache(datasetId, envsname, key)) {
+			return null;
+		}
+
+		return configFlights.execute(datasetId + ENV_KEY_SEPARATOR + envsname + ENV_KEY_SEPARATOR + key, () -> {
+
+			Map<String, String> parameters = new HashMap<>();
+			parameters.put(Constant.DATASETID, String.valueOf(datasetId));
+			parameters.put(Constant.ENV_SHORTNAME, envsname);
+			parameters.put(Constant.KEY, key);
+
+			List<Config> configs;
+			try {
+				configs = ClientUtilities.getConfigCall(transport, parameters, url,
+						Constant.GET_CONFIGS_BY_DATASET_AND_ENV_AND_KEY, apiKey);
+
+			} catch (NotFoundException e) {
+				// a key the server does not have, as an empty answer
+				configs = null;
+
+			} catch (CircuitOpenException e) {
+				Config stale = findInListings(datasetId, envsname, key);
+				if (stale == null) {
+					throw e;
+				}
+				logger.debug("Circuit open, serving last known config : " + key);
+				metrics.recordStaleResponse();
+				return stale;
+			}
+
+			Config config = null;
+			if (configs != null && configs.size() > 0) {
+				config = configs.get(0);
+				if (isCached) {
+					cacheService.storeConfigToCache(datasetId, envsname, config);
+					recordLoad(datasetId, envsname, config);
+					trackListing(datasetId, envsname);
+				}
+			} else {
+				loadedConfigs.remove(datasetId + ENV_KEY_SEPARATOR + envsname + ENV_KEY_SEPARATOR + key);
+				if (isNegativeCached()) {
+					cacheService.storeMissingConfigToCache(datasetId, envsname, key, negativeCacheTtlSeconds);
+				}
+			}
+			return config;
+		});
+	}
+
+	/**
+	 * Loads all configs of a dataset, or of one of its environments when
+	 * envsname is not null, and caches them. Concurrent misses for the same
+	 * dataset and environment share one server call.<br>
+	 * When caching, the last listing is kept and revalidated with a
+	 * conditional request, so an unchanged dataset is put back in the cache
+	 * without being downloaded and parsed again. It is also served while the
+	 * circuit of the endpoint is open.
+	 */
+	private List<Config> fetchConfigs(Integer datasetId, String envsname) throws Exception {
+
+		if (isNegativeCached() && cacheService.isEmptyListingInCache(datasetId, envsname)) {
+			return new ArrayList<>(0);
+		}
+
+		String flightKey = getListingKey(datasetId, envsname);
+		List<Config> configs;
+		do {
+			configs = configListFlights.execute(flightKey, () -> {
+
+			ConfigListing previous = getCachedListing(datasetId, envsname, listings.get(flightKey));
+			ConfigListing listing;
+			try {
+				listing = callListing(datasetId, envsname, previous);
+
+			} catch (CircuitOpenException e) {
+				if (previous == null) {
+					throw e;
+				}
+				logger.debug("Circuit open, serving last known listing : " + flightKey);
+				metrics.recordStaleResponse();
+				return previous.getConfigs();
+			}
+
+			if (listing == previous) {
+				metrics.recordNotModifiedListing();
+			} else if (isCached) {
+				if (previous == null || watches.isEmpty()
+						|| applyChanges(datasetId, getChanges(datasetId, previous.getConfigs(), listing.getConfigs()))) {
+					keepListing(datasetId, envsname, listing);
+				} else {
+					dropListing(datasetId, envsname);
+				}
+			}
+
+			if (isCached) {
+				trackListing(datasetId, envsname);
+				cacheService.storeConfigToCache(datasetId, listing.getConfigs());
+				for (Config config : listing.getConfigs()) {
+					recordLoad(datasetId, config.getEnv().getSname(), config);
+				}
+			}
+			if (isNegativeCached() && listing.getConfigs().isEmpty()) {
+				cacheService.storeEmptyListingToCache(datasetId, envsname, negativeCacheTtlSeconds);
+			}
+			return listing.getConfigs();
+			});
+			// null when shared with a sync that found a listing kept without its configs unchanged
+		} while (configs == null);
+		return configs;
+	}
+
+	/**
+	 * Loads a set of configs from the server. Past ENV_FETCH_THRESHOLD keys
+	 * the whole environment is listed in one call, below it the keys are
+	 * fetched in parallel on the async executor. The caller fetches the keys
+	 * no thread of the executor has started yet itself, and only waits for
+	 * fetches running, so a call from the executor cannot wait for work
+	 * queued behind it.
+	 */
+	private Map<String, Config> fetchConfigs(Integer datasetId, String envsname, Set<String> keys) throws Exception {
+
+		Map<String, Config> configs = new HashMap<>();
+
+		if (isNegativeCached()) {
+			Set<String> unknown = new HashSet<>();
+			for (String key : keys) {
+				if (!cacheService.isConfigMissingInCache(datasetId, envsname, key)) {
+					unknown.add(key);
+				}
+			}
+			keys = unknown;
+		}
+		if (keys.isEmpty()) {
+			return configs;
+		}
+
+		if (keys.size() >= ENV_FETCH_THRESHOLD) {
+			for (Config config : fetchConfigs(datasetId, envsname)) {
+				if (keys.contains(config.getKey())) {
+					configs.put(config.getKey(), config);
+				}
+			}
+			if (isNegativeCached()) {
+				for (String key : keys) {
+					if (!configs.containsKey(key)) {
+						cacheService.storeMissingConfigToCache(datasetId, envsname, key, negativeCacheTtlSeconds);
+					}
+				}
+			}
+			return configs;
+		}
+
+		// the fetches stay bounded by the deadline of the caller
+		Deadline deadline = Deadline.current();
+		List<KeyFetch> fetches = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			Callable<Config> call = () -> fetchConfig(datasetId, envsname, key);
+			KeyFetch fetch = new KeyFetch((deadline == null) ? call : () -> deadline.call(call));
+			fetches.add(fetch);
+			try {
+				getAsyncExecutor().execute(fetch);
+			} catch (RejectedExecutionException e) {
+				// fetched below
+			}
+		}
+		for (KeyFetch fetch : fetches) {
+			fetch.run();
+		}
+		for (KeyFetch fetch : fetches) {
+			Config config = Deadline.await(fetch.future);
+			if (config != null) {
+				configs.put(config.getKey(), config);
+			}
+		}
+		return configs;
+	}
+
+	private int warmUpTarget(WarmUpTarget target) throws Exception {
+
+		Integer datasetId = target.getDatasetId();
+		if (target.getKeyPrefixes().isEmpty()) {
+			return fetchConfigs(datasetId, target.getEnvsname()).size();
+		}
+
+		// only part of the listing is cached, so it is not kept for revalidation
+		Map<String, List<Config>> matching = new HashMap<>();
+		for (Config config : callListing(datasetId, target.getEnvsname(), null).getConfigs()) {
+			if (target.matches(config.getKey())) {
+				matching.computeIfAbsent(config.getEnv().getSname(), env -> new ArrayList<>()).add(config);
+			}
+		}
+
+		int entries = 0;
+		for (Map.Entry<String, List<Config>> env : matching.entrySet()) {
+			cacheService.storeConfigsToCache(datasetId, env.getKey(), env.getValue());
+			for (Config config : env.getValue()) {
+				recordLoad(datasetId, env.getKey(), config);
+			}
+			entries += env.getValue().size();
+		}
+		return entries;
+	}
+
+	private void awaitWarmUp(long timeoutMillis) {
+		try {
+			readiness.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			logger.warn("Warm-up not over after " + timeoutMillis + " ms, going on in the background.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// never, the warm-up counts its failures
+			logger.warn("Warm-up failed : " + e.getMessage());
+		}
+	}
+
+	private ConfigListing callListing(Integer datasetId, String envsname, ConfigListing previous) throws Exception {
+
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put(Constant.DATASETID, String.valueOf(datasetId));
+
+		String queryApi = Constant.GET_ALL_CONFIGS;
+		if (envsname != null) {
+			parameters.put(Constant.ENV_SHORTNAME, envsname);
+			queryApi = Constant.GET_ALL_CONFIGS_FOR_ENV;
+		}
+		return ClientUtilities.getConfigListingCall(transport, parameters, url, queryApi, apiKey, previous);
+	}
+
+	private void keepListing(Integer datasetId, String envsname, ConfigListing listing) {
+		listings.put(getListingKey(datasetId, envsname), configsOnHeap ? listing : listing.withoutConfigs());
+		if (snapshotStore != null) {
+			saveSnapshot(datasetId, envsname, listing);
+		}
+	}
+
+	/**
+	 * Configs of a listing kept earlier. A listing kept without its configs
+	 * gets the ones still cached.
+	 */
+	private List<Config> getKnownConfigs(Integer datasetId, String envsname, ConfigListing listing) {
+		if (listing.hasConfigs()) {
+			return listing.getConfigs();
+		}
+		return (envsname != null) ? cacheService.getConfigListFromCache(datasetId, envsname)
+				: cacheService.getConfigListFromCache(datasetId);
+	}
+
+	/**
+	 * Listing kept earlier, with its configs. A listing kept without them
+	 * gets them back from the cache; null, so that the listing is downloaded
+	 * again, when the cache no longer holds all of them.
+	 */
+	private ConfigListing getCachedListing(Integer datasetId, String envsname, ConfigListing listing) {
+
+		if (listing == null || listing.hasConfigs()) {
+			return listing;
+		}
+		List<Config> configs = getKnownConfigs(datasetId, envsname, listing);
+		if (configs.size() != listing.getSize()) {
+			return null;
+		}
+		return new ConfigListing(configs, listing.getEtag(), listing.getLastModified());
+	}
+
+	/** ============================= **/
+	/**        Background Sync        **/
+	/** ============================= **/
+
+	private void trackListing(Integer datasetId, String envsname) {
+		String listingKey = getListingKey(datasetId, envsname);
+		if (!syncedListings.containsKey(listingKey)) {
+			syncedListings.putIfAbsent(listingKey, new SyncedListing(datasetId, envsname));
+		}
+	}
+
+	private void scheduleSync(ScheduledExecutorService executor) {
+		long delay = (long) (syncPeriodMillis * (0.75 + 0.5 * ThreadLocalRandom.current().nextDouble()));
+		try {
+			executor.schedule(() -> syncListings(executor), delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.debug("Sync stopped.");
+		}
+	}
+
+	private void syncListings(ScheduledExecutorService executor) {
+		for (SyncedListing synced : syncedListings.values()) {
+			if (executor.isShutdown()) {
+				return;
+			}
+			try {
+				syncListing(synced);
+			} catch (Exception e) {
+				logger.warn("Unable to sync " + getListingKey(synced.datasetId, synced.envsname) + " : " + e.getMessage());
+			}
+		}
+		scheduleSync(executor);
+	}
+
+	/**
+	 * Polls one listing and applies its changes to the cache. Shares the
+	 * flight of a concurrent load of the same listing.
+	 */
+	private void syncListing(SyncedListing synced) throws Exception {
+
+		Integer datasetId = synced.datasetId;
+		String envsname = synced.envsname;
+		String listingKey = getListingKey(datasetId, envsname);
+
+		configListFlights.execute(listingKey, () -> {
+
+			ConfigListing previous = listings.get(listingKey);
+			ConfigListing listing = callListing(datasetId, envsname, previous);
+
+			if (listing == previous) {
+				metrics.recordNotModifiedListing();
+			} else {
+				List<Config> known = (previous != null) ? getKnownConfigs(datasetId, envsname, previous)
+						: (envsname != null) ? cacheService.getConfigListFromCache(datasetId, envsname)
+								: cacheService.getConfigListFromCache(datasetId);
+				List<ConfigChange> changes = getChanges(datasetId, known, listing.getConfigs());
+				logger.debug("Synced " + listingKey + ", changes : " + changes.size());
+				metrics.recordSyncedChanges(changes.size());
+				if (applyChanges(datasetId, changes)) {
+					keepListing(datasetId, envsname, listing);
+				} else {
+					dropListing(datasetId, envsname);
+				}
+			}
+			metrics.recordSync();
+			synced.syncedAt = System.nanoTime();
+			// null when unchanged and kept without its configs, see fetchConfigs
+			return listing.getConfigs();
+		});
+	}
+
+	/**
+	 * Compares a listing with the configs known before: configs added, whose
+	 * version changed, and no longer listed.
+	 */
+	private static List<ConfigChange> getChanges(Integer datasetId, List<Config> known, List<Config> listed) {
+
+		Map<String, Config> previous = new HashMap<>();
+		if (known != null) {
+			for (Config config : known) {
+				previous.put(config.getEnv().getSname() + ENV_KEY_SEPARATOR + config.getKey(), config);
+			}
+		}
+
+		List<ConfigChange> changes = new ArrayList<>();
+		for (Config config : listed) {
+			String envsname = config.getEnv().getSname();
+			Config old = previous.remove(envsname + ENV_KEY_SEPARATOR + config.getKey());
+			if (old == null) {
+				changes.add(new ConfigChange(ChangeType.ADDED, datasetId, envsname, config));
+			} else if (old.getVersion() != config.getVersion()) {
+				changes.add(new ConfigChange(ChangeType.UPDATED, datasetId, envsname, config));
+			}
+		}
+		for (Config removed : previous.values()) {
+			changes.add(new ConfigChange(ChangeType.REMOVED, datasetId, removed.getEnv().getSname(), removed));
+		}
+		return changes;
+	}
+
+	/**
+	 * Applies the changes to the cache, then hands them to the watches on the
+	 * sync thread. Returns false when the cache kept a removed config until
+	 * it expires : the listing must not be kept then, the next sync lists the
+	 * environment again instead of revalidating a listing the cache does not
+	 * match.
+	 */
+	private boolean applyChanges(Integer datasetId, List<ConfigChange> changes) {
+
+		boolean applied = true;
+		Map<String, List<Config>> stored = new HashMap<>();
+		for (ConfigChange change : changes) {
+			if (change.getType() == ChangeType.REMOVED) {
+				cacheService.removeConfigFromCache(datasetId, change.getEnv(), change.getKey());
+				loadedConfigs.remove(datasetId + ENV_KEY_SEPARATOR + change.getEnv() + ENV_KEY_SEPARATOR + change.getKey());
+				if (cacheService.getConfigFromCache(datasetId, change.getEnv(), change.getKey()) != null) {
+					applied = false;
+				}
+			} else {
+				stored.computeIfAbsent(change.getEnv(), env -> new ArrayList<>()).add(change.getConfig());
+			}
+		}
+		for (Map.Entry<String, List<Config>> env : stored.entrySet()) {
+			cacheService.storeConfigsToCache(datasetId, env.getKey(), env.getValue());
+			for (Config config : env.getValue()) {
+				recordLoad(datasetId, env.getKey(), config);
+			}
+		}
+
+		deliverChanges(changes);
+		return applied;
+	}
+
+	/**
+	 * Hands changes to the watches on the sync thread.
+	 */
+	private void deliverChanges(List<ConfigChange> changes) {
+
+		if (!changes.isEmpty() && !watches.isEmpty()) {
+			synchronized (this) {
+				if (syncExecutor != null) {
+					try {
+						// queued behind the poll running, listeners see the batches in order
+						syncExecutor.execute(() -> {
+							for (ConfigWatch watch : watches) {
+								watch.deliver(changes);
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						logger.debug("Sync stopped, changes not delivered.");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the listing to its snapshot file on the async executor, off the
+	 * path of the lookup, and not bound by its deadline. A listing kept while
+	 * the write of an older one is queued replaces it, and the writes of a
+	 * listing run one at a time, so an older listing never overwrites a newer
+	 * one.
+	 */
+	private void saveSnapshot(Integer datasetId, String envsname, ConfigListing listing) {
+
+		String listingKey = getListingKey(datasetId, envsname);
+		if (pendingSnapshots.put(listingKey, listing) != null) {
+			return;
+		}
+		try {
+			getAsyncExecutor().execute(() -> writeSnapshot(datasetId, envsname, listingKey));
+		} catch (RejectedExecutionException e) {
+			pendingSnapshots.remove(listingKey);
+		}
+	}
+
+	private void writeSnapshot(Integer datasetId, String envsname, String listingKey) {
+		synchronized (snapshotLocks.computeIfAbsent(listingKey, k -> new Object())) {
+			ConfigListing listing = pendingSnapshots.remove(listingKey);
+			if (listing == null) {
+				return;
+			}
+			try {
+				snapshotStore.save(datasetId, envsname, listing);
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Unable to write snapshot " + listingKey + " : " + e.getMessage());
+			}
+		}
+	}
+
+	private static String getListingKey(Integer datasetId, String envsname) {
+		return (envsname == null) ? String.valueOf(datasetId) : datasetId + ENV_KEY_SEPARATOR + envsname;
+	}
+
+	private boolean isNegativeCached() {
+		return isCached && negativeCacheTtlSeconds > 0;
+	}
+
+	/**
+	 * Looks a config up in the last known listings of its environment or
+	 * dataset. Used only when the server cannot be called.
+	 */
+	private Config findInListings(Integer datasetId, String envsname, String key) {
+
+		for (ConfigListing listing : new ConfigListing[] { listings.get(datasetId + ENV_KEY_SEPARATOR + envsname),
+				listings.get(String.valueOf(datasetId)) }) {
+			if (listing != null && listing.hasConfigs()) {
+				for (Config config : listing.getConfigs()) {
+					if (key.equals(config.getKey()) && envsname.equals(config.getEnv().getSname())) {
+						return config;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private Config getCachedConfig(String envsname, String key) {
+		if (!isCached || currentDataset == 0 || envsname == null || envsname.isEmpty() || key == null
+				|| key.isEmpty()) {
+			return null;
+		}
+		return cacheService.getConfigFromCache(currentDataset, envsname, key);
+	}
+
+	private <T> CompletableFuture<T> callAsync(Callable<T> call) {
+
+		// the call stays bounded by the deadline of the caller
+		Deadline deadline = Deadline.current();
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			getAsyncExecutor().execute(() -> {
+				try {
+					future.complete(deadline == null ? call.call() : deadline.call(call));
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private synchronized Executor getAsyncExecutor() {
+		if (asyncExecutor == null) {
+			logger.debug("Creating async executor with " + asyncThreads + " threads.");
+			ownedAsyncExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(asyncThreads * ASYNC_QUEUE_PER_THREAD),
+					new NamedThreadFactory("configs-cloud-async"), new ThreadPoolExecutor.AbortPolicy());
+			asyncExecutor = ownedAsyncExecutor;
+		}
+		return asyncExecutor;
+	}
+
+	/**
+	 * Dataset, or environment of a dataset, polled by the background sync
+	 */
+	private static class SyncedListing {
+
+		private final Integer datasetId;
+		private final String envsname;
+		// System.nanoTime() at which the listing last matched the server
+		private volatile long syncedAt = System.nanoTime();
+
+		SyncedListing(Integer datasetId, String envsname) {
+			this.datasetId = datasetId;
+			this.envsname = envsname;
+		}
+	}
+
+	/**
+	 * Fetch of one key of a batch, run once by whichever thread starts it
+	 * first, the caller of the batch or a thread of the async executor.
+	 */
+	private static class KeyFetch implements Runnable {
+
+		private final CompletableFuture<Config> future = new CompletableFuture<>();
+		private final AtomicBoolean started = new AtomicBoolean();
+		private final Callable<Config> call;
+
+		KeyFetch(Callable<Config> call) {
+			this.call = call;
+		}
+
+		@Override
+		public void run() {
+			if (!started.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				future.complete(call.call());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Config as last loaded from the server, with the System.nanoTime() of
+	 * the load. Only the time is kept when configs are kept off heap.
+	 */
+	private static class LoadedConfig {
+
+		private final Config config;
+		private final long loadedAt;
+
+		LoadedConfig(Config config, long loadedAt) {
+			this.config = config;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package configs.cloud.client;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.enums.ChangeType;
+
+/**
+ * A config added, updated or removed on the server, as delivered to a
+ * {@link ConfigChangeListener}.
+ *
+ * @author Pushkar
+ *
+ */
+public class ConfigChange {
+
+	private final ChangeType type;
+	private final Integer datasetId;
+	private final String env;
+	private final Config config;
+
+	public ConfigChange(ChangeType type, Integer datasetId, String env, Config config) {
+		this.type = type;
+		this.datasetId = datasetId;
+		this.env = env;
+		this.config = config;
+	}
+
+	public ChangeType getType() {
+		return type;
+	}
+
+	public Integer getDatasetId() {
+		return datasetId;
+	}
+
+	public String getEnv() {
+		return env;
+	}
+
+	public String getKey() {
+		return config.getKey();
+	}
+
+	/**
+	 * @return Config The new config, or the last known one when removed
+	 */
+	public Config getConfig() {
+		return config;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + datasetId + ":" + env + ":" + config.getKey() + " v" + config.getVersion();
+	}
+}
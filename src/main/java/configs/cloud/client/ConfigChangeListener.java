@@ -0,0 +1,23 @@
+package configs.cloud.client;
+
+import java.util.List;
+
+/**
+ * Receives the changes of the configs watched with
+ * {@link CloudConfigClient#watch(Integer, String, String, ConfigChangeListener)}.
+ *
+ * @author Pushkar
+ *
+ */
+public interface ConfigChangeListener {
+
+	/**
+	 * Called with the changes found by one poll of the server, in one batch.
+	 * Runs on the sync thread shared by all watches, so it should return
+	 * quickly.
+	 *
+	 * @param changes Changes of the watched configs
+	 */
+	public void onChange(List<ConfigChange> changes);
+
+}
@@ -0,0 +1,116 @@
+package configs.cloud.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import configs.cloud.client.enums.ChangeType;
+
+/**
+ * Registration of a {@link ConfigChangeListener} for a key, or for the keys
+ * of a prefix, of a dataset and environment. The version delivered for each
+ * key is remembered, so that a change is delivered once even when found
+ * again, e.g. after the client reconnects.
+ *
+ * @author Pushkar
+ *
+ */
+public class ConfigWatch {
+
+	private static final Logger logger = Logger.getLogger(ConfigWatch.class);
+	private static final String WILDCARD = "*";
+	// version remembered for a removed key, any version added again is newer
+	private static final int REMOVED = -1;
+
+	private final Integer datasetId;
+	private final String env;
+	private final String key;
+	private final boolean prefix;
+	private final ConfigChangeListener listener;
+	private final Collection<ConfigWatch> watches;
+
+	// last version delivered, by env and key, used from the sync thread only
+	private final Map<String, Integer> versions = new HashMap<>();
+
+	ConfigWatch(Integer datasetId, String env, String keyOrPrefix, ConfigChangeListener listener,
+			Collection<ConfigWatch> watches) {
+		this.datasetId = datasetId;
+		this.env = env;
+		this.prefix = keyOrPrefix == null || keyOrPrefix.endsWith(WILDCARD);
+		this.key = (keyOrPrefix == null) ? "" : prefix ? keyOrPrefix.substring(0, keyOrPrefix.length() - 1) : keyOrPrefix;
+		this.listener = listener;
+		this.watches = watches;
+	}
+
+	/**
+	 * Stops delivering changes to the listener.
+	 */
+	public void cancel() {
+		watches.remove(this);
+	}
+
+	public Integer getDatasetId() {
+		return datasetId;
+	}
+
+	public String getEnv() {
+		return env;
+	}
+
+	/**
+	 * Delivers the changes of the batch matching this watch, if any.
+	 *
+	 * @param changes Changes found by one poll
+	 */
+	void deliver(List<ConfigChange> changes) {
+
+		List<ConfigChange> matching = new ArrayList<>();
+		for (ConfigChange change : changes) {
+			if (matches(change) && isNew(change)) {
+				matching.add(change);
+			}
+		}
+		if (matching.isEmpty()) {
+			return;
+		}
+
+		try {
+			listener.onChange(matching);
+		} catch (RuntimeException e) {
+			logger.warn("Config change listener failed : " + e.getMessage(), e);
+		}
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private boolean matches(ConfigChange change) {
+		if (!datasetId.equals(change.getDatasetId()) || (env != null && !env.equals(change.getEnv()))) {
+			return false;
+		}
+		return prefix ? change.getKey().startsWith(key) : change.getKey().equals(key);
+	}
+
+	private boolean isNew(ConfigChange change) {
+
+		String versionKey = change.getEnv() + ":" + change.getKey();
+		Integer delivered = versions.get(versionKey);
+
+		if (change.getType() == ChangeType.REMOVED) {
+			versions.put(versionKey, REMOVED);
+			return delivered == null || delivered != REMOVED;
+		}
+
+		int version = change.getConfig().getVersion();
+		if (delivered != null && delivered != REMOVED && delivered >= version) {
+			return false;
+		}
+		versions.put(versionKey, version);
+		return true;
+	}
+}
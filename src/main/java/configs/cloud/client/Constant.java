@@ -5,6 +5,7 @@ public final class Constant {
 	
 	public static final String X_AUTH_TOKEN = "X-Auth-Token";
 	public static final String ACCEPT = "application/json";
+	public static final String ACCEPT_HEADER = "Accept";
 	public static final String DATASETID = "datasetid";
 	public static final String ENV_SHORTNAME = "envsname";
 	public static final String KEY = "key";
@@ -12,6 +13,14 @@ public final class Constant {
 	public static final String IS_ENABLED = "isenabled";
 	public static final String SEARCH = "search";
 	public static final String IQK = "iqk";
+	public static final String ETAG = "ETag";
+	public static final String LAST_MODIFIED = "Last-Modified";
+	public static final String IF_NONE_MATCH = "If-None-Match";
+	public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+	public static final String ACCEPT_ENCODING = "Accept-Encoding";
+	public static final String CONTENT_ENCODING = "Content-Encoding";
+	public static final String GZIP = "gzip";
+	public static final String DEFLATE = "deflate";
 	
 	public static final String GET_ALL_CONFIGS = "/api/configs/{datasetid}";
 	public static final String GET_ALL_CONFIGS_FOR_ENV = "/api/configs/{datasetid}/{envsname}";
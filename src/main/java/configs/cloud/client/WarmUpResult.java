@@ -0,0 +1,68 @@
+package configs.cloud.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a cache warm-up. Obtain the one of the warm-up run at
+ * construction with {@link CloudConfigClient#getReadiness()}.
+ *
+ * @author Pushkar
+ *
+ */
+public class WarmUpResult {
+
+	private final long durationMillis;
+	private final Map<String, Integer> entries;
+	private final int failedTargets;
+
+	WarmUpResult(long durationMillis, Map<String, Integer> entries, int failedTargets) {
+		this.durationMillis = durationMillis;
+		this.entries = Collections.unmodifiableMap(entries);
+		this.failedTargets = failedTargets;
+	}
+
+	/**
+	 * @return long Time from the start of the warm-up to its last target
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return int Number of configs cached, over all targets
+	 */
+	public int getEntries() {
+		int total = 0;
+		for (Integer count : entries.values()) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @return {@link Map}&lt;String, Integer&gt; Number of configs cached by target, e.g. "2:dev"
+	 */
+	public Map<String, Integer> getEntriesByTarget() {
+		return entries;
+	}
+
+	/**
+	 * Number of targets that could not be loaded, they are loaded on first
+	 * use instead.
+	 *
+	 * @return int Failed target count
+	 */
+	public int getFailedTargets() {
+		return failedTargets;
+	}
+
+	@Override
+	public String toString() {
+		return "WarmUpResult{" +
+				"durationMillis=" + durationMillis +
+				", entries=" + getEntries() +
+				", failedTargets=" + failedTargets +
+				'}';
+	}
+}
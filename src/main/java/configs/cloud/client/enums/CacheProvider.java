@@ -2,6 +2,6 @@ package configs.cloud.client.enums;
 
 public enum CacheProvider {
 	
-	EHCACHE,HAZELCAST;
+	EHCACHE,HAZELCAST,HAZELCAST_CLIENT,SNAPSHOT,LOCAL,OFFHEAP,TIERED;
 
 }
@@ -0,0 +1,7 @@
+package configs.cloud.client.enums;
+
+public enum EvictionAlgorithm {
+
+	LRU,LFU,FIFO;
+
+}
@@ -0,0 +1,7 @@
+package configs.cloud.client.enums;
+
+public enum RefreshMode {
+
+	NONE,REFRESH_AHEAD,STALE_WHILE_REVALIDATE;
+
+}
@@ -0,0 +1,15 @@
+package configs.cloud.client.exceptions;
+
+public class CircuitOpenException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(){
+		super();
+	}
+	
+	public CircuitOpenException(String message){
+		super(message);		
+	}
+
+
+}
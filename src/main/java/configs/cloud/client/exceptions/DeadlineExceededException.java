@@ -0,0 +1,15 @@
+package configs.cloud.client.exceptions;
+
+public class DeadlineExceededException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public DeadlineExceededException(){
+		super();
+	}
+	
+	public DeadlineExceededException(String message){
+		super(message);		
+	}
+
+
+}
@@ -1,20 +1,42 @@
 package configs.cloud.client.factory;
 
+import com.hazelcast.client.config.XmlClientConfigBuilder;
+
 import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.service.CacheConfig;
 import configs.cloud.client.service.CacheService;
 import configs.cloud.client.service.impl.EhcacheService;
 import configs.cloud.client.service.impl.HazelCastService;
+import configs.cloud.client.service.impl.LocalCacheService;
+import configs.cloud.client.service.impl.OffHeapCacheService;
+import configs.cloud.client.service.impl.SnapshotCacheService;
+import configs.cloud.client.service.impl.TieredCacheService;
 
 
 public class CacheFactory {
 	
 	public static CacheService getCacheService(CacheProvider cacheProvider){
+		return getCacheService(cacheProvider, new CacheConfig());
+	}
+
+	public static CacheService getCacheService(CacheProvider cacheProvider, CacheConfig cacheConfig){
 		
 		if(cacheProvider == CacheProvider.EHCACHE){
-			return  new EhcacheService();
+			return  new EhcacheService(cacheConfig);
 			
 		} else if(cacheProvider == CacheProvider.HAZELCAST){
-			return  new HazelCastService();
+			return  new HazelCastService(cacheConfig);
+		} else if(cacheProvider == CacheProvider.HAZELCAST_CLIENT){
+			// hazelcast-client.xml from the classpath, or -Dhazelcast.client.config
+			return  new HazelCastService(new XmlClientConfigBuilder().build(), cacheConfig);
+		} else if(cacheProvider == CacheProvider.SNAPSHOT){
+			return  new SnapshotCacheService(cacheConfig);
+		} else if(cacheProvider == CacheProvider.LOCAL){
+			return  new LocalCacheService(cacheConfig);
+		} else if(cacheProvider == CacheProvider.OFFHEAP){
+			return  new OffHeapCacheService(cacheConfig);
+		} else if(cacheProvider == CacheProvider.TIERED){
+			return  new TieredCacheService(cacheConfig);
 		} else {
 			throw new RuntimeException("Unknown Cache Provider");
 		}
@@ -0,0 +1,35 @@
+package configs.cloud.client.factory;
+
+import org.apache.log4j.Logger;
+
+import configs.cloud.client.enums.TransportProvider;
+import configs.cloud.client.transport.ConfigTransport;
+import configs.cloud.client.transport.Http2Transport;
+import configs.cloud.client.transport.JerseyTransport;
+import configs.cloud.client.transport.TransportConfig;
+
+
+public class TransportFactory {
+
+	private static final Logger logger = Logger.getLogger(TransportFactory.class);
+
+	public static ConfigTransport getTransport(TransportConfig transportConfig){
+
+		TransportProvider transportProvider = transportConfig.getTransportProvider();
+
+		if(transportProvider == TransportProvider.JERSEY){
+			return new JerseyTransport(transportConfig);
+
+		} else if(transportProvider == TransportProvider.HTTP2){
+			if(!Http2Transport.isAvailable()){
+				logger.warn("The HTTP2 transport requires Java 11 or later, using JERSEY");
+				return new JerseyTransport(transportConfig);
+			}
+			return new Http2Transport(transportConfig);
+		} else {
+			throw new RuntimeException("Unknown Transport Provider");
+		}
+
+	}
+
+}
@@ -0,0 +1,164 @@
+package configs.cloud.client.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cache policies of a CloudConfigClient : a default one, and one for each
+ * dataset needing other limits. Providers size their caches when they create
+ * them, so policies are set before the client is built.<br>
+ * Also lists the datasets and environments the client loads into the cache
+ * when built, so that first lookups after a deploy do not wait for the
+ * server, and the directory of the snapshots restored before them.
+ *
+ * @author Pushkar
+ *
+ */
+public class CacheConfig {
+
+	private CachePolicy defaultPolicy = new CachePolicy();
+
+	private final Map<Integer, CachePolicy> datasetPolicies = new ConcurrentHashMap<>();
+
+	private final List<WarmUpTarget> warmUps = new CopyOnWriteArrayList<>();
+
+	private int warmUpParallelism = 4;
+
+	private boolean warmUpInBackground = false;
+
+	private long warmUpTimeoutMillis = 30000;
+
+	private String snapshotDirectory;
+
+	public CachePolicy getDefaultPolicy() {
+		return defaultPolicy;
+	}
+
+	/**
+	 * @param defaultPolicy Policy of the datasets without their own
+	 */
+	public void setDefaultPolicy(CachePolicy defaultPolicy) {
+		if (defaultPolicy == null) {
+			throw new IllegalArgumentException("Default policy should not be null");
+		}
+		this.defaultPolicy = defaultPolicy;
+	}
+
+	/**
+	 * @param datasetId Dataset id
+	 * @param policy Policy of the dataset, null to use the default one again
+	 */
+	public void setDatasetPolicy(Integer datasetId, CachePolicy policy) {
+		if (policy == null) {
+			datasetPolicies.remove(datasetId);
+		} else {
+			datasetPolicies.put(datasetId, policy);
+		}
+	}
+
+	/**
+	 * @return {@link Map}&lt;Integer, {@link CachePolicy}&gt; Policies set for a dataset, by dataset id
+	 */
+	public Map<Integer, CachePolicy> getDatasetPolicies() {
+		return Collections.unmodifiableMap(datasetPolicies);
+	}
+
+	/**
+	 * @param datasetId Dataset id
+	 * @return CachePolicy Policy of the dataset, the default one if it has none
+	 */
+	public CachePolicy getPolicy(Integer datasetId) {
+		CachePolicy policy = (datasetId == null) ? null : datasetPolicies.get(datasetId);
+		return (policy != null) ? policy : defaultPolicy;
+	}
+
+	/**
+	 * @param defaults Settings of the provider for what the policies leave unset
+	 * @return CacheConfig Copy of this config, whose policies take what they leave unset from defaults
+	 */
+	public CacheConfig withDefaults(CachePolicy defaults) {
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.defaultPolicy = defaultPolicy.withDefaults(defaults);
+		for (Map.Entry<Integer, CachePolicy> entry : datasetPolicies.entrySet()) {
+			cacheConfig.datasetPolicies.put(entry.getKey(), entry.getValue().withDefaults(defaults));
+		}
+		cacheConfig.warmUps.addAll(warmUps);
+		cacheConfig.warmUpParallelism = warmUpParallelism;
+		cacheConfig.warmUpInBackground = warmUpInBackground;
+		cacheConfig.warmUpTimeoutMillis = warmUpTimeoutMillis;
+		cacheConfig.snapshotDirectory = snapshotDirectory;
+		return cacheConfig;
+	}
+
+	/**
+	 * Adds a dataset, or an environment of it, to load when the client is
+	 * built.
+	 * 
+	 * @param datasetId Dataset id
+	 * @param envsname Environment Short name, null for the whole dataset
+	 * @param keyPrefixes Prefixes of the keys to cache, none to cache them all
+	 */
+	public void addWarmUp(Integer datasetId, String envsname, String... keyPrefixes) {
+		warmUps.add(new WarmUpTarget(datasetId, envsname, keyPrefixes));
+	}
+
+	public List<WarmUpTarget> getWarmUps() {
+		return Collections.unmodifiableList(warmUps);
+	}
+
+	public int getWarmUpParallelism() {
+		return warmUpParallelism;
+	}
+
+	/**
+	 * @param warmUpParallelism Maximum number of targets loaded at the same time
+	 */
+	public void setWarmUpParallelism(int warmUpParallelism) {
+		if (warmUpParallelism <= 0) {
+			throw new IllegalArgumentException("Warm-up parallelism should be positive : " + warmUpParallelism);
+		}
+		this.warmUpParallelism = warmUpParallelism;
+	}
+
+	public boolean isWarmUpInBackground() {
+		return warmUpInBackground;
+	}
+
+	/**
+	 * @param warmUpInBackground false to build the client once warmed up, true to return at once and
+	 * 			warm up in the background, see CloudConfigClient.getReadiness()
+	 */
+	public void setWarmUpInBackground(boolean warmUpInBackground) {
+		this.warmUpInBackground = warmUpInBackground;
+	}
+
+	public long getWarmUpTimeoutMillis() {
+		return warmUpTimeoutMillis;
+	}
+
+	/**
+	 * @param warmUpTimeoutMillis Longest time the client waits for the warm-up when built, it then goes
+	 * 			on in the background
+	 */
+	public void setWarmUpTimeoutMillis(long warmUpTimeoutMillis) {
+		if (warmUpTimeoutMillis <= 0) {
+			throw new IllegalArgumentException("Warm-up timeout should be positive : " + warmUpTimeoutMillis);
+		}
+		this.warmUpTimeoutMillis = warmUpTimeoutMillis;
+	}
+
+	public String getSnapshotDirectory() {
+		return snapshotDirectory;
+	}
+
+	/**
+	 * @param snapshotDirectory Directory of the listing snapshots, restored when the client is built
+	 * 			before the warm-up, null for none. See CloudConfigClient.setSnapshotDirectory(String)
+	 */
+	public void setSnapshotDirectory(String snapshotDirectory) {
+		this.snapshotDirectory = snapshotDirectory;
+	}
+}
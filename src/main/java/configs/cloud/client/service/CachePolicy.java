@@ -0,0 +1,183 @@
+package configs.cloud.client.service;
+
+import configs.cloud.client.enums.EvictionAlgorithm;
+import configs.cloud.client.enums.RefreshMode;
+
+/**
+ * Sizing, expiry and refresh of the cached configs of a dataset. Set it for
+ * all datasets, or for one of them, through {@link CacheConfig}.<br>
+ * Providers apply what they support : EHCACHE and HAZELCAST all of it,
+ * HAZELCAST_CLIENT the time to live, set on each config, and the entries
+ * and eviction of its near cache (the cluster configures its maps), LOCAL
+ * the entries, time to live and time to idle with its own W-TinyLFU
+ * eviction, and OFFHEAP and SNAPSHOT the time to live.<br>
+ * Entries, time to live, time to idle and eviction left unset keep the
+ * defaults of the provider : 1000 configs for 1000 seconds, idle for at
+ * most 1000 seconds, for EHCACHE, no limit and 20 seconds with LFU
+ * eviction for HAZELCAST, and 10000 configs for 1000 seconds for the
+ * others.
+ *
+ * @author Pushkar
+ *
+ */
+public class CachePolicy {
+
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	public static final int DEFAULT_TIME_TO_LIVE_SECONDS = 1000;
+
+	// null when left to the provider, see withDefaults
+	private Integer maxEntries;
+
+	private long maxBytes = 0;
+
+	private Integer timeToLiveSeconds;
+
+	private Integer timeToIdleSeconds;
+
+	private EvictionAlgorithm evictionAlgorithm;
+
+	private RefreshMode refreshMode = RefreshMode.NONE;
+
+	private double refreshAheadFactor = 0.8;
+
+	private int staleWhileRevalidateSeconds = 60;
+
+	public int getMaxEntries() {
+		return (maxEntries != null) ? maxEntries : DEFAULT_MAX_ENTRIES;
+	}
+
+	/**
+	 * @param maxEntries Maximum number of configs cached for the dataset. EHCACHE divides it evenly between the environments
+	 */
+	public void setMaxEntries(int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("Max entries should be positive : " + maxEntries);
+		}
+		this.maxEntries = maxEntries;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @param maxBytes Heap size the cached configs of the dataset may use, instead of a number of entries. 0 sizes by entries.
+	 * 			EHCACHE divides it evenly between the environments
+	 */
+	public void setMaxBytes(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("Max bytes should not be negative : " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	public int getTimeToLiveSeconds() {
+		return (timeToLiveSeconds != null) ? timeToLiveSeconds : DEFAULT_TIME_TO_LIVE_SECONDS;
+	}
+
+	/**
+	 * @param timeToLiveSeconds Time a config stays cached after being loaded, 0 for no expiry
+	 */
+	public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+		if (timeToLiveSeconds < 0) {
+			throw new IllegalArgumentException("Time to live should not be negative : " + timeToLiveSeconds);
+		}
+		this.timeToLiveSeconds = timeToLiveSeconds;
+	}
+
+	public int getTimeToIdleSeconds() {
+		return (timeToIdleSeconds != null) ? timeToIdleSeconds : 0;
+	}
+
+	/**
+	 * @param timeToIdleSeconds Time a config stays cached without being read, 0 for no limit
+	 */
+	public void setTimeToIdleSeconds(int timeToIdleSeconds) {
+		if (timeToIdleSeconds < 0) {
+			throw new IllegalArgumentException("Time to idle should not be negative : " + timeToIdleSeconds);
+		}
+		this.timeToIdleSeconds = timeToIdleSeconds;
+	}
+
+	public EvictionAlgorithm getEvictionAlgorithm() {
+		return (evictionAlgorithm != null) ? evictionAlgorithm : EvictionAlgorithm.LRU;
+	}
+
+	/**
+	 * @param evictionAlgorithm Entry evicted when the cache is full. HAZELCAST has no FIFO and uses LRU instead
+	 */
+	public void setEvictionAlgorithm(EvictionAlgorithm evictionAlgorithm) {
+		this.evictionAlgorithm = evictionAlgorithm;
+	}
+
+	public RefreshMode getRefreshMode() {
+		return refreshMode;
+	}
+
+	/**
+	 * @param refreshMode NONE to reload configs once expired, REFRESH_AHEAD to reload them in the background
+	 * before, STALE_WHILE_REVALIDATE to keep serving them for a while after
+	 */
+	public void setRefreshMode(RefreshMode refreshMode) {
+		this.refreshMode = refreshMode;
+	}
+
+	public double getRefreshAheadFactor() {
+		return refreshAheadFactor;
+	}
+
+	/**
+	 * @param refreshAheadFactor Fraction of the time to live at which REFRESH_AHEAD reloads a config, from 0 to 1
+	 */
+	public void setRefreshAheadFactor(double refreshAheadFactor) {
+		if (refreshAheadFactor <= 0 || refreshAheadFactor >= 1) {
+			throw new IllegalArgumentException("Refresh ahead factor should be between 0 and 1 : " + refreshAheadFactor);
+		}
+		this.refreshAheadFactor = refreshAheadFactor;
+	}
+
+	public int getStaleWhileRevalidateSeconds() {
+		return staleWhileRevalidateSeconds;
+	}
+
+	/**
+	 * @param staleWhileRevalidateSeconds Time STALE_WHILE_REVALIDATE serves a config past its time to live
+	 */
+	public void setStaleWhileRevalidateSeconds(int staleWhileRevalidateSeconds) {
+		if (staleWhileRevalidateSeconds < 0) {
+			throw new IllegalArgumentException("Stale while revalidate should not be negative : " + staleWhileRevalidateSeconds);
+		}
+		this.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+	}
+
+	/**
+	 * @param defaults Policy giving the settings left unset, e.g. the defaults of a provider
+	 * @return CachePolicy Copy of this policy, with the entries, time to live, time to idle and eviction
+	 * 			left unset taken from defaults
+	 */
+	public CachePolicy withDefaults(CachePolicy defaults) {
+		CachePolicy policy = new CachePolicy();
+		policy.maxEntries = (maxEntries != null) ? maxEntries : defaults.getMaxEntries();
+		policy.maxBytes = maxBytes;
+		policy.timeToLiveSeconds = (timeToLiveSeconds != null) ? timeToLiveSeconds : defaults.getTimeToLiveSeconds();
+		policy.timeToIdleSeconds = (timeToIdleSeconds != null) ? timeToIdleSeconds : defaults.getTimeToIdleSeconds();
+		policy.evictionAlgorithm = (evictionAlgorithm != null) ? evictionAlgorithm : defaults.getEvictionAlgorithm();
+		policy.refreshMode = refreshMode;
+		policy.refreshAheadFactor = refreshAheadFactor;
+		policy.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+		return policy;
+	}
+
+	@Override
+	public String toString() {
+		return "CachePolicy{" +
+				"maxEntries=" + getMaxEntries() +
+				", maxBytes=" + maxBytes +
+				", timeToLiveSeconds=" + getTimeToLiveSeconds() +
+				", timeToIdleSeconds=" + getTimeToIdleSeconds() +
+				", evictionAlgorithm=" + getEvictionAlgorithm() +
+				", refreshMode=" + refreshMode +
+				'}';
+	}
+}
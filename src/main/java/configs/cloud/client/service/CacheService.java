@@ -1,6 +1,10 @@
 package configs.cloud.client.service;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 import configs.cloud.client.entity.Config;
 
 public interface CacheService {
@@ -11,8 +15,101 @@ public interface CacheService {
 	
 	public Config getConfigFromCache(Integer datasetId, String env, String key);
 	
+	/**
+	 * Cached configs of the keys, by key, keys not cached are left out.
+	 * Looks up the keys one by one unless the provider has a bulk read.
+	 */
+	public default Map<String, Config> getConfigsFromCache(Integer datasetId, String env, Collection<String> keys) {
+		Map<String, Config> configs = new HashMap<>();
+		for (String key : keys) {
+			Config config = getConfigFromCache(datasetId, env, key);
+			if (config != null) {
+				configs.put(key, config);
+			}
+		}
+		return configs;
+	}
+	
 	public void storeConfigToCache(Integer datasetId, List<Config> configs);
 	
 	public void storeConfigToCache(Integer datasetId, String env, Config config);
+	
+	/**
+	 * Stores configs of one environment loaded together, keeping the other
+	 * cached configs. Stores them one by one unless the provider has a bulk
+	 * store.
+	 */
+	public default void storeConfigsToCache(Integer datasetId, String env, Collection<Config> configs) {
+		for (Config config : configs) {
+			storeConfigToCache(datasetId, env, config);
+		}
+	}
+	
+	/**
+	 * Removes a config deleted on the server. Providers unable to remove an
+	 * entry keep it until it expires, the client then lists its environment
+	 * again on each sync meanwhile.
+	 */
+	public default void removeConfigFromCache(Integer datasetId, String env, String key) {
+	}
+	
+	/**
+	 * Replaces the cached config, if any, by the result of update applied to
+	 * it, atomically: a concurrent change of the config makes update run
+	 * again on the new one. update must not modify the config it is given.<br>
+	 * Providers without an atomic replace store the result over the config
+	 * read, a concurrent change of the config may then be lost.
+	 */
+	public default void updateConfigInCache(Integer datasetId, String env, String key, UnaryOperator<Config> update) {
+		Config cached = getConfigFromCache(datasetId, env, key);
+		if (cached != null) {
+			storeConfigToCache(datasetId, env, update.apply(cached));
+		}
+	}
+	
+	/**
+	 * Records that the server has no config for the key, for ttlSeconds.
+	 * Not recorded unless the provider supports negative entries.
+	 */
+	public default void storeMissingConfigToCache(Integer datasetId, String env, String key, int ttlSeconds) {
+	}
+	
+	public default boolean isConfigMissingInCache(Integer datasetId, String env, String key) {
+		return false;
+	}
+	
+	/**
+	 * Records that the server listed no config for the dataset, or for one of
+	 * its environments when env is not null, for ttlSeconds.
+	 * Not recorded unless the provider supports negative entries.
+	 */
+	public default void storeEmptyListingToCache(Integer datasetId, String env, int ttlSeconds) {
+	}
+	
+	public default boolean isEmptyListingInCache(Integer datasetId, String env) {
+		return false;
+	}
+	
+	/**
+	 * Forgets that the server had no config for the key, nor any config in
+	 * its environment or dataset, once the key has been written.
+	 */
+	public default void removeMissingConfigFromCache(Integer datasetId, String env, String key) {
+	}
+	
+	/**
+	 * Time to live of the cached configs of the dataset, 0 when they do not
+	 * expire or the provider does not know it.
+	 */
+	public default int getTimeToLiveSeconds(Integer datasetId) {
+		return 0;
+	}
+	
+	/**
+	 * Releases what the cache holds for its client, e.g. threads or
+	 * connections. The cache is not used after this call.
+	 */
+	public default void shutdown() {
+	}
 
 }
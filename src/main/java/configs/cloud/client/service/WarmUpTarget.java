@@ -0,0 +1,66 @@
+package configs.cloud.client.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dataset, or environment of a dataset, loaded into the cache by a warm-up.
+ * Key prefixes, if any, restrict the configs cached to the matching keys.
+ *
+ * @author Pushkar
+ *
+ */
+public class WarmUpTarget {
+
+	private final Integer datasetId;
+	private final String envsname;
+	private final List<String> keyPrefixes;
+
+	/**
+	 * @param datasetId Dataset id
+	 * @param envsname Environment Short name, null for the whole dataset
+	 * @param keyPrefixes Prefixes of the keys to cache, none to cache them all
+	 */
+	public WarmUpTarget(Integer datasetId, String envsname, String... keyPrefixes) {
+		if (datasetId == null || datasetId == 0) {
+			throw new IllegalArgumentException("Warm-up needs a dataset : " + datasetId);
+		}
+		this.datasetId = datasetId;
+		this.envsname = envsname;
+		this.keyPrefixes = Collections.unmodifiableList(Arrays.asList(keyPrefixes.clone()));
+	}
+
+	public Integer getDatasetId() {
+		return datasetId;
+	}
+
+	public String getEnvsname() {
+		return envsname;
+	}
+
+	public List<String> getKeyPrefixes() {
+		return keyPrefixes;
+	}
+
+	/**
+	 * @param key Key
+	 * @return boolean true if the key is to be cached
+	 */
+	public boolean matches(String key) {
+		if (keyPrefixes.isEmpty()) {
+			return true;
+		}
+		for (String prefix : keyPrefixes) {
+			if (key.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return datasetId + ":" + (envsname == null ? "" : envsname) + (keyPrefixes.isEmpty() ? "" : ":" + keyPrefixes);
+	}
+}
@@ -1,37 +1,61 @@
 package configs.cloud.client.service.impl;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 import org.apache.log4j.Logger;
 import configs.cloud.client.CloudConfigClient;
 import configs.cloud.client.entity.Config;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
 import configs.cloud.client.service.CacheService;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 
 public class EhcacheService implements CacheService {
 	
 	private static final Logger logger = Logger.getLogger(CloudConfigClient.class);
 	private static final String CONFIG_CACHE = "config_cache_";
 	private static final String ENV_KEY_SEPARATOR = ":";
+	// negative entries, each with its own time to live
+	private static final String MISSING_CACHE = "config_missing_cache";
 
 	private CacheManager cm = null;
+	private final CacheConfig cacheConfig;
 	
 	public EhcacheService() {
+		this(new CacheConfig());
+	}
+
+	/**
+	 * @param cacheConfig Policies the caches are created with, by default 1000 configs for each dataset,
+	 * 			expiring after 1000 seconds or 1000 seconds idle. The cache manager being shared, a cache
+	 * 			already created keeps its policy
+	 */
+	public EhcacheService(CacheConfig cacheConfig) {
 		cm = CacheManager.getInstance();
+		this.cacheConfig = cacheConfig.withDefaults(getDefaultPolicy());
 	}
 
 	/**
-	 * Get cache with particular name. Create one if not available and return.
+	 * Get cache with particular name. Create one with the default policy if
+	 * not available and return.
 	 * 
 	 * @param name Cache Name
 	 * @return Cache Cache 
 	 */
 
 	public Cache getCache(String name) {
+		return getCache(name, cacheConfig.getDefaultPolicy());
+	}
+
+	private Cache getCache(String name, CachePolicy policy) {
 
 		logger.debug("Getting cache : " + name);
 		Cache cache = cm.getCache(name);
@@ -42,14 +66,23 @@ public class EhcacheService implements CacheService {
 
 			CacheConfiguration cacheConfiguration = new CacheConfiguration();
 			cacheConfiguration.setName(name);
-			cacheConfiguration.setMaxEntriesLocalHeap(1000);
-			cacheConfiguration.timeToIdleSeconds(1000);
-			cacheConfiguration.timeToLiveSeconds(1000);
+			// bounded either by entries or by bytes, ehcache refuses both
+			if (policy.getMaxBytes() > 0) {
+				cacheConfiguration.setMaxBytesLocalHeap(policy.getMaxBytes());
+			} else {
+				cacheConfiguration.setMaxEntriesLocalHeap(policy.getMaxEntries());
+			}
+			cacheConfiguration.timeToIdleSeconds(policy.getTimeToIdleSeconds());
+			cacheConfiguration.timeToLiveSeconds(policy.getTimeToLiveSeconds());
+			cacheConfiguration.memoryStoreEvictionPolicy(
+					MemoryStoreEvictionPolicy.fromString(policy.getEvictionAlgorithm().name()));
 
 			cache = new Cache(cacheConfiguration);
 			logger.debug("New cache created : " + name);
 
-			cm.addCache(cache);
+			// another thread may have added it meanwhile, keep whichever won
+			cm.addCacheIfAbsent(cache);
+			cache = cm.getCache(name);
 			logger.debug("New cache added to cache manager.");
 		}
 
@@ -67,25 +100,19 @@ public class EhcacheService implements CacheService {
 
 		logger.debug("Getting config from cache. Dataset Id : " + datasetId);
 
-		Cache cache = getCache(CONFIG_CACHE + datasetId);
-		if (null != cache) {
-
-			List<Config> configs = new ArrayList<>();
-			Iterator<Object> it = cache.getKeys().iterator();
-
-			while (it.hasNext()) {
-				Object key = it.next();
-				Element element = cache.get(key);
-				configs.add((Config) element.getObjectValue());
+		List<Config> configs = new ArrayList<>();
+		String prefix = CONFIG_CACHE + datasetId + ENV_KEY_SEPARATOR;
+		for (String name : cm.getCacheNames()) {
+			if (name.startsWith(prefix)) {
+				addConfigs(cm.getCache(name), configs);
 			}
-			return configs;
 		}
-
-		return null;
+		return configs;
 	}
 
 	/**
-	 * Retrieves Configs list from the cache 
+	 * Retrieves Configs list from the cache. Each environment has its own
+	 * cache, so only the configs of the environment are read.
 	 * 
 	 * @param datasetId Dataset id
 	 * @param env Environment name
@@ -96,25 +123,9 @@ public class EhcacheService implements CacheService {
 
 		logger.debug("Getting config from cache. Dataset Id : " + datasetId + " Env : " + env);
 
-		Cache cache = getCache(CONFIG_CACHE + datasetId);
-		if (null != cache) {
-
-			List<Config> configs = new ArrayList<>();
-			Iterator<Object> it = cache.getKeys().iterator();
-
-			while (it.hasNext()) {
-
-				Object key = it.next();
-				if (((String) key).startsWith(env + ":")) {
-
-					Element element = cache.get(key);
-					configs.add((Config) element.getObjectValue());
-				}
-			}
-			return configs;
-		}
-
-		return null;
+		List<Config> configs = new ArrayList<>();
+		addConfigs(cm.getCache(getCacheName(datasetId, env)), configs);
+		return configs;
 	}
 
 	/**
@@ -130,10 +141,10 @@ public class EhcacheService implements CacheService {
 
 		logger.debug("Getting config from cache. Dataset Id : " + datasetId + " Env : " + env + " Key : " + key);
 
-		Cache cache = getCache(CONFIG_CACHE + datasetId);
+		Cache cache = cm.getCache(getCacheName(datasetId, env));
 		if (null != cache) {
 
-			Element element = cache.get(env + ENV_KEY_SEPARATOR + key);
+			Element element = cache.get(key);
 			if (element != null) {
 				return (Config) element.getObjectValue();
 			}
@@ -142,6 +153,34 @@ public class EhcacheService implements CacheService {
 		return null;
 	}
 
+	/**
+	 * Get Config objects for a set of keys from cache, in one bulk read
+	 * 
+	 * @param datasetId DatasetId 
+	 * @param env		Environment short name 
+	 * @param keys	Keys
+	 * @return {@link Map}&lt;String, {@link Config}&gt; Configs found, by key
+	 */
+	@Override
+	public Map<String, Config> getConfigsFromCache(Integer datasetId, String env, Collection<String> keys) {
+
+		logger.debug("Getting configs from cache. Dataset Id : " + datasetId + " Env : " + env + " Keys : " + keys.size());
+
+		Map<String, Config> configs = new HashMap<>();
+		Cache cache = cm.getCache(getCacheName(datasetId, env));
+		if (null != cache) {
+
+			for (Element element : cache.getAll(keys).values()) {
+				if (element != null) {
+					Config config = (Config) element.getObjectValue();
+					configs.put(config.getKey(), config);
+				}
+			}
+		}
+
+		return configs;
+	}
+
 	/**
 	 * Stores Config object to Cache
 	 * 
@@ -151,8 +190,8 @@ public class EhcacheService implements CacheService {
 	@Override
 	public void storeConfigToCache(Integer datasetId, List<Config> configs) {
 
-		Cache cache = getCache(CONFIG_CACHE + datasetId);
 		for (Config config : configs) {
+			Cache cache = getConfigCache(datasetId, config.getEnv().getSname());
 			if (null != cache) {
 				cache.put(getElement(config));
 			}
@@ -168,15 +207,184 @@ public class EhcacheService implements CacheService {
 	 */
 	@Override
 	public void storeConfigToCache(Integer datasetId, String env, Config config) {
-		Cache cache = getCache(CONFIG_CACHE + datasetId);
+		Cache cache = getConfigCache(datasetId, env);
 		if (null != cache) {
 			cache.put(getElement(config));
 		}
 	}
 
+	@Override
+	public void updateConfigInCache(Integer datasetId, String env, String key, UnaryOperator<Config> update) {
+
+		Cache cache = cm.getCache(getCacheName(datasetId, env));
+		if (null == cache) {
+			return;
+		}
+
+		// compare and set, replace fails when the element changed meanwhile
+		while (true) {
+			Element element = cache.get(key);
+			if (element == null) {
+				return;
+			}
+			Config updated = update.apply((Config) element.getObjectValue());
+			if (cache.replace(element, getElement(updated))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes config from Cache
+	 * 
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param key Key
+	 */
+	@Override
+	public void removeConfigFromCache(Integer datasetId, String env, String key) {
+		Cache cache = cm.getCache(getCacheName(datasetId, env));
+		if (null != cache) {
+			cache.remove(key);
+		}
+	}
+
+	/**
+	 * Records that the server has no config for the key
+	 * 
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param key Key
+	 * @param ttlSeconds Time the key is considered missing
+	 */
+	@Override
+	public void storeMissingConfigToCache(Integer datasetId, String env, String key, int ttlSeconds) {
+		storeMissing(getMissingKey(datasetId, env, key), ttlSeconds);
+	}
+
+	@Override
+	public boolean isConfigMissingInCache(Integer datasetId, String env, String key) {
+		return isMissing(getMissingKey(datasetId, env, key));
+	}
+
+	/**
+	 * Records that the server listed no config for the dataset or environment
+	 * 
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name, null for the whole dataset
+	 * @param ttlSeconds Time the listing is considered empty
+	 */
+	@Override
+	public void storeEmptyListingToCache(Integer datasetId, String env, int ttlSeconds) {
+		storeMissing(getMissingKey(datasetId, env, null), ttlSeconds);
+	}
+
+	@Override
+	public boolean isEmptyListingInCache(Integer datasetId, String env) {
+		return isMissing(getMissingKey(datasetId, env, null));
+	}
+
+	@Override
+	public void removeMissingConfigFromCache(Integer datasetId, String env, String key) {
+		Cache cache = cm.getCache(MISSING_CACHE);
+		if (null != cache) {
+			cache.remove(getMissingKey(datasetId, env, key));
+			cache.remove(getMissingKey(datasetId, env, null));
+			cache.remove(getMissingKey(datasetId, null, null));
+		}
+	}
+
+	@Override
+	public int getTimeToLiveSeconds(Integer datasetId) {
+		return cacheConfig.getPolicy(datasetId).getTimeToLiveSeconds();
+	}
+
+	private Cache getConfigCache(Integer datasetId, String env) {
+
+		String name = getCacheName(datasetId, env);
+		Cache cache = cm.getCache(name);
+		if (null == cache) {
+			// the limit of the dataset is shared by its environments
+			synchronized (this) {
+				CachePolicy policy = cacheConfig.getPolicy(datasetId);
+				cache = getCache(name, policy);
+				resizeConfigCaches(datasetId, policy);
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Divides the limit of the policy between the caches of the dataset, one
+	 * for each environment, so that together they stay within it.
+	 */
+	private void resizeConfigCaches(Integer datasetId, CachePolicy policy) {
+
+		List<Cache> caches = new ArrayList<>();
+		String prefix = CONFIG_CACHE + datasetId + ENV_KEY_SEPARATOR;
+		for (String name : cm.getCacheNames()) {
+			if (name.startsWith(prefix)) {
+				caches.add(cm.getCache(name));
+			}
+		}
+
+		for (Cache cache : caches) {
+			CacheConfiguration cacheConfiguration = cache.getCacheConfiguration();
+			if (policy.getMaxBytes() > 0 && cacheConfiguration.getMaxBytesLocalHeap() > 0) {
+				cacheConfiguration.setMaxBytesLocalHeap(Math.max(1, policy.getMaxBytes() / caches.size()));
+			} else if (policy.getMaxBytes() == 0 && cacheConfiguration.getMaxBytesLocalHeap() == 0) {
+				cacheConfiguration.setMaxEntriesLocalHeap(Math.max(1, policy.getMaxEntries() / caches.size()));
+			}
+		}
+		logger.debug("Config caches resized. Dataset Id : " + datasetId + " Caches : " + caches.size());
+	}
+
+	private void storeMissing(String missingKey, int ttlSeconds) {
+		Cache cache = getCache(MISSING_CACHE);
+		if (null != cache) {
+			Element element = new Element(missingKey, Boolean.TRUE);
+			element.setTimeToLive(ttlSeconds);
+			cache.put(element);
+		}
+	}
+
+	private boolean isMissing(String missingKey) {
+		Cache cache = cm.getCache(MISSING_CACHE);
+		return null != cache && null != cache.get(missingKey);
+	}
+
+	// keys of the config "2:dev:key", of listings "2:dev:" and "2::"
+	private static String getMissingKey(Integer datasetId, String env, String key) {
+		return datasetId + ENV_KEY_SEPARATOR + (env == null ? "" : env) + ENV_KEY_SEPARATOR + (key == null ? "" : key);
+	}
+
 	private Element getElement(Config config) {
 		logger.debug(" Dataset :" + config.getDataset().getDatasetid() + " key : " + config.getEnv().getSname() + ENV_KEY_SEPARATOR + config.getKey());
-		return new Element(config.getEnv().getSname() + ENV_KEY_SEPARATOR + config.getKey(), config);
+		return new Element(config.getKey(), config);
+	}
+
+	// one cache per dataset and environment, e.g. config_cache_2:dev
+	private static CachePolicy getDefaultPolicy() {
+		CachePolicy policy = new CachePolicy();
+		policy.setMaxEntries(1000);
+		policy.setTimeToLiveSeconds(1000);
+		policy.setTimeToIdleSeconds(1000);
+		return policy;
+	}
+
+	private static String getCacheName(Integer datasetId, String env) {
+		return CONFIG_CACHE + datasetId + ENV_KEY_SEPARATOR + env;
+	}
+
+	private static void addConfigs(Cache cache, List<Config> configs) {
+		if (null != cache) {
+			// entries may expire between listing the keys and reading them
+			for (Element element : cache.getAll(cache.getKeys()).values()) {
+				if (element != null) {
+					configs.add((Config) element.getObjectValue());
+				}
+			}
+		}
 	}
 
 }
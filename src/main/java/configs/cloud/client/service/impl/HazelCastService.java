@@ -1,19 +1,44 @@
 package configs.cloud.client.service.impl;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
 
 import org.apache.log4j.Logger;
 
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.InMemoryFormat;
 import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MapIndexConfig;
 import com.hazelcast.config.MapConfig.EvictionPolicy;
+import com.hazelcast.config.MaxSizeConfig;
+import com.hazelcast.config.MaxSizeConfig.MaxSizePolicy;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryEventType;
 import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastException;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.query.Predicates;
 
 import configs.cloud.client.CloudConfigClient;
 import configs.cloud.client.entity.Config;
+import configs.cloud.client.enums.EvictionAlgorithm;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
 import configs.cloud.client.service.CacheService;
 
 public class HazelCastService implements CacheService {
@@ -21,34 +46,104 @@ public class HazelCastService implements CacheService {
 	private static final Logger logger = Logger.getLogger(CloudConfigClient.class);	
 	private static final String CONFIG_CACHE = "config_cache_";
 	private static final String ENV_KEY_SEPARATOR = ":";
+	// attribute of Config holding the environment short name, indexed
+	private static final String ENV_ATTRIBUTE = "env.sname";
+	// negative entries, each with its own time to live. Matches the client near cache
+	private static final String MISSING_CACHE = CONFIG_CACHE + "missing";
+	private static final int BYTES_PER_MB = 1024 * 1024;
 	
-	private com.hazelcast.config.Config cfg = null;
 	private HazelcastInstance instance = null;
+	private final CacheConfig cacheConfig;
+	// the cluster configures the maps, configs are stored with the time to live of their policy
+	private final boolean clientMode;
+	private final Set<String> indexedMaps = ConcurrentHashMap.<String>newKeySet();
 	
 	public HazelCastService() {
+		this(new CacheConfig());
+	}
+
+	/**
+	 * Starts a member whose config_cache_* maps follow the policies. Map
+	 * configs are only read when a map is first created, so they are all
+	 * registered before the member starts.
+	 * 
+	 * @param cacheConfig Policies of the maps, the default one for config_cache_*. By default configs
+	 * 			expire after 20 seconds, with LFU eviction and no limit
+	 */
+	public HazelCastService(CacheConfig cacheConfig) {
 		
 		logger.debug("Initializing Hazel Cast Service...");		
 		
-		cfg = new com.hazelcast.config.Config();				
+		this.cacheConfig = cacheConfig.withDefaults(getDefaultPolicy());
+		this.clientMode = false;
+		com.hazelcast.config.Config cfg = new com.hazelcast.config.Config();
+		cfg.addMapConfig(getMapConfig(CONFIG_CACHE + "*", this.cacheConfig.getDefaultPolicy()));
+		for (Map.Entry<Integer, CachePolicy> entry : this.cacheConfig.getDatasetPolicies().entrySet()) {
+			cfg.addMapConfig(getMapConfig(CONFIG_CACHE + entry.getKey(), entry.getValue()));
+		}
+		// exact names win over the wildcard : negative entries expire on their own and are not indexed
+		MapConfig missingConfig = new MapConfig(MISSING_CACHE);
+		missingConfig.setMaxSizeConfig(new MaxSizeConfig(
+				Math.min(this.cacheConfig.getDefaultPolicy().getMaxEntries(), CachePolicy.DEFAULT_MAX_ENTRIES), MaxSizePolicy.PER_NODE));
+		missingConfig.setEvictionPolicy(EvictionPolicy.LRU);
+		cfg.addMapConfig(missingConfig);
 		instance = Hazelcast.newHazelcastInstance(cfg);
 		
 		logger.debug("Hazel Cast Service initializied.");	
 	}
 
-	public Map<String, Config> getCache(String name) {
+	/**
+	 * Client mode: connects to an existing cluster instead of starting a
+	 * member in this JVM, so the application neither owns partitions nor
+	 * takes part in migrations. Reads of config_cache_* maps are served by a
+	 * near cache invalidated by the cluster on change. A near cache
+	 * configured for these maps in the client config is used as is.
+	 * 
+	 * @param clientConfig Client config, e.g. loaded from hazelcast-client.xml
+	 */
+	public HazelCastService(ClientConfig clientConfig) {
+		this(clientConfig, new CacheConfig());
+	}
+
+	/**
+	 * Client mode, with a near cache sized and evicting as the default
+	 * policy says. Sizes of the maps are those of the cluster, configs are
+	 * stored with the time to live of the policy of their dataset.
+	 * 
+	 * @param clientConfig Client config, e.g. loaded from hazelcast-client.xml
+	 * @param cacheConfig Policies, the default one sizes the near cache
+	 */
+	public HazelCastService(ClientConfig clientConfig, CacheConfig cacheConfig) {
+
+		logger.debug("Initializing Hazel Cast client Service...");
+
+		this.cacheConfig = cacheConfig.withDefaults(getDefaultPolicy());
+		this.clientMode = true;
+		if (clientConfig.getNearCacheConfig(CONFIG_CACHE + "*") == null) {
+			CachePolicy policy = this.cacheConfig.getDefaultPolicy();
+			NearCacheConfig nearCacheConfig = new NearCacheConfig();
+			nearCacheConfig.setName(CONFIG_CACHE + "*");
+			nearCacheConfig.setMaxSize(policy.getMaxEntries());
+			nearCacheConfig.setEvictionPolicy(getEvictionPolicy(policy).name());
+			nearCacheConfig.setInvalidateOnChange(true);
+			// cached objects are handed out as is, without deserializing them on every read
+			nearCacheConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+			clientConfig.addNearCacheConfig(CONFIG_CACHE + "*", nearCacheConfig);
+		}
+		instance = HazelcastClient.newHazelcastClient(clientConfig);
+
+		logger.debug("Hazel Cast client Service initializied.");
+	}
+
+	public IMap<String, Config> getCache(String name) {
 
 		logger.debug("Getting cache : " + name);
 		
-		if(cfg.getMapConfig(name) == null) {
-			
-			MapConfig mapConfig = new MapConfig();			
-			mapConfig.setName(name);			
-			mapConfig.setTimeToLiveSeconds(20);
-			mapConfig.setEvictionPolicy(EvictionPolicy.LFU);			
-	        cfg.getMapConfigs().put(name, mapConfig);
-		}	    
-		
-		Map<String, Config> cacheMap = instance.getMap(name);
+		IMap<String, Config> cacheMap = instance.getMap(name);
+		if (indexedMaps.add(name)) {
+			// no-op when the map was created with the index or another member added it
+			cacheMap.addIndex(ENV_ATTRIBUTE, false);
+		}
 		return cacheMap;		
 	}
 
@@ -57,8 +152,8 @@ public class HazelCastService implements CacheService {
 
 		logger.debug("Getting config from cache. Dataset Id : " + datasetId);
 		
-		Map<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);		
-		List<Config> configs = (List<Config>) cacheMap.values();
+		IMap<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);		
+		List<Config> configs = new ArrayList<>(cacheMap.values());
 		
 		if(configs.size() > 0) {
 			return configs;
@@ -70,16 +165,11 @@ public class HazelCastService implements CacheService {
 	@Override
 	public List<Config> getConfigListFromCache(Integer datasetId, String env) {
 		
-		Map<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);		
-		List<Config> configs = new ArrayList<>();
-		
-		Iterator<String> keys = cacheMap.keySet().iterator();
-		if(keys.hasNext()) {
-			String key = keys.next();
-			if(key.startsWith(env + ":")) {
-				configs.add(cacheMap.get(key));
-			}
-		}
+		logger.debug("Getting config from cache. Dataset Id : " + datasetId + " Env : " + env);
+
+		// one indexed query run in parallel on the partitions
+		IMap<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);		
+		List<Config> configs = new ArrayList<>(cacheMap.values(Predicates.equal(ENV_ATTRIBUTE, env)));
 		
 		if(configs.size() > 0){
 			return configs;
@@ -94,27 +184,228 @@ public class HazelCastService implements CacheService {
 		return cacheMap.get(env + ENV_KEY_SEPARATOR + key);
 	}
 
+	@Override
+	public Map<String, Config> getConfigsFromCache(Integer datasetId, String env, Collection<String> keys) {
+
+		IMap<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);
+
+		Set<String> cacheKeys = new HashSet<>();
+		for (String key : keys) {
+			cacheKeys.add(env + ENV_KEY_SEPARATOR + key);
+		}
+
+		// one partition parallel call instead of a get per key
+		Map<String, Config> configs = new HashMap<>();
+		for (Config config : cacheMap.getAll(cacheKeys).values()) {
+			configs.put(config.getKey(), config);
+		}
+		return configs;
+	}
+
 	@Override
 	public void storeConfigToCache(Integer datasetId, List<Config> configs) {
-		Map<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);		
+		IMap<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);		
+		Map<String, Config> entries = new HashMap<>();
 		for (Config config : configs) {
-			if (null != cfg) {
-				addConfigToCache(cacheMap, config);
+			entries.put(config.getEnv().getSname() + ENV_KEY_SEPARATOR + config.getKey(), config);
+		}
+
+		if (!clientMode) {
+			// one bulk operation instead of a put per config
+			cacheMap.putAll(entries);
+			return;
+		}
+
+		// putAll takes no time to live, the puts are sent without waiting for each other
+		int ttlSeconds = getTimeToLiveSeconds(datasetId);
+		List<Future<Config>> puts = new ArrayList<>();
+		for (Map.Entry<String, Config> entry : entries.entrySet()) {
+			puts.add(cacheMap.putAsync(entry.getKey(), entry.getValue(), ttlSeconds, TimeUnit.SECONDS));
+		}
+		try {
+			for (Future<Config> put : puts) {
+				put.get();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HazelcastException("Interrupted storing configs of dataset " + datasetId, e);
+		} catch (ExecutionException e) {
+			throw new HazelcastException("Unable to store configs of dataset " + datasetId, e.getCause());
 		}
 	}
 
 	@Override
 	public void storeConfigToCache(Integer datasetId, String env, Config config) {
 		
-		Map<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);
-		addConfigToCache(cacheMap, config);
+		IMap<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);
+		addConfigToCache(cacheMap, datasetId, config);
+	}
+
+	@Override
+	public void updateConfigInCache(Integer datasetId, String env, String key, UnaryOperator<Config> update) {
+
+		IMap<String, Config> cacheMap = getCache(CONFIG_CACHE + datasetId);
+		String cacheKey = env + ENV_KEY_SEPARATOR + key;
+
+		if (clientMode) {
+			// replace takes no time to live, the entry would get the one of the cluster
+			cacheMap.delete(cacheKey);
+			return;
+		}
+
+		// compare and set on the owner of the key, other members and near caches see the new config
+		while (true) {
+			Config cached = cacheMap.get(cacheKey);
+			if (cached == null) {
+				return;
+			}
+			if (cacheMap.replace(cacheKey, cached, update.apply(cached))) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void removeConfigFromCache(Integer datasetId, String env, String key) {
+		// delete, unlike remove, does not send the old value back
+		getCache(CONFIG_CACHE + datasetId).delete(env + ENV_KEY_SEPARATOR + key);
+	}
+
+	/**
+	 * Calls listener with the env and key of each config of the dataset
+	 * stored or removed by another member, or evicted or expired on any
+	 * member, so that copies held outside the cluster can be dropped.
+	 * Listeners are called on a Hazelcast event thread, after the change.
+	 * 
+	 * @param datasetId Dataset id
+	 * @param listener Called with the env and the key of the config
+	 */
+	public void addInvalidationListener(Integer datasetId, BiConsumer<String, String> listener) {
+
+		// without values, members only receive the keys
+		getCache(CONFIG_CACHE + datasetId).addEntryListener(new EntryAdapter<String, Config>() {
+			@Override
+			public void onEntryEvent(EntryEvent<String, Config> event) {
+				boolean local = event.getMember() != null && event.getMember().localMember();
+				if (local && event.getEventType() != EntryEventType.EVICTED) {
+					return;
+				}
+				String cacheKey = event.getKey();
+				int separator = cacheKey.indexOf(ENV_KEY_SEPARATOR);
+				if (separator > 0) {
+					listener.accept(cacheKey.substring(0, separator), cacheKey.substring(separator + 1));
+				}
+			}
+		}, false);
+	}
+
+	@Override
+	public void storeMissingConfigToCache(Integer datasetId, String env, String key, int ttlSeconds) {
+		getMissingCache().put(getMissingKey(datasetId, env, key), Boolean.TRUE, ttlSeconds, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public boolean isConfigMissingInCache(Integer datasetId, String env, String key) {
+		return getMissingCache().containsKey(getMissingKey(datasetId, env, key));
 	}
 
-	private void addConfigToCache(Map<String, Config> cacheMap, Config config) {
+	@Override
+	public void storeEmptyListingToCache(Integer datasetId, String env, int ttlSeconds) {
+		getMissingCache().put(getMissingKey(datasetId, env, null), Boolean.TRUE, ttlSeconds, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public boolean isEmptyListingInCache(Integer datasetId, String env) {
+		return getMissingCache().containsKey(getMissingKey(datasetId, env, null));
+	}
+
+	@Override
+	public void removeMissingConfigFromCache(Integer datasetId, String env, String key) {
+		IMap<String, Boolean> missing = getMissingCache();
+		missing.delete(getMissingKey(datasetId, env, key));
+		missing.delete(getMissingKey(datasetId, env, null));
+		missing.delete(getMissingKey(datasetId, null, null));
+	}
+
+	@Override
+	public int getTimeToLiveSeconds(Integer datasetId) {
+		// map config of members started by this service, set on each entry in client mode
+		return cacheConfig.getPolicy(datasetId).getTimeToLiveSeconds();
+	}
+
+	/**
+	 * Shuts down the member started by this service, or disconnects the
+	 * client from the cluster.
+	 */
+	@Override
+	public void shutdown() {
+		logger.debug("Shutting down Hazel Cast Service...");
+		try {
+			instance.shutdown();
+		} catch (HazelcastException e) {
+			if (!clientMode) {
+				throw e;
+			}
+			// 3.2 clients close their connections before unregistering the near cache listeners
+			logger.debug("Near cache listeners not unregistered : " + e.getMessage());
+		}
+	}
+
+	// what the maps had before policies could be set
+	static CachePolicy getDefaultPolicy() {
+		CachePolicy policy = new CachePolicy();
+		policy.setMaxEntries(Integer.MAX_VALUE);
+		policy.setTimeToLiveSeconds(20);
+		policy.setEvictionAlgorithm(EvictionAlgorithm.LFU);
+		return policy;
+	}
+
+	private static MapConfig getMapConfig(String name, CachePolicy policy) {
+
+		MapConfig mapConfig = new MapConfig(name);
+		mapConfig.setTimeToLiveSeconds(policy.getTimeToLiveSeconds());
+		mapConfig.setMaxIdleSeconds(policy.getTimeToIdleSeconds());
+		if (policy.getMaxBytes() > 0) {
+			// heap used by the map on each member, counted in MB
+			int megabytes = (int) Math.max(1, (policy.getMaxBytes() + BYTES_PER_MB - 1) / BYTES_PER_MB);
+			mapConfig.setMaxSizeConfig(new MaxSizeConfig(megabytes, MaxSizePolicy.USED_HEAP_SIZE));
+		} else {
+			mapConfig.setMaxSizeConfig(new MaxSizeConfig(policy.getMaxEntries(), MaxSizePolicy.PER_NODE));
+		}
+		mapConfig.setEvictionPolicy(getEvictionPolicy(policy));
+		mapConfig.addMapIndexConfig(new MapIndexConfig(ENV_ATTRIBUTE, false));
+		return mapConfig;
+	}
+
+	private static EvictionPolicy getEvictionPolicy(CachePolicy policy) {
+		if (policy.getEvictionAlgorithm() == EvictionAlgorithm.LFU) {
+			return EvictionPolicy.LFU;
+		}
+		if (policy.getEvictionAlgorithm() == EvictionAlgorithm.FIFO) {
+			logger.warn("Hazelcast has no FIFO eviction, LRU is used instead");
+		}
+		return EvictionPolicy.LRU;
+	}
+
+	// not created through getCache, its values are not Configs to index
+	private IMap<String, Boolean> getMissingCache() {
+		return instance.getMap(MISSING_CACHE);
+	}
+
+	// keys of the config "2:dev:key", of listings "2:dev:" and "2::"
+	private static String getMissingKey(Integer datasetId, String env, String key) {
+		return datasetId + ENV_KEY_SEPARATOR + (env == null ? "" : env) + ENV_KEY_SEPARATOR + (key == null ? "" : key);
+	}
+
+	private void addConfigToCache(IMap<String, Config> cacheMap, Integer datasetId, Config config) {
 		
 		logger.debug(" Dataset :" + config.getDataset().getDatasetid() + " key : " + 
 				config.getEnv().getSname() + ENV_KEY_SEPARATOR + config.getKey());
-		cacheMap.put(config.getEnv().getSname() + ENV_KEY_SEPARATOR + config.getKey(), config);
+		String cacheKey = config.getEnv().getSname() + ENV_KEY_SEPARATOR + config.getKey();
+		if (clientMode) {
+			cacheMap.set(cacheKey, config, getTimeToLiveSeconds(datasetId), TimeUnit.SECONDS);
+		} else {
+			cacheMap.put(cacheKey, config);
+		}
 	} 
 }
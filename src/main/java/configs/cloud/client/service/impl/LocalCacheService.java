@@ -0,0 +1,335 @@
+package configs.cloud.client.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.apache.log4j.Logger;
+
+import configs.cloud.client.CloudConfigClient;
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
+import configs.cloud.client.service.CacheService;
+import configs.cloud.client.util.TinyLfuCache;
+
+/**
+ * Lightweight in-JVM cache owned by its client, without any global
+ * singleton. The configs of each dataset are held in a {@link TinyLfuCache}
+ * sized by the policy of the dataset, so frequently read configs survive
+ * bursts of one-off lookups, and expire individually when read. An index of
+ * the keys of each environment keeps listings proportional to the
+ * environment size.
+ *
+ * @author Pushkar
+ *
+ */
+public class LocalCacheService implements CacheService {
+
+	private static final Logger logger = Logger.getLogger(CloudConfigClient.class);
+	private static final String ENV_KEY_SEPARATOR = ":";
+
+	private final CacheConfig cacheConfig;
+	private final ConcurrentMap<Integer, TinyLfuCache<ConfigKey, Config>> configs = new ConcurrentHashMap<>();
+	private final TinyLfuCache<String, Boolean> missing;
+
+	// keys cached for each dataset and environment, maintained on store and removal
+	private final ConcurrentMap<Integer, ConcurrentMap<String, Set<String>>> index = new ConcurrentHashMap<>();
+
+	public LocalCacheService() {
+		this(new CacheConfig());
+	}
+
+	/**
+	 * @param maximumSize Maximum number of configs held for each dataset
+	 * @param ttlSeconds Time to live of a config, 0 for no expiry
+	 */
+	public LocalCacheService(int maximumSize, int ttlSeconds) {
+		this(getCacheConfig(maximumSize, ttlSeconds));
+	}
+
+	/**
+	 * @param cacheConfig Policies, giving the entries, time to live and time to idle of each dataset
+	 */
+	public LocalCacheService(CacheConfig cacheConfig) {
+		this.cacheConfig = cacheConfig;
+		this.missing = new TinyLfuCache<>(cacheConfig.getDefaultPolicy().getMaxEntries(), null);
+	}
+
+	/**
+	 * Retrieves Configs list from the cache
+	 *
+	 * @param datasetId Dataset id
+	 * @return {@link List}&lt;{@link Config}&gt; List of Config objects
+	 */
+	@Override
+	public List<Config> getConfigListFromCache(Integer datasetId) {
+
+		logger.debug("Getting config from cache. Dataset Id : " + datasetId);
+
+		List<Config> list = new ArrayList<>();
+		ConcurrentMap<String, Set<String>> envs = index.get(datasetId);
+		if (envs != null) {
+			for (String env : envs.keySet()) {
+				addConfigs(datasetId, env, list);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Retrieves Configs list from the cache
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment name
+	 * @return {@link List}&lt;{@link Config}&gt; List of Config objects
+	 */
+	@Override
+	public List<Config> getConfigListFromCache(Integer datasetId, String env) {
+
+		logger.debug("Getting config from cache. Dataset Id : " + datasetId + " Env : " + env);
+
+		List<Config> list = new ArrayList<>();
+		if (env != null) {
+			addConfigs(datasetId, env, list);
+		}
+		return list;
+	}
+
+	/**
+	 * Get Config Object from cache
+	 *
+	 * @param datasetId DatasetId
+	 * @param env		Environment short name
+	 * @param key	Key
+	 * @return Config Config object
+	 */
+	@Override
+	public Config getConfigFromCache(Integer datasetId, String env, String key) {
+		TinyLfuCache<ConfigKey, Config> cache = configs.get(datasetId);
+		return (cache == null) ? null : cache.get(new ConfigKey(datasetId, env, key));
+	}
+
+	/**
+	 * Get Config objects for a set of keys from cache
+	 *
+	 * @param datasetId DatasetId
+	 * @param env		Environment short name
+	 * @param keys	Keys
+	 * @return {@link Map}&lt;String, {@link Config}&gt; Configs found, by key
+	 */
+	@Override
+	public Map<String, Config> getConfigsFromCache(Integer datasetId, String env, Collection<String> keys) {
+
+		Map<String, Config> found = new HashMap<>();
+		TinyLfuCache<ConfigKey, Config> cache = configs.get(datasetId);
+		if (cache == null) {
+			return found;
+		}
+		for (String key : keys) {
+			Config config = cache.get(new ConfigKey(datasetId, env, key));
+			if (config != null) {
+				found.put(key, config);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Stores Config object to Cache
+	 *
+	 * @param datasetId Dataset id
+	 * @param configs List of Config objects to store
+	 */
+	@Override
+	public void storeConfigToCache(Integer datasetId, List<Config> configs) {
+		for (Config config : configs) {
+			storeConfigToCache(datasetId, config.getEnv().getSname(), config);
+		}
+	}
+
+	/**
+	 * Stores config to Cache
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param config Config object
+	 */
+	@Override
+	public void storeConfigToCache(Integer datasetId, String env, Config config) {
+		long ttlNanos = TimeUnit.SECONDS.toNanos(cacheConfig.getPolicy(datasetId).getTimeToLiveSeconds());
+		getCache(datasetId).put(new ConfigKey(datasetId, env, config.getKey()), config, ttlNanos);
+		// indexed after the put, an eviction racing with it then leaves at most a stale key in the index
+		getIndex(datasetId, env).add(config.getKey());
+	}
+
+	@Override
+	public void updateConfigInCache(Integer datasetId, String env, String key, UnaryOperator<Config> update) {
+
+		TinyLfuCache<ConfigKey, Config> cache = configs.get(datasetId);
+		if (cache == null) {
+			return;
+		}
+		ConfigKey configKey = new ConfigKey(datasetId, env, key);
+		while (true) {
+			Config cached = cache.get(configKey);
+			if (cached == null || cache.replace(configKey, cached, update.apply(cached))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes config from Cache
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param key Key
+	 */
+	@Override
+	public void removeConfigFromCache(Integer datasetId, String env, String key) {
+		// the removal listener drops the key from the index
+		TinyLfuCache<ConfigKey, Config> cache = configs.get(datasetId);
+		if (cache != null) {
+			cache.remove(new ConfigKey(datasetId, env, key));
+		}
+	}
+
+	@Override
+	public void storeMissingConfigToCache(Integer datasetId, String env, String key, int ttlSeconds) {
+		missing.put(getMissingKey(datasetId, env, key), Boolean.TRUE, TimeUnit.SECONDS.toNanos(ttlSeconds));
+	}
+
+	@Override
+	public boolean isConfigMissingInCache(Integer datasetId, String env, String key) {
+		return missing.get(getMissingKey(datasetId, env, key)) != null;
+	}
+
+	@Override
+	public void storeEmptyListingToCache(Integer datasetId, String env, int ttlSeconds) {
+		missing.put(getMissingKey(datasetId, env, null), Boolean.TRUE, TimeUnit.SECONDS.toNanos(ttlSeconds));
+	}
+
+	@Override
+	public boolean isEmptyListingInCache(Integer datasetId, String env) {
+		return missing.get(getMissingKey(datasetId, env, null)) != null;
+	}
+
+	@Override
+	public void removeMissingConfigFromCache(Integer datasetId, String env, String key) {
+		missing.remove(getMissingKey(datasetId, env, key));
+		missing.remove(getMissingKey(datasetId, env, null));
+		missing.remove(getMissingKey(datasetId, null, null));
+	}
+
+	@Override
+	public int getTimeToLiveSeconds(Integer datasetId) {
+		return cacheConfig.getPolicy(datasetId).getTimeToLiveSeconds();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private TinyLfuCache<ConfigKey, Config> getCache(Integer datasetId) {
+
+		TinyLfuCache<ConfigKey, Config> cache = configs.get(datasetId);
+		if (cache == null) {
+			CachePolicy policy = cacheConfig.getPolicy(datasetId);
+			cache = new TinyLfuCache<>(policy.getMaxEntries(), TimeUnit.SECONDS.toNanos(policy.getTimeToIdleSeconds()),
+					(key, config) -> getIndex(key.datasetId, key.env).remove(key.key));
+			TinyLfuCache<ConfigKey, Config> existing = configs.putIfAbsent(datasetId, cache);
+			if (existing != null) {
+				cache = existing;
+			}
+		}
+		return cache;
+	}
+
+	private void addConfigs(Integer datasetId, String env, List<Config> list) {
+		TinyLfuCache<ConfigKey, Config> cache = configs.get(datasetId);
+		if (cache == null) {
+			return;
+		}
+		for (String key : getIndex(datasetId, env)) {
+			Config config = cache.get(new ConfigKey(datasetId, env, key));
+			if (config != null) {
+				list.add(config);
+			}
+		}
+	}
+
+	private Set<String> getIndex(Integer datasetId, String env) {
+
+		ConcurrentMap<String, Set<String>> envs = index.get(datasetId);
+		if (envs == null) {
+			envs = new ConcurrentHashMap<>();
+			ConcurrentMap<String, Set<String>> existing = index.putIfAbsent(datasetId, envs);
+			if (existing != null) {
+				envs = existing;
+			}
+		}
+
+		Set<String> keys = envs.get(env);
+		if (keys == null) {
+			keys = ConcurrentHashMap.<String>newKeySet();
+			Set<String> existing = envs.putIfAbsent(env, keys);
+			if (existing != null) {
+				keys = existing;
+			}
+		}
+		return keys;
+	}
+
+	private static CacheConfig getCacheConfig(int maximumSize, int ttlSeconds) {
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.getDefaultPolicy().setMaxEntries(maximumSize);
+		cacheConfig.getDefaultPolicy().setTimeToLiveSeconds(ttlSeconds);
+		return cacheConfig;
+	}
+
+	// keys of the config "2:dev:key", of listings "2:dev:" and "2::"
+	private static String getMissingKey(Integer datasetId, String env, String key) {
+		return datasetId + ENV_KEY_SEPARATOR + (env == null ? "" : env) + ENV_KEY_SEPARATOR + (key == null ? "" : key);
+	}
+
+	private static final class ConfigKey {
+
+		final Integer datasetId;
+		final String env;
+		final String key;
+		final int hash;
+
+		ConfigKey(Integer datasetId, String env, String key) {
+			this.datasetId = datasetId;
+			this.env = env;
+			this.key = key;
+			this.hash = 31 * (31 * datasetId.hashCode() + env.hashCode()) + key.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ConfigKey)) {
+				return false;
+			}
+			ConfigKey other = (ConfigKey) obj;
+			return hash == other.hash && key.equals(other.key) && env.equals(other.env)
+					&& datasetId.equals(other.datasetId);
+		}
+	}
+}
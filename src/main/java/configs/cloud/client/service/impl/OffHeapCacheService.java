@@ -0,0 +1,523 @@
+package configs.cloud.client.service.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import configs.cloud.client.CloudConfigClient;
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CacheService;
+
+/**
+ * Cache keeping configs out of the Java heap, for datasets too large to be
+ * held as objects. Configs are serialized to JSON and appended to an arena
+ * memory-mapped from a temporary file, found through an open-addressing
+ * index held in a direct buffer, and only decoded when read. The heap used
+ * by the cache does not grow with the dataset.<br>
+ * A stored config supersedes the previous record of its key; the space of
+ * superseded records is reclaimed by clearing the whole cache once the
+ * arena is full.
+ *
+ * @author Pushkar
+ *
+ */
+public class OffHeapCacheService implements CacheService {
+
+	private static final Logger logger = Logger.getLogger(CloudConfigClient.class);
+	private static final int DEFAULT_ARENA_BYTES = 64 * 1024 * 1024;
+	private static final int INITIAL_SLOTS = 1024;
+	private static final int SLOT_BYTES = 8;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectReader CONFIG_READER = MAPPER.reader(Config.class);
+	private static final ObjectWriter CONFIG_WRITER = MAPPER.writer();
+	private static final byte[] NO_VALUE = new byte[0];
+
+	// record kinds, negative entries share the arena with the configs
+	private static final byte CONFIG = 0;
+	private static final byte MISSING_CONFIG = 1;
+	private static final byte EMPTY_LISTING = 2;
+
+	// record layout : expiry time (long, 0 for never), dataset id (int), kind (byte),
+	// then the env and the key (int length and chars each), the value (int length and bytes)
+	private static final int DATASET_OFFSET = 8;
+	private static final int KIND_OFFSET = 12;
+	private static final int ENV_OFFSET = 13;
+
+	private final MappedByteBuffer arena;
+	private final ByteBuffer writer;
+	private final CacheConfig cacheConfig;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// guarded by lock : slots of (hash, record position), hash 0 marks a free slot
+	private ByteBuffer index;
+	private int slotCount;
+	private int usedSlots;
+	private int tail;
+
+	public OffHeapCacheService() {
+		this(new CacheConfig());
+	}
+
+	/**
+	 * @param arenaBytes Size of the memory-mapped arena holding the configs
+	 * @param ttlSeconds Time to live of a config, 0 for no expiry
+	 */
+	public OffHeapCacheService(int arenaBytes, int ttlSeconds) {
+		this(arenaBytes, getCacheConfig(ttlSeconds));
+	}
+
+	/**
+	 * @param cacheConfig Policies. The max bytes of the default one, if set, sizes the arena shared by all
+	 * 			datasets, and each dataset expires configs after its time to live
+	 */
+	public OffHeapCacheService(CacheConfig cacheConfig) {
+		this(getArenaBytes(cacheConfig), cacheConfig);
+	}
+
+	private OffHeapCacheService(int arenaBytes, CacheConfig cacheConfig) {
+
+		try {
+			File file = File.createTempFile("configs-cloud-", ".cache");
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				arena = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, arenaBytes);
+			}
+			// the mapping outlives the file, only kept where it cannot be deleted while mapped
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to map the off-heap cache : " + e.getMessage(), e);
+		}
+
+		writer = arena.duplicate();
+		this.cacheConfig = cacheConfig;
+		clear();
+
+		logger.debug("Off-heap cache initialized. Size : " + arenaBytes);
+	}
+
+	/**
+	 * Retrieves Configs list from the cache
+	 *
+	 * @param datasetId Dataset id
+	 * @return {@link List}&lt;{@link Config}&gt; List of Config objects
+	 */
+	@Override
+	public List<Config> getConfigListFromCache(Integer datasetId) {
+		logger.debug("Getting config from cache. Dataset Id : " + datasetId);
+		return scan(datasetId, null);
+	}
+
+	/**
+	 * Retrieves Configs list from the cache
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment name
+	 * @return {@link List}&lt;{@link Config}&gt; List of Config objects
+	 */
+	@Override
+	public List<Config> getConfigListFromCache(Integer datasetId, String env) {
+
+		logger.debug("Getting config from cache. Dataset Id : " + datasetId + " Env : " + env);
+
+		if (env == null) {
+			return new ArrayList<>();
+		}
+		return scan(datasetId, env);
+	}
+
+	/**
+	 * Get Config Object from cache
+	 *
+	 * @param datasetId DatasetId
+	 * @param env		Environment short name
+	 * @param key	Key
+	 * @return Config Config object
+	 */
+	@Override
+	public Config getConfigFromCache(Integer datasetId, String env, String key) {
+		lock.readLock().lock();
+		try {
+			int record = findRecord(CONFIG, datasetId, env, key);
+			return (record < 0) ? null : decode(record);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get Config objects for a set of keys from cache
+	 *
+	 * @param datasetId DatasetId
+	 * @param env		Environment short name
+	 * @param keys	Keys
+	 * @return {@link Map}&lt;String, {@link Config}&gt; Configs found, by key
+	 */
+	@Override
+	public Map<String, Config> getConfigsFromCache(Integer datasetId, String env, Collection<String> keys) {
+
+		Map<String, Config> configs = new HashMap<>();
+		lock.readLock().lock();
+		try {
+			for (String key : keys) {
+				int record = findRecord(CONFIG, datasetId, env, key);
+				Config config = (record < 0) ? null : decode(record);
+				if (config != null) {
+					configs.put(key, config);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return configs;
+	}
+
+	/**
+	 * Stores Config object to Cache
+	 *
+	 * @param datasetId Dataset id
+	 * @param configs List of Config objects to store
+	 */
+	@Override
+	public void storeConfigToCache(Integer datasetId, List<Config> configs) {
+		for (Config config : configs) {
+			storeConfigToCache(datasetId, config.getEnv().getSname(), config);
+		}
+	}
+
+	/**
+	 * Stores config to Cache
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param config Config object
+	 */
+	@Override
+	public void storeConfigToCache(Integer datasetId, String env, Config config) {
+
+		byte[] value;
+		try {
+			value = CONFIG_WRITER.writeValueAsBytes(config);
+		} catch (JsonProcessingException e) {
+			logger.warn("Unable to serialize config " + config.getKey() + " : " + e.getMessage());
+			return;
+		}
+		store(CONFIG, datasetId, env, config.getKey(), value,
+				TimeUnit.SECONDS.toNanos(cacheConfig.getPolicy(datasetId).getTimeToLiveSeconds()));
+	}
+
+	/**
+	 * Appends the updated config, under the write lock so that no other store
+	 * of the key can interleave
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param key Key
+	 * @param update Update of the config
+	 */
+	@Override
+	public void updateConfigInCache(Integer datasetId, String env, String key, UnaryOperator<Config> update) {
+		lock.writeLock().lock();
+		try {
+			int record = findRecord(CONFIG, datasetId, env, key);
+			Config cached = (record < 0) ? null : decode(record);
+			if (cached != null) {
+				storeConfigToCache(datasetId, env, update.apply(cached));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes config from Cache, by expiring its record
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param key Key
+	 */
+	@Override
+	public void removeConfigFromCache(Integer datasetId, String env, String key) {
+		expire(CONFIG, datasetId, env, key);
+	}
+
+	@Override
+	public void storeMissingConfigToCache(Integer datasetId, String env, String key, int ttlSeconds) {
+		store(MISSING_CONFIG, datasetId, env, key, NO_VALUE, TimeUnit.SECONDS.toNanos(ttlSeconds));
+	}
+
+	@Override
+	public boolean isConfigMissingInCache(Integer datasetId, String env, String key) {
+		return contains(MISSING_CONFIG, datasetId, env, key);
+	}
+
+	@Override
+	public void storeEmptyListingToCache(Integer datasetId, String env, int ttlSeconds) {
+		store(EMPTY_LISTING, datasetId, env, null, NO_VALUE, TimeUnit.SECONDS.toNanos(ttlSeconds));
+	}
+
+	@Override
+	public boolean isEmptyListingInCache(Integer datasetId, String env) {
+		return contains(EMPTY_LISTING, datasetId, env, null);
+	}
+
+	@Override
+	public void removeMissingConfigFromCache(Integer datasetId, String env, String key) {
+		expire(MISSING_CONFIG, datasetId, env, key);
+		expire(EMPTY_LISTING, datasetId, env, null);
+		expire(EMPTY_LISTING, datasetId, null, null);
+	}
+
+	@Override
+	public int getTimeToLiveSeconds(Integer datasetId) {
+		return cacheConfig.getPolicy(datasetId).getTimeToLiveSeconds();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private static int getArenaBytes(CacheConfig cacheConfig) {
+		long maxBytes = cacheConfig.getDefaultPolicy().getMaxBytes();
+		return (maxBytes > 0) ? (int) Math.min(maxBytes, Integer.MAX_VALUE) : DEFAULT_ARENA_BYTES;
+	}
+
+	private static CacheConfig getCacheConfig(int ttlSeconds) {
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.getDefaultPolicy().setTimeToLiveSeconds(ttlSeconds);
+		return cacheConfig;
+	}
+
+	private boolean contains(byte kind, Integer datasetId, String env, String key) {
+		lock.readLock().lock();
+		try {
+			return findRecord(kind, datasetId, env, key) >= 0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// the record stays in the arena until it is cleared, expired now
+	private void expire(byte kind, Integer datasetId, String env, String key) {
+		lock.writeLock().lock();
+		try {
+			int record = findRecord(kind, datasetId, env, key);
+			if (record >= 0) {
+				long now = System.nanoTime();
+				arena.putLong(record, (now != 0) ? now : -1);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private List<Config> scan(Integer datasetId, String env) {
+
+		List<Config> configs = new ArrayList<>();
+		long now = System.nanoTime();
+		lock.readLock().lock();
+		try {
+			for (int slot = 0; slot < slotCount; slot++) {
+				if (index.getInt(slot * SLOT_BYTES) == 0) {
+					continue;
+				}
+				int record = index.getInt(slot * SLOT_BYTES + 4);
+				if (arena.get(record + KIND_OFFSET) != CONFIG || arena.getInt(record + DATASET_OFFSET) != datasetId
+						|| isExpired(record, now)
+						|| (env != null && skipIfEqual(record + ENV_OFFSET, env) < 0)) {
+					continue;
+				}
+				Config config = decode(record);
+				if (config != null) {
+					configs.add(config);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return configs;
+	}
+
+	private void store(byte kind, Integer datasetId, String env, String key, byte[] value, long ttl) {
+
+		env = (env == null) ? "" : env;
+		key = (key == null) ? "" : key;
+		int length = ENV_OFFSET + 4 + 2 * env.length() + 4 + 2 * key.length() + 4 + value.length;
+		if (length > arena.capacity()) {
+			logger.debug("Config too large for the off-heap cache : " + key);
+			return;
+		}
+		long expiresAt = (ttl > 0) ? Math.max(1, System.nanoTime() + ttl) : 0;
+
+		lock.writeLock().lock();
+		try {
+			if (tail + length > arena.capacity()) {
+				logger.info("Off-heap cache full, clearing it. Size : " + arena.capacity());
+				clear();
+			}
+
+			int record = tail;
+			writer.position(record);
+			writer.putLong(expiresAt).putInt(datasetId).put(kind);
+			putString(env);
+			putString(key);
+			writer.putInt(value.length).put(value);
+			tail += length;
+
+			int hash = hash(kind, datasetId, env, key);
+			int slot = findSlot(hash, kind, datasetId, env, key);
+			if (slot < 0) {
+				if ((usedSlots + 1) * 4 > slotCount * 3) {
+					resize();
+				}
+				slot = freeSlot(index, slotCount, hash);
+				index.putInt(slot * SLOT_BYTES, hash);
+				usedSlots++;
+			}
+			index.putInt(slot * SLOT_BYTES + 4, record);
+
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// position of the live record, -1 if absent or expired
+	private int findRecord(byte kind, Integer datasetId, String env, String key) {
+
+		env = (env == null) ? "" : env;
+		key = (key == null) ? "" : key;
+		int slot = findSlot(hash(kind, datasetId, env, key), kind, datasetId, env, key);
+		if (slot < 0) {
+			return -1;
+		}
+		int record = index.getInt(slot * SLOT_BYTES + 4);
+		return isExpired(record, System.nanoTime()) ? -1 : record;
+	}
+
+	private int findSlot(int hash, byte kind, Integer datasetId, String env, String key) {
+
+		int mask = slotCount - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			int slotHash = index.getInt(slot * SLOT_BYTES);
+			if (slotHash == 0) {
+				return -1;
+			}
+			if (slotHash == hash && matches(index.getInt(slot * SLOT_BYTES + 4), kind, datasetId, env, key)) {
+				return slot;
+			}
+		}
+	}
+
+	private boolean matches(int record, byte kind, Integer datasetId, String env, String key) {
+		if (arena.get(record + KIND_OFFSET) != kind || arena.getInt(record + DATASET_OFFSET) != datasetId) {
+			return false;
+		}
+		int position = skipIfEqual(record + ENV_OFFSET, env);
+		return position >= 0 && skipIfEqual(position, key) >= 0;
+	}
+
+	// position following the string stored at position if it equals value, -1 otherwise
+	private int skipIfEqual(int position, String value) {
+		int length = arena.getInt(position);
+		if (length != value.length()) {
+			return -1;
+		}
+		position += 4;
+		for (int i = 0; i < length; i++, position += 2) {
+			if (arena.getChar(position) != value.charAt(i)) {
+				return -1;
+			}
+		}
+		return position;
+	}
+
+	private boolean isExpired(int record, long now) {
+		long expiresAt = arena.getLong(record);
+		return expiresAt != 0 && expiresAt - now <= 0;
+	}
+
+	private Config decode(int record) {
+
+		// skip the env and the key
+		int position = record + ENV_OFFSET;
+		position += 4 + 2 * arena.getInt(position);
+		position += 4 + 2 * arena.getInt(position);
+
+		byte[] value = new byte[arena.getInt(position)];
+		ByteBuffer reader = arena.duplicate();
+		reader.position(position + 4);
+		reader.get(value);
+		try {
+			return CONFIG_READER.readValue(value);
+		} catch (IOException e) {
+			logger.warn("Unable to decode cached config : " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void putString(String value) {
+		writer.putInt(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			writer.putChar(value.charAt(i));
+		}
+	}
+
+	private void resize() {
+		int newCount = slotCount * 2;
+		ByteBuffer newIndex = ByteBuffer.allocateDirect(newCount * SLOT_BYTES);
+		for (int slot = 0; slot < slotCount; slot++) {
+			int hash = index.getInt(slot * SLOT_BYTES);
+			if (hash != 0) {
+				int newSlot = freeSlot(newIndex, newCount, hash);
+				newIndex.putInt(newSlot * SLOT_BYTES, hash);
+				newIndex.putInt(newSlot * SLOT_BYTES + 4, index.getInt(slot * SLOT_BYTES + 4));
+			}
+		}
+		index = newIndex;
+		slotCount = newCount;
+	}
+
+	private void clear() {
+		index = ByteBuffer.allocateDirect(INITIAL_SLOTS * SLOT_BYTES);
+		slotCount = INITIAL_SLOTS;
+		usedSlots = 0;
+		tail = 0;
+	}
+
+	private static int freeSlot(ByteBuffer index, int slotCount, int hash) {
+		int mask = slotCount - 1;
+		int slot = hash & mask;
+		while (index.getInt(slot * SLOT_BYTES) != 0) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(byte kind, Integer datasetId, String env, String key) {
+		int h = 31 * (31 * (31 * datasetId.hashCode() + kind) + env.hashCode()) + key.hashCode();
+		h = ((h >>> 16) ^ h) * 0x45d9f3b;
+		h = (h >>> 16) ^ h;
+		return (h == 0) ? 1 : h;
+	}
+}
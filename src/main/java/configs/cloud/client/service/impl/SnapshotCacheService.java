@@ -0,0 +1,381 @@
+package configs.cloud.client.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import org.apache.log4j.Logger;
+
+import configs.cloud.client.CloudConfigClient;
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CacheService;
+import configs.cloud.client.util.TinyLfuCache;
+
+/**
+ * In-process cache holding, for each (dataset, env), an immutable map of the
+ * configs by key. A map is never modified once published: storing configs
+ * builds a new one and swaps it in atomically. Lookups are therefore plain
+ * map reads, without locks, key concatenation or allocation.<br>
+ * Storing a listing replaces the whole snapshot of each env it contains, so
+ * configs removed on the server disappear on the next listing. Configs
+ * stored one at a time copy the snapshot, configs loaded together are
+ * stored with {@link #storeConfigsToCache(Integer, String, Collection)} in a
+ * single swap.<br>
+ * Configs expire after the time to live of the policy of their dataset,
+ * checked on read. Policy sizes do not apply, a snapshot holds the whole
+ * environment.
+ *
+ * @author Pushkar
+ *
+ */
+public class SnapshotCacheService implements CacheService {
+
+	private static final Logger logger = Logger.getLogger(CloudConfigClient.class);
+	private static final String ENV_KEY_SEPARATOR = ":";
+
+	private final CacheConfig cacheConfig;
+	private final ConcurrentMap<Integer, ConcurrentMap<String, AtomicReference<Map<String, Entry>>>> snapshots = new ConcurrentHashMap<>();
+	private final TinyLfuCache<String, Boolean> missing;
+
+	public SnapshotCacheService() {
+		this(new CacheConfig());
+	}
+
+	/**
+	 * @param cacheConfig Policies, giving the time to live of each dataset, and the number of negative entries
+	 */
+	public SnapshotCacheService(CacheConfig cacheConfig) {
+		this.cacheConfig = cacheConfig;
+		this.missing = new TinyLfuCache<>(cacheConfig.getDefaultPolicy().getMaxEntries(), null);
+	}
+
+	/**
+	 * Retrieves Configs list from the cache
+	 *
+	 * @param datasetId Dataset id
+	 * @return {@link List}&lt;{@link Config}&gt; List of Config objects
+	 */
+	@Override
+	public List<Config> getConfigListFromCache(Integer datasetId) {
+
+		List<Config> configs = new ArrayList<>();
+		ConcurrentMap<String, AtomicReference<Map<String, Entry>>> envs = snapshots.get(datasetId);
+		if (envs != null) {
+			long now = System.nanoTime();
+			for (AtomicReference<Map<String, Entry>> snapshot : envs.values()) {
+				addConfigs(snapshot.get(), now, configs);
+			}
+		}
+		return configs;
+	}
+
+	/**
+	 * Retrieves Configs list from the cache
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment name
+	 * @return {@link List}&lt;{@link Config}&gt; List of Config objects
+	 */
+	@Override
+	public List<Config> getConfigListFromCache(Integer datasetId, String env) {
+		List<Config> configs = new ArrayList<>();
+		addConfigs(getSnapshot(datasetId, env), System.nanoTime(), configs);
+		return configs;
+	}
+
+	/**
+	 * Get Config Object from cache
+	 *
+	 * @param datasetId DatasetId
+	 * @param env		Environment short name
+	 * @param key	Key
+	 * @return Config Config object
+	 */
+	@Override
+	public Config getConfigFromCache(Integer datasetId, String env, String key) {
+		Entry entry = getSnapshot(datasetId, env).get(key);
+		return (entry != null && !entry.isExpired(System.nanoTime())) ? entry.config : null;
+	}
+
+	/**
+	 * Get Config objects for a set of keys from cache, all read from the same
+	 * snapshot
+	 *
+	 * @param datasetId DatasetId
+	 * @param env		Environment short name
+	 * @param keys	Keys
+	 * @return {@link Map}&lt;String, {@link Config}&gt; Configs found, by key
+	 */
+	@Override
+	public Map<String, Config> getConfigsFromCache(Integer datasetId, String env, Collection<String> keys) {
+
+		Map<String, Entry> snapshot = getSnapshot(datasetId, env);
+		Map<String, Config> configs = new HashMap<>();
+		long now = System.nanoTime();
+		for (String key : keys) {
+			Entry entry = snapshot.get(key);
+			if (entry != null && !entry.isExpired(now)) {
+				configs.put(key, entry.config);
+			}
+		}
+		return configs;
+	}
+
+	/**
+	 * Replaces the snapshot of each environment found in the listing
+	 *
+	 * @param datasetId Dataset id
+	 * @param configs Complete listing of one or more environments
+	 */
+	@Override
+	public void storeConfigToCache(Integer datasetId, List<Config> configs) {
+
+		long expiresAt = getExpiresAt(datasetId);
+		Map<String, Map<String, Entry>> envs = new HashMap<>();
+		for (Config config : configs) {
+			String env = config.getEnv().getSname();
+			Map<String, Entry> snapshot = envs.get(env);
+			if (snapshot == null) {
+				snapshot = new HashMap<>();
+				envs.put(env, snapshot);
+			}
+			snapshot.put(config.getKey(), new Entry(config, expiresAt));
+		}
+
+		for (Map.Entry<String, Map<String, Entry>> env : envs.entrySet()) {
+			logger.debug("Publishing snapshot. Dataset Id : " + datasetId + " Env : " + env.getKey() + " Size : " + env.getValue().size());
+			getReference(datasetId, env.getKey()).set(Collections.unmodifiableMap(env.getValue()));
+		}
+	}
+
+	/**
+	 * Stores config to Cache, publishing a copy of the snapshot with the
+	 * config added
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param config Config object
+	 */
+	@Override
+	public void storeConfigToCache(Integer datasetId, String env, Config config) {
+		storeConfigsToCache(datasetId, env, Collections.singletonList(config));
+	}
+
+	/**
+	 * Stores configs to Cache, publishing a single copy of the snapshot with
+	 * all of them added
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param configs Config objects
+	 */
+	@Override
+	public void storeConfigsToCache(Integer datasetId, String env, Collection<Config> configs) {
+
+		if (configs.isEmpty()) {
+			return;
+		}
+		long expiresAt = getExpiresAt(datasetId);
+		AtomicReference<Map<String, Entry>> reference = getReference(datasetId, env);
+		while (true) {
+			Map<String, Entry> current = reference.get();
+			Map<String, Entry> next = new HashMap<>(current);
+			for (Config config : configs) {
+				next.put(config.getKey(), new Entry(config, expiresAt));
+			}
+			if (reference.compareAndSet(current, Collections.unmodifiableMap(next))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Publishes a copy of the snapshot with the config updated, if present
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param key Key
+	 * @param update Update of the config
+	 */
+	@Override
+	public void updateConfigInCache(Integer datasetId, String env, String key, UnaryOperator<Config> update) {
+
+		AtomicReference<Map<String, Entry>> reference = getReference(datasetId, env);
+		while (true) {
+			Map<String, Entry> current = reference.get();
+			Entry cached = current.get(key);
+			if (cached == null || cached.isExpired(System.nanoTime())) {
+				return;
+			}
+			Map<String, Entry> next = new HashMap<>(current);
+			next.put(key, new Entry(update.apply(cached.config), cached.expiresAt));
+			if (reference.compareAndSet(current, Collections.unmodifiableMap(next))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes config from Cache, publishing a copy of the snapshot without
+	 * the config
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param key Key
+	 */
+	@Override
+	public void removeConfigFromCache(Integer datasetId, String env, String key) {
+
+		AtomicReference<Map<String, Entry>> reference = getReference(datasetId, env);
+		while (true) {
+			Map<String, Entry> current = reference.get();
+			if (!current.containsKey(key)) {
+				return;
+			}
+			Map<String, Entry> next = new HashMap<>(current);
+			next.remove(key);
+			if (reference.compareAndSet(current, Collections.unmodifiableMap(next))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Records that the server has no config for the key
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name
+	 * @param key Key
+	 * @param ttlSeconds Time the key is considered missing
+	 */
+	@Override
+	public void storeMissingConfigToCache(Integer datasetId, String env, String key, int ttlSeconds) {
+		missing.put(getMissingKey(datasetId, env, key), Boolean.TRUE, TimeUnit.SECONDS.toNanos(ttlSeconds));
+	}
+
+	@Override
+	public boolean isConfigMissingInCache(Integer datasetId, String env, String key) {
+		return missing.get(getMissingKey(datasetId, env, key)) != null;
+	}
+
+	/**
+	 * Records that the server listed no config for the dataset or environment,
+	 * and drops the snapshots of what is no longer there
+	 *
+	 * @param datasetId Dataset id
+	 * @param env Environment Short name, null for the whole dataset
+	 * @param ttlSeconds Time the listing is considered empty
+	 */
+	@Override
+	public void storeEmptyListingToCache(Integer datasetId, String env, int ttlSeconds) {
+
+		if (env == null) {
+			snapshots.remove(datasetId);
+		} else {
+			ConcurrentMap<String, AtomicReference<Map<String, Entry>>> envs = snapshots.get(datasetId);
+			if (envs != null) {
+				envs.remove(env);
+			}
+		}
+		missing.put(getMissingKey(datasetId, env, null), Boolean.TRUE, TimeUnit.SECONDS.toNanos(ttlSeconds));
+	}
+
+	@Override
+	public boolean isEmptyListingInCache(Integer datasetId, String env) {
+		return missing.get(getMissingKey(datasetId, env, null)) != null;
+	}
+
+	@Override
+	public void removeMissingConfigFromCache(Integer datasetId, String env, String key) {
+		missing.remove(getMissingKey(datasetId, env, key));
+		missing.remove(getMissingKey(datasetId, env, null));
+		missing.remove(getMissingKey(datasetId, null, null));
+	}
+
+	@Override
+	public int getTimeToLiveSeconds(Integer datasetId) {
+		return cacheConfig.getPolicy(datasetId).getTimeToLiveSeconds();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private Map<String, Entry> getSnapshot(Integer datasetId, String env) {
+		ConcurrentMap<String, AtomicReference<Map<String, Entry>>> envs = snapshots.get(datasetId);
+		if (envs == null || env == null) {
+			return Collections.emptyMap();
+		}
+		AtomicReference<Map<String, Entry>> snapshot = envs.get(env);
+		return (snapshot != null) ? snapshot.get() : Collections.<String, Entry>emptyMap();
+	}
+
+	private AtomicReference<Map<String, Entry>> getReference(Integer datasetId, String env) {
+
+		ConcurrentMap<String, AtomicReference<Map<String, Entry>>> envs = snapshots.get(datasetId);
+		if (envs == null) {
+			envs = new ConcurrentHashMap<>();
+			ConcurrentMap<String, AtomicReference<Map<String, Entry>>> existing = snapshots.putIfAbsent(datasetId, envs);
+			if (existing != null) {
+				envs = existing;
+			}
+		}
+
+		AtomicReference<Map<String, Entry>> reference = envs.get(env);
+		if (reference == null) {
+			reference = new AtomicReference<Map<String, Entry>>(Collections.<String, Entry>emptyMap());
+			AtomicReference<Map<String, Entry>> existing = envs.putIfAbsent(env, reference);
+			if (existing != null) {
+				reference = existing;
+			}
+		}
+		return reference;
+	}
+
+	private static void addConfigs(Map<String, Entry> snapshot, long now, List<Config> configs) {
+		for (Entry entry : snapshot.values()) {
+			if (!entry.isExpired(now)) {
+				configs.add(entry.config);
+			}
+		}
+	}
+
+	// expiry of configs stored now, in nanoTime, 0 when they do not expire
+	private long getExpiresAt(Integer datasetId) {
+		int ttlSeconds = cacheConfig.getPolicy(datasetId).getTimeToLiveSeconds();
+		if (ttlSeconds == 0) {
+			return 0;
+		}
+		long expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+		return (expiresAt == 0) ? 1 : expiresAt;
+	}
+
+	// keys of the config "2:dev:key", of listings "2:dev:" and "2::"
+	private static String getMissingKey(Integer datasetId, String env, String key) {
+		return datasetId + ENV_KEY_SEPARATOR + (env == null ? "" : env) + ENV_KEY_SEPARATOR + (key == null ? "" : key);
+	}
+
+	private static final class Entry {
+
+		private final Config config;
+		private final long expiresAt;
+
+		Entry(Config config, long expiresAt) {
+			this.config = config;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired(long now) {
+			return expiresAt != 0 && expiresAt - now <= 0;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package configs.cloud.client.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+
+import org.apache.log4j.Logger;
+
+import configs.cloud.client.CloudConfigClient;
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
+import configs.cloud.client.service.CacheService;
+
+/**
+ * Two level cache : a small in-process {@link LocalCacheService} (L1) in
+ * front of a Hazelcast member (L2). Hot configs are read from local memory,
+ * without routing to their partition owner nor deserializing them, while
+ * the cluster still holds one copy of each config for all members, so a
+ * config is fetched from the server once for the cluster.<br>
+ * L1 is kept coherent by the events of L2 : a config changed by another
+ * member, or evicted or expired, is dropped from L1 and read again from L2.
+ * Changes made through this member update L1 themselves, their events are
+ * ignored. Listings and negative entries are only held in L2, an empty
+ * listing drops the configs of the dataset or environment from L1.
+ *
+ * @author Pushkar
+ *
+ */
+public class TieredCacheService implements CacheService {
+
+	private static final Logger logger = Logger.getLogger(CloudConfigClient.class);
+	private static final int L1_MAX_ENTRIES = 1000;
+	private static final int STAMP_STRIPES = 1024;
+
+	private final HazelCastService l2;
+	private final LocalCacheService l1;
+	private final Set<Integer> listenedDatasets = ConcurrentHashMap.<Integer>newKeySet();
+	// bumped by each invalidation of a key of the stripe, a config read from L2 meanwhile may be stale
+	// and is not kept in L1. Striped by key, an invalidation only races with the reads of its stripe
+	private final AtomicLongArray invalidations = new AtomicLongArray(STAMP_STRIPES);
+
+	public TieredCacheService() {
+		this(new CacheConfig());
+	}
+
+	/**
+	 * @param cacheConfig Policies of L2. L1 follows their expiry, with at most 1000 configs for each dataset
+	 */
+	public TieredCacheService(CacheConfig cacheConfig) {
+		this(new HazelCastService(cacheConfig), cacheConfig);
+	}
+
+	TieredCacheService(HazelCastService l2, CacheConfig cacheConfig) {
+		this.l2 = l2;
+		this.l1 = new LocalCacheService(getL1Config(cacheConfig.withDefaults(HazelCastService.getDefaultPolicy())));
+		logger.debug("Tiered cache initialized.");
+	}
+
+	@Override
+	public List<Config> getConfigListFromCache(Integer datasetId) {
+		// L1 only holds the configs read lately, listings come from L2
+		return l2.getConfigListFromCache(datasetId);
+	}
+
+	@Override
+	public List<Config> getConfigListFromCache(Integer datasetId, String env) {
+		return l2.getConfigListFromCache(datasetId, env);
+	}
+
+	@Override
+	public Config getConfigFromCache(Integer datasetId, String env, String key) {
+
+		Config config = l1.getConfigFromCache(datasetId, env, key);
+		if (config != null) {
+			return config;
+		}
+
+		listen(datasetId);
+		long stamp = getStamp(datasetId, env, key);
+		config = l2.getConfigFromCache(datasetId, env, key);
+		if (config != null) {
+			keep(datasetId, env, config, stamp);
+		}
+		return config;
+	}
+
+	@Override
+	public Map<String, Config> getConfigsFromCache(Integer datasetId, String env, Collection<String> keys) {
+
+		Map<String, Config> configs = l1.getConfigsFromCache(datasetId, env, keys);
+		if (configs.size() == keys.size()) {
+			return configs;
+		}
+
+		List<String> missed = new ArrayList<>();
+		for (String key : keys) {
+			if (!configs.containsKey(key)) {
+				missed.add(key);
+			}
+		}
+
+		listen(datasetId);
+		Map<String, Long> stamps = new HashMap<>();
+		for (String key : missed) {
+			stamps.put(key, getStamp(datasetId, env, key));
+		}
+		Map<String, Config> loaded = l2.getConfigsFromCache(datasetId, env, missed);
+		for (Config config : loaded.values()) {
+			keep(datasetId, env, config, stamps.get(config.getKey()));
+		}
+		configs.putAll(loaded);
+		return configs;
+	}
+
+	@Override
+	public void storeConfigToCache(Integer datasetId, List<Config> configs) {
+		// L2 only, a listing would flush the configs kept in L1 for being read often
+		listen(datasetId);
+		l2.storeConfigToCache(datasetId, configs);
+		for (Config config : configs) {
+			l1.removeConfigFromCache(datasetId, config.getEnv().getSname(), config.getKey());
+		}
+	}
+
+	@Override
+	public void storeConfigToCache(Integer datasetId, String env, Config config) {
+		listen(datasetId);
+		long stamp = getStamp(datasetId, env, config.getKey());
+		l2.storeConfigToCache(datasetId, env, config);
+		keep(datasetId, env, config, stamp);
+	}
+
+	@Override
+	public void updateConfigInCache(Integer datasetId, String env, String key, UnaryOperator<Config> update) {
+		l2.updateConfigInCache(datasetId, env, key, update);
+		// read again from L2, it holds whichever update won
+		l1.removeConfigFromCache(datasetId, env, key);
+	}
+
+	@Override
+	public void removeConfigFromCache(Integer datasetId, String env, String key) {
+		l2.removeConfigFromCache(datasetId, env, key);
+		l1.removeConfigFromCache(datasetId, env, key);
+	}
+
+	@Override
+	public void storeMissingConfigToCache(Integer datasetId, String env, String key, int ttlSeconds) {
+		l2.storeMissingConfigToCache(datasetId, env, key, ttlSeconds);
+	}
+
+	@Override
+	public boolean isConfigMissingInCache(Integer datasetId, String env, String key) {
+		return l2.isConfigMissingInCache(datasetId, env, key);
+	}
+
+	@Override
+	public void storeEmptyListingToCache(Integer datasetId, String env, int ttlSeconds) {
+		l2.storeEmptyListingToCache(datasetId, env, ttlSeconds);
+		List<Config> kept = (env == null) ? l1.getConfigListFromCache(datasetId) : l1.getConfigListFromCache(datasetId, env);
+		for (Config config : kept) {
+			l1.removeConfigFromCache(datasetId, config.getEnv().getSname(), config.getKey());
+		}
+	}
+
+	@Override
+	public boolean isEmptyListingInCache(Integer datasetId, String env) {
+		return l2.isEmptyListingInCache(datasetId, env);
+	}
+
+	@Override
+	public void removeMissingConfigFromCache(Integer datasetId, String env, String key) {
+		l2.removeMissingConfigFromCache(datasetId, env, key);
+	}
+
+	@Override
+	public int getTimeToLiveSeconds(Integer datasetId) {
+		return l2.getTimeToLiveSeconds(datasetId);
+	}
+
+	@Override
+	public void shutdown() {
+		l2.shutdown();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	// once per dataset, before its configs are first kept in L1
+	private void listen(Integer datasetId) {
+		if (!listenedDatasets.contains(datasetId) && listenedDatasets.add(datasetId)) {
+			l2.addInvalidationListener(datasetId, (env, key) -> {
+				invalidations.incrementAndGet(getStripe(datasetId, env, key));
+				l1.removeConfigFromCache(datasetId, env, key);
+			});
+		}
+	}
+
+	private void keep(Integer datasetId, String env, Config config, long stamp) {
+		l1.storeConfigToCache(datasetId, env, config);
+		// an invalidation may have run between the read of L2 and the store, it wins
+		if (getStamp(datasetId, env, config.getKey()) != stamp) {
+			l1.removeConfigFromCache(datasetId, env, config.getKey());
+		}
+	}
+
+	private long getStamp(Integer datasetId, String env, String key) {
+		return invalidations.get(getStripe(datasetId, env, key));
+	}
+
+	private static int getStripe(Integer datasetId, String env, String key) {
+		int hash = (31 * (31 * datasetId.hashCode() + env.hashCode()) + key.hashCode());
+		return (hash ^ (hash >>> 16)) & (STAMP_STRIPES - 1);
+	}
+
+	private static CacheConfig getL1Config(CacheConfig cacheConfig) {
+		CacheConfig l1Config = new CacheConfig();
+		l1Config.setDefaultPolicy(getL1Policy(cacheConfig.getDefaultPolicy()));
+		for (Map.Entry<Integer, CachePolicy> entry : cacheConfig.getDatasetPolicies().entrySet()) {
+			l1Config.setDatasetPolicy(entry.getKey(), getL1Policy(entry.getValue()));
+		}
+		return l1Config;
+	}
+
+	private static CachePolicy getL1Policy(CachePolicy policy) {
+		CachePolicy l1Policy = new CachePolicy();
+		l1Policy.setMaxEntries(Math.min(policy.getMaxEntries(), L1_MAX_ENTRIES));
+		l1Policy.setTimeToLiveSeconds(policy.getTimeToLiveSeconds());
+		l1Policy.setTimeToIdleSeconds(policy.getTimeToIdleSeconds());
+		return l1Policy;
+	}
+}
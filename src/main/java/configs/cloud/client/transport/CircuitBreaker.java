@@ -0,0 +1,85 @@
+package configs.cloud.client.transport;
+
+/**
+ * Circuit breaker guarding one server endpoint.<br>
+ * After a number of consecutive failures the circuit opens and calls are
+ * refused without reaching the server. Once the open period has elapsed a
+ * single trial call is let through (half open): its success closes the
+ * circuit again, its failure re-opens it.
+ *
+ * @author Pushkar
+ *
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN;
+	}
+
+	private final int failureThreshold;
+	private final long openMillis;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean trialInFlight;
+
+	/**
+	 * @param failureThreshold Consecutive failures opening the circuit, 0 disables the breaker
+	 * @param openMillis Time the circuit stays open before a trial call
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * @return boolean true if a call may be made now
+	 */
+	public synchronized boolean allowRequest() {
+
+		if (failureThreshold <= 0 || state == State.CLOSED) {
+			return true;
+		}
+
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+			state = State.HALF_OPEN;
+			trialInFlight = false;
+		}
+
+		if (state == State.HALF_OPEN && !trialInFlight) {
+			trialInFlight = true;
+			return true;
+		}
+		return false;
+	}
+
+	public synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+		trialInFlight = false;
+		state = State.CLOSED;
+	}
+
+	public synchronized void recordFailure() {
+
+		consecutiveFailures++;
+		if (failureThreshold > 0 && (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold)) {
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+			trialInFlight = false;
+		}
+	}
+
+	/**
+	 * Ends a call that neither succeeded nor failed, e.g. abandoned at its
+	 * deadline or interrupted. A half open circuit lets another trial call
+	 * through.
+	 */
+	public synchronized void releaseTrial() {
+		trialInFlight = false;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+}
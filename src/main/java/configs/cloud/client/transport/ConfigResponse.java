@@ -0,0 +1,30 @@
+package configs.cloud.client.transport;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * Response obtained from a {@link ConfigTransport}. It must be closed, or its
+ * body read to the end and closed, to release its connection.
+ *
+ * @author Pushkar
+ *
+ */
+public interface ConfigResponse extends Closeable {
+
+	int getStatus();
+
+	/**
+	 * @param name Header name, case insensitive
+	 * @return String First value of the header, null if absent
+	 */
+	String getHeader(String name);
+
+	/**
+	 * @return InputStream Body as received, still content encoded
+	 */
+	InputStream getBody();
+
+	@Override
+	void close();
+}
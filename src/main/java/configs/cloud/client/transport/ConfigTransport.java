@@ -0,0 +1,42 @@
+package configs.cloud.client.transport;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Wire level HTTP client used by {@link HttpTransport}. Implementations only
+ * send requests; retries, circuit breaking, deadlines, hedging and response
+ * decoding are applied on top of them, whatever the implementation.<br>
+ * The implementation is chosen with
+ * {@link TransportConfig#setTransportProvider(configs.cloud.client.enums.TransportProvider)}.
+ * Implementations must be thread safe.
+ *
+ * @author Pushkar
+ *
+ */
+public interface ConfigTransport {
+
+	/**
+	 * @param uri Absolute uri, query included
+	 * @param headers Request headers
+	 * @return ConfigResponse Response, whatever its status
+	 * @throws IOException When no response could be obtained
+	 */
+	ConfigResponse get(URI uri, Map<String, String> headers) throws IOException;
+
+	/**
+	 * Sends a PUT without body.
+	 *
+	 * @param uri Absolute uri, query included
+	 * @param headers Request headers
+	 * @return ConfigResponse Response, whatever its status
+	 * @throws IOException When no response could be obtained
+	 */
+	ConfigResponse put(URI uri, Map<String, String> headers) throws IOException;
+
+	/**
+	 * Releases the connections of the transport.
+	 */
+	void close();
+}
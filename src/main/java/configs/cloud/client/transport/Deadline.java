@@ -0,0 +1,106 @@
+package configs.cloud.client.transport;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import configs.cloud.client.exceptions.DeadlineExceededException;
+
+/**
+ * Point in time by which a call, with all its retries and hedges, must have
+ * completed.<br>
+ * A deadline is bound to the calling thread for the duration of
+ * {@link #call(Callable)}; every server call made meanwhile, including the
+ * ones handed over to the client's executors, is bounded by it. When
+ * deadlines are nested the earliest one applies.
+ *
+ * @author Pushkar
+ *
+ */
+public final class Deadline {
+
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+	private final long expiresAtNanos;
+
+	private Deadline(long expiresAtNanos) {
+		this.expiresAtNanos = expiresAtNanos;
+	}
+
+	/**
+	 * @param timeout Time from now
+	 * @param unit Unit of timeout
+	 * @return Deadline Deadline expiring after the timeout
+	 */
+	public static Deadline after(long timeout, TimeUnit unit) {
+		return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	/**
+	 * @return Deadline Deadline bound to the current thread, null if none
+	 */
+	public static Deadline current() {
+		return CURRENT.get();
+	}
+
+	public boolean isExpired() {
+		return expiresAtNanos - System.nanoTime() <= 0;
+	}
+
+	public long remainingMillis() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+	}
+
+	/**
+	 * Runs the callable with this deadline bound to the current thread.
+	 * 
+	 * @param callable Work to run
+	 * @return T Result of the callable
+	 * @throws Exception Exception thrown by the callable
+	 */
+	public <T> T call(Callable<T> callable) throws Exception {
+
+		Deadline previous = CURRENT.get();
+		CURRENT.set((previous != null && previous.expiresAtNanos - expiresAtNanos < 0) ? previous : this);
+		try {
+			return callable.call();
+
+		} finally {
+			if (previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the result of a future, no longer than the deadline bound to
+	 * the current thread, if any.
+	 * 
+	 * @param future Future to wait for
+	 * @return T Result of the future
+	 * @throws Exception Exception the future completed with, or DeadlineExceededException
+	 */
+	public static <T> T await(Future<T> future) throws Exception {
+
+		Deadline deadline = CURRENT.get();
+		try {
+			if (deadline == null) {
+				return future.get();
+			}
+			return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+
+		} catch (TimeoutException e) {
+			throw new DeadlineExceededException("Deadline exceeded waiting for result");
+
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package configs.cloud.client.transport;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * HTTP/2 transport built on the JDK HttpClient, which needs Java 11.<br>
+ * This is the Java 8 placeholder of the class: the implementation lives in
+ * src/main/java11 and is packaged as a multi-release jar entry, which Java
+ * 11+ runtimes load instead of this one. TransportFactory checks
+ * {@link #isAvailable()} and uses the JERSEY transport instead of this one.
+ *
+ * @author Pushkar
+ *
+ */
+public class Http2Transport implements ConfigTransport {
+
+	/**
+	 * @return boolean false, this runtime has no JDK HttpClient
+	 */
+	public static boolean isAvailable() {
+		return false;
+	}
+
+	public Http2Transport(TransportConfig transportConfig) {
+		throw new UnsupportedOperationException("The HTTP2 transport requires Java 11 or later, use JERSEY");
+	}
+
+	@Override
+	public ConfigResponse get(URI uri, Map<String, String> headers) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ConfigResponse put(URI uri, Map<String, String> headers) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+	}
+}
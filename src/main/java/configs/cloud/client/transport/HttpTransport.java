@@ -0,0 +1,403 @@
+package configs.cloud.client.transport;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import configs.cloud.client.ClientMetrics;
+import configs.cloud.client.exceptions.CircuitOpenException;
+import configs.cloud.client.exceptions.DeadlineExceededException;
+import configs.cloud.client.factory.TransportFactory;
+import configs.cloud.client.util.NamedThreadFactory;
+
+/**
+ * Long lived HTTP transport. Sends requests through a single
+ * {@link ConfigTransport}, whose connections are reused by every call.<br>
+ * Calls go through {@link #execute(String, boolean, Callable)}, which applies
+ * the circuit breaker, retries, deadline and hedging of their endpoint.<br>
+ * Instances are thread safe and meant to be shared.
+ *
+ * @author Pushkar
+ *
+ */
+public class HttpTransport {
+
+	private static final Logger logger = Logger.getLogger(HttpTransport.class);
+
+	// latencies an endpoint must record before its hedge delay follows its percentile
+	private static final int MIN_HEDGE_SAMPLES = 100;
+
+	private final ConfigTransport transport;
+	private final TransportConfig transportConfig;
+	private final ClientMetrics metrics;
+	private final ThreadPoolExecutor dispatcher;
+	private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+	public HttpTransport(TransportConfig transportConfig, ClientMetrics metrics) {
+
+		logger.debug("Initializing http transport...");
+
+		transport = TransportFactory.getTransport(transportConfig);
+		this.transportConfig = transportConfig;
+		this.metrics = metrics;
+
+		// runs the requests of calls bounded by a deadline or hedged. Sized for
+		// a primary and a hedge per pooled connection, rejects requests when
+		// saturated, see attempt
+		dispatcher = new ThreadPoolExecutor(0, transportConfig.getMaxConnections() * 2, 60, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), new NamedThreadFactory("configs-cloud-http"),
+				new ThreadPoolExecutor.AbortPolicy());
+
+		logger.debug("Http transport initialized. Provider : " + transportConfig.getTransportProvider());
+	}
+
+	/**
+	 * Returns the wire level transport. Responses obtained from it must be
+	 * consumed or closed, so that their connection can be reused.
+	 *
+	 * @return ConfigTransport Transport sending the requests
+	 */
+	public ConfigTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * @return TransportConfig Settings this transport was created with
+	 */
+	public TransportConfig getConfig() {
+		return transportConfig;
+	}
+
+	/**
+	 * Makes a call through the circuit breaker of its endpoint.<br>
+	 * Idempotent calls failing with a connection error or a 5xx status are
+	 * retried with exponential backoff and full jitter, and are hedged when
+	 * hedging is enabled. The whole call, retries included, is bounded by the
+	 * {@link Deadline} of the current thread, if any.
+	 *
+	 * @param endpoint Endpoint url, identifies the circuit and the latency histogram
+	 * @param idempotent true if the call may be repeated safely
+	 * @param call Makes one request
+	 * @return ConfigResponse Response of the call
+	 * @throws Exception CircuitOpenException, DeadlineExceededException or the failure of the call
+	 */
+	public ConfigResponse execute(String endpoint, boolean idempotent, Callable<ConfigResponse> call)
+			throws Exception {
+
+		CircuitBreaker breaker = getCircuitBreaker(endpoint);
+		LatencyHistogram latency = getLatencyHistogram(endpoint);
+		Deadline deadline = Deadline.current();
+		boolean hedged = idempotent && transportConfig.isHedgingEnabled();
+		int attempt = 0;
+
+		while (true) {
+
+			if (deadline != null && deadline.isExpired()) {
+				throw deadlineExceeded(endpoint);
+			}
+			if (!breaker.allowRequest()) {
+				metrics.recordCircuitOpenRejection();
+				throw new CircuitOpenException("Circuit open, server calls suspended for : " + endpoint);
+			}
+
+			ConfigResponse response;
+			try {
+				response = attempt(endpoint, call, hedged, latency, deadline);
+
+			} catch (IOException e) {
+				breaker.recordFailure();
+				if (!idempotent || attempt >= transportConfig.getMaxRetries()) {
+					throw e;
+				}
+				logger.debug("Call failed, retrying : " + endpoint + " : " + e.getMessage());
+				backoff(endpoint, attempt++, deadline);
+				metrics.recordRetry();
+				continue;
+
+			} catch (Throwable e) {
+				// deadline, interrupt or unexpected failure, says nothing of the server
+				breaker.releaseTrial();
+				throw e;
+			}
+
+			if (response.getStatus() < 500) {
+				breaker.recordSuccess();
+				return response;
+			}
+
+			breaker.recordFailure();
+			if (!idempotent || attempt >= transportConfig.getMaxRetries()) {
+				return response;
+			}
+			logger.debug("Server error " + response.getStatus() + ", retrying : " + endpoint);
+			response.close();
+			backoff(endpoint, attempt++, deadline);
+			metrics.recordRetry();
+		}
+	}
+
+	/**
+	 * Returns the circuit breaker of an endpoint, creating it on first use.
+	 *
+	 * @param endpoint Endpoint url template
+	 * @return CircuitBreaker Circuit breaker of the endpoint
+	 */
+	public CircuitBreaker getCircuitBreaker(String endpoint) {
+		CircuitBreaker breaker = circuitBreakers.get(endpoint);
+		if (breaker == null) {
+			breaker = new CircuitBreaker(transportConfig.getCircuitFailureThreshold(),
+					transportConfig.getCircuitOpenMillis());
+			CircuitBreaker existing = circuitBreakers.putIfAbsent(endpoint, breaker);
+			if (existing != null) {
+				breaker = existing;
+			}
+		}
+		return breaker;
+	}
+
+	/**
+	 * @return {@link Map}&lt;String, State&gt; Circuit state of each endpoint called so far
+	 */
+	public Map<String, CircuitBreaker.State> getCircuitBreakerStates() {
+		Map<String, CircuitBreaker.State> states = new HashMap<>();
+		for (Map.Entry<String, CircuitBreaker> entry : circuitBreakers.entrySet()) {
+			states.put(entry.getKey(), entry.getValue().getState());
+		}
+		return states;
+	}
+
+	/**
+	 * Returns the latency histogram of an endpoint, creating it on first use.
+	 *
+	 * @param endpoint Endpoint url template
+	 * @return LatencyHistogram Latencies of the answered calls to the endpoint
+	 */
+	public LatencyHistogram getLatencyHistogram(String endpoint) {
+		LatencyHistogram histogram = latencies.get(endpoint);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = latencies.putIfAbsent(endpoint, histogram);
+			if (existing != null) {
+				histogram = existing;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return {@link Map}&lt;String, LatencyHistogram&gt; Latency histogram of each endpoint called so far
+	 */
+	public Map<String, LatencyHistogram> getLatencyHistograms() {
+		return new HashMap<>(latencies);
+	}
+
+	/**
+	 * @return ClientMetrics Metrics of the client owning this transport
+	 */
+	public ClientMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Releases all pooled connections. The transport cannot be used after
+	 * this call.
+	 */
+	public void close() {
+		logger.debug("Closing http transport...");
+		dispatcher.shutdown();
+		transport.close();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	/**
+	 * Makes one attempt. Without deadline nor hedging the request runs on the
+	 * calling thread. Otherwise it runs on the dispatcher, so that the caller
+	 * can give up at the deadline, or send a second identical request once the
+	 * hedge delay passed and take whichever answers first.<br>
+	 * When the dispatcher is saturated, a call with a deadline fails at once
+	 * with a DeadlineExceededException, since the deadline could not be
+	 * enforced, and a call without one runs on the calling thread, unhedged.
+	 * A hedge that cannot be dispatched is not sent.
+	 */
+	private ConfigResponse attempt(String endpoint, Callable<ConfigResponse> call, boolean hedged,
+			LatencyHistogram latency, Deadline deadline) throws Exception {
+
+		if (deadline == null && !hedged) {
+			return timed(call, latency);
+		}
+		if (dispatcher.isShutdown()) {
+			throw new IOException("Transport closed");
+		}
+
+		CompletableFuture<ConfigResponse> winner = new CompletableFuture<>();
+		AtomicInteger pending = new AtomicInteger(1);
+		try {
+			dispatch(call, latency, winner, pending);
+
+		} catch (RejectedExecutionException e) {
+			if (deadline != null) {
+				logger.debug("Dispatcher saturated, failing call : " + endpoint);
+				throw deadlineExceeded(endpoint);
+			}
+			return timed(call, latency);
+		}
+
+		if (hedged) {
+			long delay = getHedgeDelayMillis(latency);
+			if (deadline != null) {
+				delay = Math.min(delay, deadline.remainingMillis());
+			}
+			if (!isDoneWithin(winner, delay) && (deadline == null || !deadline.isExpired())) {
+				logger.debug("No response after " + delay + " ms, hedging : " + endpoint);
+				pending.incrementAndGet();
+				try {
+					dispatch(call, latency, winner, pending);
+					metrics.recordHedgedRequest();
+
+				} catch (RejectedExecutionException e) {
+					logger.debug("Dispatcher saturated, not hedging : " + endpoint);
+					if (pending.decrementAndGet() == 0) {
+						// the primary answered meanwhile, and its server error was dropped for the hedge
+						winner.completeExceptionally(new IOException("Server error calling : " + endpoint));
+					}
+				}
+			}
+		}
+
+		try {
+			if (deadline == null) {
+				return winner.get();
+			}
+			return winner.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+
+		} catch (TimeoutException e) {
+			// responses still in flight are closed by dispatch once they arrive
+			DeadlineExceededException exceeded = deadlineExceeded(endpoint);
+			if (winner.completeExceptionally(exceeded)) {
+				throw exceeded;
+			}
+			return await(winner);
+
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+
+	/**
+	 * Runs a request on the dispatcher. The first answered request wins, a
+	 * server error or a failure only settles the attempt when no other
+	 * request of it is pending. Responses arriving once the attempt is
+	 * settled are closed.
+	 */
+	private void dispatch(Callable<ConfigResponse> call, LatencyHistogram latency,
+			CompletableFuture<ConfigResponse> winner, AtomicInteger pending) {
+
+		dispatcher.execute(() -> {
+
+			ConfigResponse response = null;
+			Throwable failure = null;
+			try {
+				response = timed(call, latency);
+			} catch (Throwable e) {
+				failure = e;
+			}
+
+			boolean last = pending.decrementAndGet() == 0;
+			if (response == null) {
+				if (last) {
+					winner.completeExceptionally(failure);
+				}
+			} else if (response.getStatus() >= 500 && !last) {
+				response.close();
+			} else if (!winner.complete(response)) {
+				response.close();
+			}
+		});
+	}
+
+	private ConfigResponse timed(Callable<ConfigResponse> call, LatencyHistogram latency) throws Exception {
+		long start = System.nanoTime();
+		ConfigResponse response = call.call();
+		if (response.getStatus() < 500) {
+			latency.record(System.nanoTime() - start);
+		}
+		return response;
+	}
+
+	private long getHedgeDelayMillis(LatencyHistogram latency) {
+		if (transportConfig.getHedgePercentile() > 0 && latency.getCount() >= MIN_HEDGE_SAMPLES) {
+			return Math.max(1, (long) Math.ceil(latency.getPercentileMillis(transportConfig.getHedgePercentile())));
+		}
+		return transportConfig.getHedgeDelayMillis();
+	}
+
+	private static boolean isDoneWithin(CompletableFuture<ConfigResponse> future, long millis)
+			throws InterruptedException {
+		try {
+			future.get(millis, TimeUnit.MILLISECONDS);
+			return true;
+
+		} catch (TimeoutException e) {
+			return false;
+
+		} catch (ExecutionException e) {
+			return true;
+		}
+	}
+
+	private static ConfigResponse await(CompletableFuture<ConfigResponse> future) throws Exception {
+		try {
+			return future.get();
+
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+
+	private static Exception unwrap(ExecutionException e) {
+		if (e.getCause() instanceof Exception) {
+			return (Exception) e.getCause();
+		}
+		return e;
+	}
+
+	/**
+	 * Sleeps before a retry, with full jitter: a random time up to an
+	 * exponentially growing bound. Gives up when the sleep would outlast the
+	 * deadline.
+	 */
+	private void backoff(String endpoint, int attempt, Deadline deadline) throws Exception {
+
+		long ceiling = Math.min(transportConfig.getMaxRetryBackoffMillis(),
+				transportConfig.getRetryBackoffMillis() << Math.min(attempt, 20));
+		long sleep = ThreadLocalRandom.current().nextLong(ceiling + 1);
+
+		if (deadline != null && sleep >= deadline.remainingMillis()) {
+			throw deadlineExceeded(endpoint);
+		}
+		Thread.sleep(sleep);
+	}
+
+	private DeadlineExceededException deadlineExceeded(String endpoint) {
+		metrics.recordDeadlineExceeded();
+		return new DeadlineExceededException("Deadline exceeded calling : " + endpoint);
+	}
+}
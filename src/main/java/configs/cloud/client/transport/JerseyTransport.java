@@ -0,0 +1,135 @@
+package configs.cloud.client.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.log4j.Logger;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
+import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
+
+/**
+ * HTTP/1.1 transport: a Jersey client backed by a bounded pool of keep-alive
+ * connections, so that every request reuses an open connection instead of
+ * connecting (and handshaking) again. Concurrent requests use one
+ * connection each.
+ *
+ * @author Pushkar
+ *
+ */
+public class JerseyTransport implements ConfigTransport {
+
+	private static final Logger logger = Logger.getLogger(JerseyTransport.class);
+	// ClientPNames.CONN_MANAGER_TIMEOUT from HttpClient 4.2, read by the request director of 4.1 too
+	private static final String CONN_MANAGER_TIMEOUT = "http.conn-manager.timeout";
+
+	private final ThreadSafeClientConnManager connectionManager;
+	private final Client client;
+
+	public JerseyTransport(TransportConfig transportConfig) {
+
+		connectionManager = new ThreadSafeClientConnManager(SchemeRegistryFactory.createDefault(),
+				transportConfig.getConnectionTimeToLiveSeconds(), TimeUnit.SECONDS);
+		connectionManager.setMaxTotal(transportConfig.getMaxConnections());
+		connectionManager.setDefaultMaxPerRoute(transportConfig.getMaxConnectionsPerRoute());
+
+		HttpParams httpParams = new BasicHttpParams();
+		HttpConnectionParams.setConnectionTimeout(httpParams, transportConfig.getConnectTimeoutMillis());
+		HttpConnectionParams.setSoTimeout(httpParams, transportConfig.getReadTimeoutMillis());
+		// do not wait forever for a free connection when the pool is exhausted
+		httpParams.setLongParameter(CONN_MANAGER_TIMEOUT, transportConfig.getConnectTimeoutMillis());
+
+		DefaultApacheHttpClient4Config clientConfig = new DefaultApacheHttpClient4Config();
+		clientConfig.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, connectionManager);
+		clientConfig.getProperties().put(ApacheHttpClient4Config.PROPERTY_HTTP_PARAMS, httpParams);
+
+		client = ApacheHttpClient4.create(clientConfig);
+
+		logger.debug("Jersey transport initialized. Max connections : " + transportConfig.getMaxConnections());
+	}
+
+	@Override
+	public ConfigResponse get(URI uri, Map<String, String> headers) throws IOException {
+		try {
+			return new JerseyResponse(resource(uri, headers).get(ClientResponse.class));
+
+		} catch (ClientHandlerException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public ConfigResponse put(URI uri, Map<String, String> headers) throws IOException {
+		try {
+			return new JerseyResponse(resource(uri, headers).put(ClientResponse.class));
+
+		} catch (ClientHandlerException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void close() {
+		client.destroy();
+		connectionManager.shutdown();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private WebResource.Builder resource(URI uri, Map<String, String> headers) {
+		WebResource.Builder webResource = client.resource(uri).getRequestBuilder();
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			webResource = webResource.header(header.getKey(), header.getValue());
+		}
+		return webResource;
+	}
+
+	private static class JerseyResponse implements ConfigResponse {
+
+		private final ClientResponse response;
+
+		JerseyResponse(ClientResponse response) {
+			this.response = response;
+		}
+
+		@Override
+		public int getStatus() {
+			return response.getStatus();
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return response.getHeaders().getFirst(name);
+		}
+
+		@Override
+		public InputStream getBody() {
+			return response.getEntityInputStream();
+		}
+
+		@Override
+		public void close() {
+			response.close();
+		}
+
+		@Override
+		public String toString() {
+			return response.toString();
+		}
+	}
+}
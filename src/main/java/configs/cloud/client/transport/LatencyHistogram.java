@@ -0,0 +1,158 @@
+package configs.cloud.client.transport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with logarithmic buckets: four buckets per
+ * power of two, i.e. about 19% resolution, from 1 microsecond to hours.
+ * Recording is two atomic increments, cheap enough for every call.<br>
+ * Latencies are counted per window, one minute by default, and the counts
+ * cover the current and the previous window only, so the percentiles follow
+ * a shift of the latency of the endpoint within two windows.
+ *
+ * @author Pushkar
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 4;
+	private static final int BUCKETS = 160;
+	private static final long DEFAULT_WINDOW_SECONDS = 60;
+
+	private final long windowNanos;
+	private final AtomicReference<Window> window;
+
+	public LatencyHistogram() {
+		this(DEFAULT_WINDOW_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param window Time latencies are counted for, before the counts of the previous window are dropped
+	 * @param unit Unit of the window
+	 */
+	public LatencyHistogram(long window, TimeUnit unit) {
+		if (window <= 0) {
+			throw new IllegalArgumentException("Window must be positive : " + window);
+		}
+		this.windowNanos = unit.toNanos(window);
+		this.window = new AtomicReference<>(new Window(new Interval(System.nanoTime()), null));
+	}
+
+	public void record(long nanos) {
+		Interval current = getWindow().current;
+		current.counts.incrementAndGet(bucketOf(Math.max(0, nanos / 1000)));
+		current.count.increment();
+	}
+
+	/**
+	 * @return long Number of latencies recorded in the current and the previous window
+	 */
+	public long getCount() {
+		Window w = getWindow();
+		return w.current.count.sum() + ((w.previous != null) ? w.previous.count.sum() : 0);
+	}
+
+	/**
+	 * Returns the latency below which the given percentage of the calls
+	 * recorded in the current and the previous window completed.
+	 * 
+	 * @param percentile Percentile, e.g. 95 or 99.9
+	 * @return double Latency in milliseconds, 0 if nothing was recorded
+	 */
+	public double getPercentileMillis(double percentile) {
+
+		Window w = getWindow();
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = w.current.counts.get(i) + ((w.previous != null) ? w.previous.counts.get(i) : 0);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return upperBoundOf(i) / 1000.0;
+			}
+		}
+		return upperBoundOf(BUCKETS - 1) / 1000.0;
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	// starts a new window once the current one is over, a call recorded while
+	// another thread starts it may be counted in the window just ended
+	private Window getWindow() {
+
+		Window w = window.get();
+		long now = System.nanoTime();
+		long elapsed = now - w.current.startedAt;
+		if (elapsed < windowNanos) {
+			return w;
+		}
+		Window next = new Window(new Interval(now), (elapsed < 2 * windowNanos) ? w.current : null);
+		return window.compareAndSet(w, next) ? next : window.get();
+	}
+
+	private static int bucketOf(long micros) {
+
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int log2 = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) ((micros >>> (log2 - 2)) & (SUB_BUCKETS - 1));
+		return Math.min(BUCKETS - 1, SUB_BUCKETS * (log2 - 1) + sub);
+	}
+
+	private static long upperBoundOf(int bucket) {
+
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int log2 = bucket / SUB_BUCKETS + 1;
+		int sub = bucket % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << (log2 - 2)) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram{" +
+				"count=" + getCount() +
+				", p50=" + getPercentileMillis(50) +
+				", p95=" + getPercentileMillis(95) +
+				", p99=" + getPercentileMillis(99) +
+				'}';
+	}
+
+	private static final class Interval {
+
+		final long startedAt;
+		final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		final LongAdder count = new LongAdder();
+
+		Interval(long startedAt) {
+			this.startedAt = startedAt;
+		}
+	}
+
+	private static final class Window {
+
+		final Interval current;
+		final Interval previous;
+
+		Window(Interval current, Interval previous) {
+			this.current = current;
+			this.previous = previous;
+		}
+	}
+}
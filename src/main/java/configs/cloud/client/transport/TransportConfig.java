@@ -0,0 +1,208 @@
+package configs.cloud.client.transport;
+
+import configs.cloud.client.enums.TransportProvider;
+
+/**
+ * Settings for the HTTP transport shared by all calls made by a
+ * CloudConfigClient.
+ *
+ * @author Pushkar
+ *
+ */
+public class TransportConfig {
+
+	private TransportProvider transportProvider = TransportProvider.JERSEY;
+
+	private int connectTimeoutMillis = 5000;
+
+	private int readTimeoutMillis = 10000;
+
+	private int maxConnections = 20;
+
+	private int maxConnectionsPerRoute = 20;
+
+	private long connectionTimeToLiveSeconds = 60;
+
+	private boolean compressionEnabled = true;
+
+	private int maxRetries = 2;
+
+	private long retryBackoffMillis = 100;
+
+	private long maxRetryBackoffMillis = 2000;
+
+	private int circuitFailureThreshold = 5;
+
+	private long circuitOpenMillis = 30000;
+
+	private boolean hedgingEnabled = false;
+
+	private long hedgeDelayMillis = 100;
+
+	private double hedgePercentile = 95;
+
+	public TransportProvider getTransportProvider() {
+		return transportProvider;
+	}
+
+	/**
+	 * @param transportProvider JERSEY (pooled HTTP/1.1 connections) or HTTP2 (one multiplexed connection, Java 11+)
+	 */
+	public void setTransportProvider(TransportProvider transportProvider) {
+		this.transportProvider = transportProvider;
+	}
+
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	/**
+	 * @param connectTimeoutMillis Time allowed to open a connection, 0 means no timeout
+	 */
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public int getReadTimeoutMillis() {
+		return readTimeoutMillis;
+	}
+
+	/**
+	 * @param readTimeoutMillis Socket read timeout, 0 means no timeout
+	 */
+	public void setReadTimeoutMillis(int readTimeoutMillis) {
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * @param maxConnections Upper bound of pooled connections across all hosts, not used by HTTP2
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * @param maxConnectionsPerRoute Upper bound of pooled connections to one host
+	 */
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public long getConnectionTimeToLiveSeconds() {
+		return connectionTimeToLiveSeconds;
+	}
+
+	/**
+	 * @param connectionTimeToLiveSeconds How long an idle keep-alive connection may be reused
+	 */
+	public void setConnectionTimeToLiveSeconds(long connectionTimeToLiveSeconds) {
+		this.connectionTimeToLiveSeconds = connectionTimeToLiveSeconds;
+	}
+
+	public boolean isCompressionEnabled() {
+		return compressionEnabled;
+	}
+
+	/**
+	 * @param compressionEnabled Ask the server for gzip or deflate encoded responses
+	 */
+	public void setCompressionEnabled(boolean compressionEnabled) {
+		this.compressionEnabled = compressionEnabled;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * @param maxRetries Retries of a failed GET (connection error or 5xx status), 0 disables retries
+	 */
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public long getRetryBackoffMillis() {
+		return retryBackoffMillis;
+	}
+
+	/**
+	 * @param retryBackoffMillis Base of the exponential backoff between retries
+	 */
+	public void setRetryBackoffMillis(long retryBackoffMillis) {
+		this.retryBackoffMillis = retryBackoffMillis;
+	}
+
+	public long getMaxRetryBackoffMillis() {
+		return maxRetryBackoffMillis;
+	}
+
+	/**
+	 * @param maxRetryBackoffMillis Upper bound of the backoff between retries
+	 */
+	public void setMaxRetryBackoffMillis(long maxRetryBackoffMillis) {
+		this.maxRetryBackoffMillis = maxRetryBackoffMillis;
+	}
+
+	public int getCircuitFailureThreshold() {
+		return circuitFailureThreshold;
+	}
+
+	/**
+	 * @param circuitFailureThreshold Consecutive failures of an endpoint opening its circuit, 0 disables the circuit breaker
+	 */
+	public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+		this.circuitFailureThreshold = circuitFailureThreshold;
+	}
+
+	public long getCircuitOpenMillis() {
+		return circuitOpenMillis;
+	}
+
+	/**
+	 * @param circuitOpenMillis Time calls to an endpoint fail fast once its circuit opened
+	 */
+	public void setCircuitOpenMillis(long circuitOpenMillis) {
+		this.circuitOpenMillis = circuitOpenMillis;
+	}
+
+	public boolean isHedgingEnabled() {
+		return hedgingEnabled;
+	}
+
+	/**
+	 * @param hedgingEnabled Send a second identical GET when the first one is slower than the hedge delay, and use the first answer
+	 */
+	public void setHedgingEnabled(boolean hedgingEnabled) {
+		this.hedgingEnabled = hedgingEnabled;
+	}
+
+	public long getHedgeDelayMillis() {
+		return hedgeDelayMillis;
+	}
+
+	/**
+	 * @param hedgeDelayMillis Hedge delay used until the endpoint recorded enough latencies for its percentile
+	 */
+	public void setHedgeDelayMillis(long hedgeDelayMillis) {
+		this.hedgeDelayMillis = hedgeDelayMillis;
+	}
+
+	public double getHedgePercentile() {
+		return hedgePercentile;
+	}
+
+	/**
+	 * @param hedgePercentile Latency percentile of the endpoint used as hedge delay, 0 always uses the fixed hedge delay
+	 */
+	public void setHedgePercentile(double hedgePercentile) {
+		this.hedgePercentile = hedgePercentile;
+	}
+}
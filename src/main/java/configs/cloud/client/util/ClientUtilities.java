@@ -1,11 +1,16 @@
 package configs.cloud.client.util;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.UriBuilder;
@@ -13,9 +18,7 @@ import javax.ws.rs.core.UriBuilder;
 import org.apache.log4j.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.WebResource;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.sun.jersey.core.util.MultivaluedMapImpl;
 
 import configs.cloud.client.Constant;
@@ -26,12 +29,22 @@ import configs.cloud.client.entity.EnvWrapper;
 import configs.cloud.client.exceptions.ForbiddenException;
 import configs.cloud.client.exceptions.NotFoundException;
 import configs.cloud.client.exceptions.UnAuthorizedException;
+import configs.cloud.client.transport.ConfigResponse;
+import configs.cloud.client.transport.HttpTransport;
 
 public class ClientUtilities {
 	
 	private static final Logger logger = Logger.getLogger(ClientUtilities.class);
 
-	public static List<Config> getConfigCall(Map<String, String> parameters, String url, String queryApi,
+	// ObjectReaders are immutable and thread safe, build them (and their
+	// deserializer caches) once instead of per response
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectReader CONFIG_LIST_READER = MAPPER.reader(Config[].class);
+	private static final ObjectReader DATASET_LIST_READER = MAPPER.reader(Dataset[].class);
+	private static final ObjectReader ENV_WRAPPER_READER = MAPPER.reader(EnvWrapper.class);
+	private static final ObjectReader ENV_READER = MAPPER.reader(Env.class);
+
+	public static List<Config> getConfigCall(HttpTransport transport, Map<String, String> parameters, String url, String queryApi,
 			String apiKey) throws Exception {
 		List<Config> configsList = new ArrayList<>(0);
 		try {
@@ -40,10 +53,10 @@ public class ClientUtilities {
 			MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
 
 			// call Server
-			ClientResponse response = makeGetCall(url + queryApi, parameters, queryParams, apiKey);
+			ConfigResponse response = makeGetCall(transport, url + queryApi, parameters, queryParams, apiKey);
 
 			// Format response as Config Objects List
-			Config config[] = (Config[]) parseResponse(response, Config[].class);
+			Config config[] = parseResponse(transport, response, CONFIG_LIST_READER);
 			if (config.length > 0)
 				configsList = Arrays.asList(config);
 
@@ -53,7 +66,46 @@ public class ClientUtilities {
 		return configsList;
 	}
 
-	public static List<Config> searchConfigCall(String searchQuery,String datasetid,String envsname, boolean iqkFlag, String url, String queryApi,
+	/**
+	 * Lists configs like getConfigCall, but revalidates the previous listing
+	 * when the server sent validators for it. If the server answers 304 Not
+	 * Modified, the previous listing is returned as is, without reading or
+	 * parsing a body.
+	 * 
+	 * @param previous Listing obtained earlier for the same call, may be null
+	 * @return ConfigListing Fresh listing, or previous if it has not changed
+	 */
+	public static ConfigListing getConfigListingCall(HttpTransport transport, Map<String, String> parameters, String url,
+			String queryApi, String apiKey, ConfigListing previous) throws Exception {
+
+		MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
+
+		Map<String, String> headers = new HashMap<>();
+		if (previous != null && previous.getEtag() != null) {
+			headers.put(Constant.IF_NONE_MATCH, previous.getEtag());
+		}
+		if (previous != null && previous.getLastModified() != null) {
+			headers.put(Constant.IF_MODIFIED_SINCE, previous.getLastModified());
+		}
+
+		ConfigResponse response = makeGetCall(transport, url + queryApi, parameters, queryParams, apiKey, headers);
+
+		if (previous != null && response.getStatus() == 304) {
+			logger.debug("Listing not modified : " + queryApi);
+			response.close();
+			return previous;
+		}
+
+		String etag = response.getHeader(Constant.ETAG);
+		String lastModified = response.getHeader(Constant.LAST_MODIFIED);
+
+		Config config[] = parseResponse(transport, response, CONFIG_LIST_READER);
+		List<Config> configsList = (config.length > 0) ? Arrays.asList(config) : new ArrayList<Config>(0);
+
+		return new ConfigListing(configsList, etag, lastModified);
+	}
+
+	public static List<Config> searchConfigCall(HttpTransport transport, String searchQuery,String datasetid,String envsname, boolean iqkFlag, String url, String queryApi,
 			String apiKey) throws Exception {
 		List<Config> configsList = new ArrayList<>(0);
 		Map<String, String> parameters = new HashMap<>();
@@ -69,10 +121,10 @@ public class ClientUtilities {
 				queryParams.add(Constant.IQK, "Y");
 
 			// Call server
-			ClientResponse response = makeGetCall(url + queryApi, parameters, queryParams, apiKey);
+			ConfigResponse response = makeGetCall(transport, url + queryApi, parameters, queryParams, apiKey);
 
 			// Format response as Config Objects List
-			Config config[] = (Config[]) parseResponse(response, Config[].class);
+			Config config[] = parseResponse(transport, response, CONFIG_LIST_READER);
 			if (config.length > 0)
 				configsList = Arrays.asList(config);
 
@@ -82,22 +134,24 @@ public class ClientUtilities {
 		return configsList;
 	}
 	
-	public static Integer updateConfigCall(Map<String, String> parameters, MultivaluedMap<String, String> queryParams, String url, String queryApi,
+	public static Integer updateConfigCall(HttpTransport transport, Map<String, String> parameters, MultivaluedMap<String, String> queryParams, String url, String queryApi,
 			String apiKey) throws Exception {
 		
-		ClientResponse response = null;
+		ConfigResponse response = null;
 		try {
 
 			// Call server
-			response = makePutCall(url + queryApi, parameters, queryParams, apiKey);
+			response = makePutCall(transport, url + queryApi, parameters, queryParams, apiKey);
 			
 		} catch (Exception e) {
 			throw e;
 		}
+		// nothing to read, hand the connection back to the pool
+		response.close();
 		return response.getStatus();
 	}
 	
-	public static List<Dataset> getDatasetCall(Map<String, String> parameters, String url, String queryApi,
+	public static List<Dataset> getDatasetCall(HttpTransport transport, Map<String, String> parameters, String url, String queryApi,
 			String apiKey) throws Exception {
 		List<Dataset> datasets = new ArrayList<>(0);
 		try {
@@ -106,10 +160,10 @@ public class ClientUtilities {
 			MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
 
 			// call Server
-			ClientResponse response = makeGetCall(url + queryApi, parameters, queryParams, apiKey);
+			ConfigResponse response = makeGetCall(transport, url + queryApi, parameters, queryParams, apiKey);
 
 			// Format response as Config Objects List
-			Dataset[] dataset = (Dataset[]) parseResponse(response, Dataset[].class);
+			Dataset[] dataset = parseResponse(transport, response, DATASET_LIST_READER);
 			if (dataset.length > 0)
 				datasets = Arrays.asList(dataset);
 
@@ -119,7 +173,7 @@ public class ClientUtilities {
 		return datasets;
 	}
 
-	public static EnvWrapper getEnvCall(Map<String, String> parameters, String url, String queryApi,
+	public static EnvWrapper getEnvCall(HttpTransport transport, Map<String, String> parameters, String url, String queryApi,
 			String apiKey, boolean getWrapper) throws Exception {
 		
 		EnvWrapper envWrapper =  new EnvWrapper();
@@ -130,12 +184,12 @@ public class ClientUtilities {
 			MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
 
 			// call Server
-			ClientResponse response = makeGetCall(url + queryApi, parameters, queryParams, apiKey);
+			ConfigResponse response = makeGetCall(transport, url + queryApi, parameters, queryParams, apiKey);
 
 			if (getWrapper) {
-				envWrapper = (EnvWrapper) parseResponse(response, EnvWrapper.class);
+				envWrapper = parseResponse(transport, response, ENV_WRAPPER_READER);
 			} else {
-				environment = (Env) parseResponse(response, Env.class);
+				environment = parseResponse(transport, response, ENV_READER);
 				List<Env> envList = (new ArrayList<Env>(1));
 				envList.add(environment);
 				envWrapper.setEnv(envList);
@@ -153,17 +207,27 @@ public class ClientUtilities {
 	/** ============================= **/
 	
 	
-	private static ClientResponse makeGetCall(String urlToCall, Map<String, String> parameters,
+	private static ConfigResponse makeGetCall(HttpTransport transport, String urlToCall, Map<String, String> parameters,
 			MultivaluedMap<String, String> queryParams, String apiKey) throws Exception {
+		return makeGetCall(transport, urlToCall, parameters, queryParams, apiKey, Collections.<String, String>emptyMap());
+	}
 
-		ClientResponse response = null;
+	private static ConfigResponse makeGetCall(HttpTransport transport, String urlToCall, Map<String, String> parameters,
+			MultivaluedMap<String, String> queryParams, String apiKey, Map<String, String> headers) throws Exception {
+
+		ConfigResponse response = null;
 		try {
-			Client client = Client.create();
-			WebResource.Builder webResource = client
-					.resource(replaceParametersOnURL(urlToCall, parameters).toASCIIString()).queryParams(queryParams)
-					.header(Constant.X_AUTH_TOKEN, apiKey);
+			URI resource = replaceParametersOnURL(urlToCall, parameters, queryParams);
+
+			Map<String, String> requestHeaders = requestHeaders(apiKey);
+			if (transport.getConfig().isCompressionEnabled()) {
+				requestHeaders.put(Constant.ACCEPT_ENCODING, Constant.GZIP + ", " + Constant.DEFLATE);
+			}
+			requestHeaders.putAll(headers);
 
-			response = webResource.accept(Constant.ACCEPT).get(ClientResponse.class);
+			// GETs are idempotent, safe to retry
+			response = transport.execute(urlToCall, true,
+					() -> transport.getTransport().get(resource, requestHeaders));
 
 		} catch (Exception e) {
 			throw e;
@@ -171,18 +235,16 @@ public class ClientUtilities {
 		return response;
 	}
 	
-	private static ClientResponse makePutCall(String urlToCall, Map<String, String> parameters,
+	private static ConfigResponse makePutCall(HttpTransport transport, String urlToCall, Map<String, String> parameters,
 			MultivaluedMap<String, String> queryParams, String apiKey) throws Exception {
 
-		ClientResponse response = null;
+		ConfigResponse response = null;
 		try {
-			Client client = Client.create();
-			WebResource.Builder webResource = client
-					.resource(replaceParametersOnURL(urlToCall, parameters).toASCIIString())
-					.queryParams(queryParams)
-					.header(Constant.X_AUTH_TOKEN, apiKey);
+			URI resource = replaceParametersOnURL(urlToCall, parameters, queryParams);
+			Map<String, String> requestHeaders = requestHeaders(apiKey);
 
-			response = webResource.accept(Constant.ACCEPT).put(ClientResponse.class);
+			response = transport.execute(urlToCall, false,
+					() -> transport.getTransport().put(resource, requestHeaders));
 			response = verifyResponse(response); 
 			
 
@@ -192,14 +254,45 @@ public class ClientUtilities {
 		return response;
 	}
 
-	private static Object parseResponse(ClientResponse response, Class<?> clazz) throws Exception {
+	private static Map<String, String> requestHeaders(String apiKey) {
+		Map<String, String> headers = new HashMap<>();
+		headers.put(Constant.X_AUTH_TOKEN, apiKey);
+		headers.put(Constant.ACCEPT_HEADER, Constant.ACCEPT);
+		return headers;
+	}
+
+	private static <T> T parseResponse(HttpTransport transport, ConfigResponse response, ObjectReader reader)
+			throws Exception {
 
 		// check for any errors 
 		response = verifyResponse(response);
 		
-		ObjectMapper mapper = new ObjectMapper();
-		String output = response.getEntity(String.class);
-		return mapper.readValue(output, clazz);
+		// bind straight from the (decompressed) body, closing it returns the connection to the pool
+		CountingInputStream wire = new CountingInputStream(response.getBody());
+		CountingInputStream body = null;
+		try {
+			body = new CountingInputStream(decode(wire, response.getHeader(Constant.CONTENT_ENCODING)));
+			return reader.readValue(body);
+
+		} finally {
+			if (body != null) {
+				body.close();
+				transport.getMetrics().recordResponseBytes(wire.getCount(), body.getCount());
+			} else {
+				wire.close();
+			}
+		}
+	}
+
+	private static InputStream decode(InputStream wire, String contentEncoding) throws IOException {
+
+		if (Constant.GZIP.equalsIgnoreCase(contentEncoding)) {
+			return new GZIPInputStream(wire);
+
+		} else if (Constant.DEFLATE.equalsIgnoreCase(contentEncoding)) {
+			return new InflaterInputStream(wire);
+		}
+		return wire;
 	}
 
 	/**
@@ -208,14 +301,18 @@ public class ClientUtilities {
 	 * @return
 	 * @throws Exception
 	 */
-	private static ClientResponse verifyResponse(ClientResponse response) throws Exception {
+	private static ConfigResponse verifyResponse(ConfigResponse response) throws Exception {
 		
 		logger.debug("Server response status : "  + response.getStatus());		
 		
 		if (response.getStatus() == 200) {
 			return response;
-			
-		} else if (response.getStatus() == 401) {
+		}
+
+		// error body is not read, release the connection before failing
+		response.close();
+
+		if (response.getStatus() == 401) {
 			throw new UnAuthorizedException("UnAuthorized.  : response = " + response);
 			
 		} else if (response.getStatus() == 403) {
@@ -229,8 +326,14 @@ public class ClientUtilities {
 		}
 	}
 	
-	private static URI replaceParametersOnURL(String template, Map<String, String> parameters) {
+	private static URI replaceParametersOnURL(String template, Map<String, String> parameters,
+			MultivaluedMap<String, String> queryParams) {
 		UriBuilder builder = UriBuilder.fromPath(template);
+		for (Map.Entry<String, List<String>> queryParam : queryParams.entrySet()) {
+			for (String value : queryParam.getValue()) {
+				builder.queryParam(queryParam.getKey(), value);
+			}
+		}
 		URI output = builder.buildFromMap(parameters);
 		return output;
 	}
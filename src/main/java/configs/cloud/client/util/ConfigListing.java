@@ -0,0 +1,69 @@
+package configs.cloud.client.util;
+
+import java.util.List;
+
+import configs.cloud.client.entity.Config;
+
+/**
+ * Configs listed by the server for a dataset (or one of its environments),
+ * together with the validators the server sent for them. The validators
+ * allow the listing to be revalidated with a conditional request instead of
+ * being downloaded again. The last known listing also serves as fallback
+ * while the server cannot be called.<br>
+ * Caches keeping configs off the heap keep only the validators of a listing,
+ * see {@link #withoutConfigs()}.
+ *
+ * @author Pushkar
+ *
+ */
+public class ConfigListing {
+
+	private final List<Config> configs;
+	private final String etag;
+	private final String lastModified;
+	private final int size;
+
+	public ConfigListing(List<Config> configs, String etag, String lastModified) {
+		this(configs, etag, lastModified, configs.size());
+	}
+
+	private ConfigListing(List<Config> configs, String etag, String lastModified, int size) {
+		this.configs = configs;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.size = size;
+	}
+
+	/**
+	 * @return {@link List}&lt;{@link Config}&gt; Configs listed, null if kept without them
+	 */
+	public List<Config> getConfigs() {
+		return configs;
+	}
+
+	public boolean hasConfigs() {
+		return configs != null;
+	}
+
+	/**
+	 * @return int Number of configs listed, also when kept without them
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return ConfigListing Validators and size of this listing, without its configs
+	 */
+	public ConfigListing withoutConfigs() {
+		return new ConfigListing(null, etag, lastModified, size);
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+}
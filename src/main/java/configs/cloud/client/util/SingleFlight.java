@@ -0,0 +1,116 @@
+package configs.cloud.client.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import configs.cloud.client.ClientMetrics;
+import configs.cloud.client.exceptions.DeadlineExceededException;
+import configs.cloud.client.transport.Deadline;
+
+/**
+ * Deduplicates concurrent loads of the same key. The first caller for a key
+ * runs the loader, every caller arriving while it is in flight waits for and
+ * shares its result (or its exception). Waiting callers give up at their
+ * own {@link Deadline}, if any. A load failing at the deadline of the caller
+ * running it is not shared : the waiters still within their own deadline
+ * load again.
+ *
+ * @author Pushkar
+ *
+ * @param <K> Key type
+ * @param <V> Loaded value type
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final ClientMetrics metrics;
+
+	public SingleFlight(ClientMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Runs the loader for the key, unless a load for the same key is already
+	 * running, in which case its result is returned.
+	 *
+	 * @param key Key
+	 * @param loader Loads the value
+	 * @return V Loaded value
+	 * @throws Exception Exception thrown by the loader
+	 */
+	public V execute(K key, Callable<V> loader) throws Exception {
+
+		while (true) {
+
+			CompletableFuture<V> flight = new CompletableFuture<>();
+			CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+
+			if (existing == null) {
+				return load(key, flight, loader);
+			}
+
+			metrics.recordCoalescedRequest();
+			try {
+				return Deadline.await(existing);
+
+			} catch (DeadlineExceededException e) {
+				Deadline deadline = Deadline.current();
+				if (deadline != null && deadline.isExpired()) {
+					throw e;
+				}
+				// the deadline of the caller that ran the load, not ours
+			}
+		}
+	}
+
+	/**
+	 * Waits for the load of the key in flight, if any, without starting one.
+	 * Its failure is ignored, the caller only needs it to be over.
+	 *
+	 * @param key Key
+	 * @throws DeadlineExceededException The deadline of the caller expired first
+	 */
+	public void await(K key) throws DeadlineExceededException {
+
+		CompletableFuture<V> existing = inFlight.get(key);
+		if (existing == null) {
+			return;
+		}
+		try {
+			Deadline.await(existing);
+
+		} catch (DeadlineExceededException e) {
+			Deadline deadline = Deadline.current();
+			if (deadline != null && deadline.isExpired()) {
+				throw e;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+		} catch (Exception e) {
+			// failed, nothing was loaded
+		}
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private V load(K key, CompletableFuture<V> flight, Callable<V> loader) throws Exception {
+		try {
+			V value = loader.call();
+			flight.complete(value);
+			return value;
+
+		} catch (Throwable e) {
+			// errors too, waiters would hang otherwise
+			flight.completeExceptionally(e);
+			throw e;
+
+		} finally {
+			inFlight.remove(key, flight);
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package configs.cloud.client.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import configs.cloud.client.entity.Config;
+
+/**
+ * Keeps the last listing of each dataset (or environment) in a local file,
+ * so that a client can serve configs at boot without downloading them, and
+ * while the server cannot be reached.<br>
+ * A file holds a header (magic, version, CRC32 of the rest), the dataset,
+ * environment and validators of the listing, then the configs as JSON.
+ * Files are written to a temporary file and renamed over the previous one,
+ * so a reader never sees a partial snapshot; a file failing its checksum is
+ * ignored. Files are readable by their owner only, as configs may hold
+ * passwords.<br>
+ * Saves of one listing are not ordered by the store: callers write them
+ * one at a time, the last one renamed wins.
+ *
+ * @author Pushkar
+ *
+ */
+public class SnapshotStore {
+
+	private static final Logger logger = Logger.getLogger(SnapshotStore.class);
+	private static final int MAGIC = 0x43435331;
+	private static final int VERSION = 1;
+	// magic, version and checksum
+	private static final int HEADER_BYTES = 16;
+	private static final String SUFFIX = ".snapshot";
+	private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectReader CONFIG_LIST_READER = MAPPER.reader(Config[].class);
+	private static final ObjectWriter CONFIG_LIST_WRITER = MAPPER.writer();
+
+	private final File directory;
+
+	public SnapshotStore(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create snapshot directory : " + directory);
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * Writes the listing of a dataset or environment, replacing its previous
+	 * snapshot atomically.
+	 *
+	 * @param datasetId Dataset id
+	 * @param envsname Environment Short name, null for the whole dataset
+	 * @param listing Listing to write
+	 * @throws IOException Thrown when the snapshot cannot be written
+	 */
+	public void save(Integer datasetId, String envsname, ConfigListing listing) throws IOException {
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeInt(datasetId);
+		writeNullable(out, envsname);
+		writeNullable(out, listing.getEtag());
+		writeNullable(out, listing.getLastModified());
+		CONFIG_LIST_WRITER.writeValue(out, listing.getConfigs());
+		byte[] bytes = body.toByteArray();
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+
+		File target = new File(directory, fileName(datasetId, envsname));
+		Path temp = createTempFile(target.getName());
+		try {
+			try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+				DataOutputStream header = new DataOutputStream(file);
+				header.writeInt(MAGIC);
+				header.writeInt(VERSION);
+				header.writeLong(crc.getValue());
+				header.write(bytes);
+				header.flush();
+				file.getFD().sync();
+			}
+			try {
+				Files.move(temp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			syncDirectory();
+			logger.debug("Snapshot written : " + target + " Configs : " + listing.getConfigs().size());
+
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Deletes the snapshot of a dataset or environment, if any.
+	 *
+	 * @param datasetId Dataset id
+	 * @param envsname Environment Short name, null for the whole dataset
+	 * @throws IOException Thrown when the snapshot cannot be deleted
+	 */
+	public void delete(Integer datasetId, String envsname) throws IOException {
+		if (Files.deleteIfExists(new File(directory, fileName(datasetId, envsname)).toPath())) {
+			syncDirectory();
+			logger.debug("Snapshot deleted : " + fileName(datasetId, envsname));
+		}
+	}
+
+	/**
+	 * Reads every valid snapshot of the directory.
+	 *
+	 * @return {@link List}&lt;{@link Snapshot}&gt; Snapshots found
+	 */
+	public List<Snapshot> load() {
+
+		List<Snapshot> snapshots = new ArrayList<>();
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return snapshots;
+		}
+		for (File file : files) {
+			if (!file.getName().endsWith(SUFFIX)) {
+				continue;
+			}
+			try {
+				Snapshot snapshot = read(file);
+				if (snapshot != null) {
+					snapshots.add(snapshot);
+				}
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Ignoring unreadable snapshot " + file + " : " + e.getMessage());
+			}
+		}
+		return snapshots;
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private Path createTempFile(String prefix) throws IOException {
+		Path path = directory.toPath();
+		if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			return Files.createTempFile(path, prefix, ".tmp", PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+		}
+		return Files.createTempFile(path, prefix, ".tmp");
+	}
+
+	// makes the rename durable, the file system may not support it, e.g. on Windows
+	private void syncDirectory() {
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			logger.debug("Unable to sync snapshot directory : " + e.getMessage());
+		}
+	}
+
+	private Snapshot read(File file) throws IOException {
+
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+
+		if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			logger.warn("Ignoring snapshot of unknown format : " + file);
+			return null;
+		}
+
+		buffer.position(HEADER_BYTES);
+		ByteBuffer body = buffer.slice();
+		CRC32 crc = new CRC32();
+		crc.update(body.duplicate());
+		if (crc.getValue() != buffer.getLong(8)) {
+			logger.warn("Ignoring corrupted snapshot : " + file);
+			return null;
+		}
+
+		DataInputStream in = new DataInputStream(new ByteBufferBackedInputStream(body));
+		Integer datasetId = in.readInt();
+		String envsname = readNullable(in);
+		String etag = readNullable(in);
+		String lastModified = readNullable(in);
+		Config[] configs = CONFIG_LIST_READER.readValue(in);
+
+		return new Snapshot(datasetId, envsname,
+				new ConfigListing(new ArrayList<>(Arrays.asList(configs)), etag, lastModified));
+	}
+
+	private static String fileName(Integer datasetId, String envsname) throws IOException {
+		String name = "dataset-" + datasetId;
+		if (envsname != null) {
+			name += "-" + URLEncoder.encode(envsname, "UTF-8");
+		}
+		return name + SUFFIX;
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * Listing of a dataset, or of one of its environments, read from disk
+	 */
+	public static class Snapshot {
+
+		private final Integer datasetId;
+		private final String envsname;
+		private final ConfigListing listing;
+
+		Snapshot(Integer datasetId, String envsname, ConfigListing listing) {
+			this.datasetId = datasetId;
+			this.envsname = envsname;
+			this.listing = listing;
+		}
+
+		public Integer getDatasetId() {
+			return datasetId;
+		}
+
+		public String getEnvsname() {
+			return envsname;
+		}
+
+		public ConfigListing getListing() {
+			return listing;
+		}
+	}
+}
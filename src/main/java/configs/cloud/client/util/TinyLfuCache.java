@@ -0,0 +1,442 @@
+package configs.cloud.client.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Size bounded concurrent cache with W-TinyLFU eviction.<br>
+ * New entries go through a small LRU admission window (1% of the capacity).
+ * Entries leaving the window only enter the main segmented LRU (probation
+ * and protected) when a frequency sketch of recent accesses says they are
+ * used more often than the entry they would evict, so that one-off lookups
+ * cannot flush the frequently used entries.<br>
+ * Reads are lock free: a map read, plus a reordering of the access lists
+ * skipped when another thread holds the eviction lock. Entries expire
+ * individually, after their time to live or once not read for the idle time
+ * of the cache, checked when read, without any background thread. An entry
+ * found expired leaves the map at once, and the access lists once a thread
+ * next holds the eviction lock.
+ *
+ * @author Pushkar
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class TinyLfuCache<K, V> {
+
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+	private static final int DEAD = 3;
+
+	private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+	// expired entries taken out of data by reads, still in the access lists
+	private final ConcurrentLinkedQueue<Node<K, V>> expired = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final FrequencySketch sketch;
+	private final BiConsumer<K, V> removalListener;
+	private final long idleNanos;
+
+	private final int maximumSize;
+	private final int windowMaximum;
+	private final int protectedMaximum;
+
+	// access ordered lists guarded by evictionLock, head is the least recently used
+	private final Node<K, V> window = new Node<>(null, null, 0, 0);
+	private final Node<K, V> probation = new Node<>(null, null, 0, 0);
+	private final Node<K, V> protectedSegment = new Node<>(null, null, 0, 0);
+	private int size;
+	private int windowSize;
+	private int protectedSize;
+
+	/**
+	 * @param maximumSize Maximum number of entries
+	 * @param removalListener Called, under the eviction lock, with each entry evicted, expired or removed. May be null
+	 */
+	public TinyLfuCache(int maximumSize, BiConsumer<K, V> removalListener) {
+		this(maximumSize, 0, removalListener);
+	}
+
+	/**
+	 * @param maximumSize Maximum number of entries
+	 * @param idleNanos Time after which an entry not read expires, 0 for no limit
+	 * @param removalListener Called, under the eviction lock, with each entry evicted, expired or removed. May be null
+	 */
+	public TinyLfuCache(int maximumSize, long idleNanos, BiConsumer<K, V> removalListener) {
+		this.idleNanos = idleNanos;
+		this.maximumSize = Math.max(1, maximumSize);
+		this.windowMaximum = Math.max(1, this.maximumSize / 100);
+		this.protectedMaximum = (this.maximumSize - windowMaximum) * 80 / 100;
+		this.sketch = new FrequencySketch(this.maximumSize);
+		this.removalListener = removalListener;
+		window.prev = window.next = window;
+		probation.prev = probation.next = probation;
+		protectedSegment.prev = protectedSegment.next = protectedSegment;
+	}
+
+	/**
+	 * @param key Key
+	 * @return V Value, null if absent or expired
+	 */
+	public V get(K key) {
+
+		sketch.increment(key.hashCode());
+
+		Node<K, V> node = data.get(key);
+		if (node == null) {
+			return null;
+		}
+		if (node.expiresAt != 0) {
+			long now = System.nanoTime();
+			if (node.expiresAt - now <= 0) {
+				if (data.remove(key, node)) {
+					expired.add(node);
+				}
+				node = null;
+			} else if (idleNanos > 0) {
+				node.expiresAt = expiresAt(node.deadline, now);
+			}
+		}
+
+		// lossy, a contended read skips the reordering instead of waiting
+		if (evictionLock.tryLock()) {
+			try {
+				discardExpired();
+				if (node != null) {
+					onAccess(node);
+				}
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+		return (node != null) ? node.value : null;
+	}
+
+	/**
+	 * @param key Key
+	 * @param value Value
+	 * @param ttlNanos Time to live of the entry, 0 for no expiry
+	 */
+	public void put(K key, V value, long ttlNanos) {
+
+		long now = System.nanoTime();
+		long deadline = (ttlNanos > 0) ? Math.max(1, now + ttlNanos) : 0;
+		long expiresAt = expiresAt(deadline, now);
+
+		evictionLock.lock();
+		try {
+			discardExpired();
+			Node<K, V> node = data.get(key);
+			if (node != null) {
+				node.value = value;
+				node.deadline = deadline;
+				node.expiresAt = expiresAt;
+				onAccess(node);
+				return;
+			}
+
+			node = new Node<>(key, value, deadline, expiresAt);
+			data.put(key, node);
+			link(window, node, WINDOW);
+			windowSize++;
+			size++;
+			evict();
+
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Replaces the value of the entry, keeping its expiry, only if it is
+	 * still oldValue.
+	 *
+	 * @param key Key
+	 * @param oldValue Value expected, compared by identity
+	 * @param newValue New value
+	 * @return boolean true if replaced
+	 */
+	public boolean replace(K key, V oldValue, V newValue) {
+		evictionLock.lock();
+		try {
+			Node<K, V> node = data.get(key);
+			if (node == null || node.value != oldValue) {
+				return false;
+			}
+			node.value = newValue;
+			return true;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public void remove(K key) {
+		Node<K, V> node = data.get(key);
+		if (node != null) {
+			remove(key, node);
+		}
+	}
+
+	/**
+	 * @return {@link List}&lt;V&gt; Values of the entries not expired
+	 */
+	public List<V> values() {
+		long now = System.nanoTime();
+		List<V> values = new ArrayList<>(data.size());
+		for (Node<K, V> node : data.values()) {
+			if (node.expiresAt == 0 || node.expiresAt - now > 0) {
+				values.add(node.value);
+			}
+		}
+		return values;
+	}
+
+	public int size() {
+		return data.size();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	// the earliest of the time to live deadline and the end of the idle time
+	private long expiresAt(long deadline, long now) {
+		if (idleNanos <= 0) {
+			return deadline;
+		}
+		long idleExpiresAt = Math.max(1, now + idleNanos);
+		return (deadline != 0 && deadline - idleExpiresAt < 0) ? deadline : idleExpiresAt;
+	}
+
+	private void remove(K key, Node<K, V> node) {
+		evictionLock.lock();
+		try {
+			discardExpired();
+			if (data.remove(key, node)) {
+				discard(node);
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private void discardExpired() {
+		Node<K, V> node;
+		while ((node = expired.poll()) != null) {
+			discard(node);
+		}
+	}
+
+	private void onAccess(Node<K, V> node) {
+
+		if (node.queue == WINDOW) {
+			moveToTail(window, node);
+
+		} else if (node.queue == PROBATION) {
+			// promote, demoting the least recently used protected entry if full
+			unlink(node);
+			link(protectedSegment, node, PROTECTED);
+			protectedSize++;
+			if (protectedSize > protectedMaximum) {
+				Node<K, V> demoted = protectedSegment.next;
+				unlink(demoted);
+				protectedSize--;
+				link(probation, demoted, PROBATION);
+			}
+
+		} else if (node.queue == PROTECTED) {
+			moveToTail(protectedSegment, node);
+		}
+	}
+
+	private void evict() {
+
+		// entries overflowing the window become candidates, at the tail of probation
+		Node<K, V> firstCandidate = null;
+		while (windowSize > windowMaximum) {
+			Node<K, V> candidate = window.next;
+			unlink(candidate);
+			windowSize--;
+			link(probation, candidate, PROBATION);
+			if (firstCandidate == null) {
+				firstCandidate = candidate;
+			}
+		}
+
+		while (size > maximumSize) {
+
+			Node<K, V> victim = probation.next;
+			Node<K, V> candidate = probation.prev;
+
+			if (victim == probation) {
+				// probation is empty, fall back to the protected segment, then the window
+				victim = (protectedSegment.next != protectedSegment) ? protectedSegment.next : window.next;
+				evictEntry(victim);
+
+			} else if (victim == candidate || firstCandidate == null) {
+				evictEntry(victim);
+
+			} else if (victim == firstCandidate) {
+				// probation only holds candidates, the oldest one goes
+				firstCandidate = (victim.next != probation) ? victim.next : null;
+				evictEntry(victim);
+
+			} else {
+				// admit the candidate only if it is used more often than the victim
+				if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+					evictEntry(victim);
+				} else {
+					if (candidate == firstCandidate) {
+						firstCandidate = null;
+					}
+					evictEntry(candidate);
+				}
+			}
+		}
+	}
+
+	private void evictEntry(Node<K, V> node) {
+		data.remove(node.key, node);
+		discard(node);
+	}
+
+	private void discard(Node<K, V> node) {
+		// an expired entry may have been evicted before its read was drained
+		if (node.queue == DEAD) {
+			return;
+		}
+		if (node.queue == WINDOW) {
+			windowSize--;
+		} else if (node.queue == PROTECTED) {
+			protectedSize--;
+		}
+		unlink(node);
+		node.queue = DEAD;
+		size--;
+		if (removalListener != null) {
+			removalListener.accept(node.key, node.value);
+		}
+	}
+
+	private static <K, V> void link(Node<K, V> list, Node<K, V> node, int queue) {
+		node.prev = list.prev;
+		node.next = list;
+		list.prev.next = node;
+		list.prev = node;
+		node.queue = queue;
+	}
+
+	private static <K, V> void unlink(Node<K, V> node) {
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = node.next = null;
+	}
+
+	private static <K, V> void moveToTail(Node<K, V> list, Node<K, V> node) {
+		if (list.prev != node) {
+			unlink(node);
+			link(list, node, node.queue);
+		}
+	}
+
+	private static final class Node<K, V> {
+
+		final K key;
+		volatile V value;
+		// System.nanoTime() at which the time to live ends, 0 for never
+		volatile long deadline;
+		// System.nanoTime() at which the entry expires, idle or not, 0 for never
+		volatile long expiresAt;
+
+		// guarded by evictionLock
+		int queue;
+		Node<K, V> prev;
+		Node<K, V> next;
+
+		Node(K key, V value, long deadline, long expiresAt) {
+			this.key = key;
+			this.value = value;
+			this.deadline = deadline;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Count-min sketch of access frequencies, four 4 bit counters per key.
+	 * Counters are halved once 10 times the cache capacity accesses were
+	 * recorded, so that the sketch follows changes in popularity. Updates
+	 * are not synchronized; an increment lost to a race only makes the
+	 * estimate slightly lower.
+	 */
+	private static final class FrequencySketch {
+
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+				0xcbf29ce484222325L };
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private final long[] table;
+		private final int tableMask;
+		private final int sampleSize;
+		private int additions;
+
+		FrequencySketch(int maximumSize) {
+			int length = Integer.highestOneBit(Math.max(2, maximumSize - 1)) << 1;
+			table = new long[Math.min(length, 1 << 30)];
+			tableMask = table.length - 1;
+			sampleSize = 10 * maximumSize;
+		}
+
+		void increment(int hashCode) {
+			int hash = spread(hashCode);
+			int start = (hash & 3) << 2;
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				int index = indexOf(hash, i);
+				int offset = (start + i) << 2;
+				long mask = 0xfL << offset;
+				if ((table[index] & mask) != mask) {
+					table[index] += 1L << offset;
+					added = true;
+				}
+			}
+			if (added && ++additions >= sampleSize) {
+				reset();
+			}
+		}
+
+		int frequency(int hashCode) {
+			int hash = spread(hashCode);
+			int start = (hash & 3) << 2;
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < 4; i++) {
+				int offset = (start + i) << 2;
+				int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL);
+				frequency = Math.min(frequency, count);
+			}
+			return frequency;
+		}
+
+		private void reset() {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = (table[i] >>> 1) & RESET_MASK;
+			}
+			additions = additions >>> 1;
+		}
+
+		private int indexOf(int hash, int i) {
+			long h = (hash + SEEDS[i]) * SEEDS[i];
+			h += h >>> 32;
+			return ((int) h) & tableMask;
+		}
+
+		private static int spread(int x) {
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			return (x >>> 16) ^ x;
+		}
+	}
+}
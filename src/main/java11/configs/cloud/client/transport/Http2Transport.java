@@ -0,0 +1,142 @@
+package configs.cloud.client.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+import configs.cloud.client.util.NamedThreadFactory;
+
+/**
+ * HTTP/2 transport built on the JDK HttpClient. Concurrent requests to the
+ * server are multiplexed as streams of a single connection instead of using
+ * one socket each, so the connection pool settings do not apply. Falls back
+ * to HTTP/1.1 when the server does not speak HTTP/2.
+ *
+ * @author Pushkar
+ *
+ */
+public class Http2Transport implements ConfigTransport {
+
+	private static final Logger logger = Logger.getLogger(Http2Transport.class);
+
+	private final ExecutorService executor;
+	private final HttpClient client;
+	private final Duration readTimeout;
+
+	/**
+	 * @return boolean true, this runtime has the JDK HttpClient
+	 */
+	public static boolean isAvailable() {
+		return true;
+	}
+
+	public Http2Transport(TransportConfig transportConfig) {
+
+		// daemon threads, the default executor would outlive close()
+		executor = Executors.newCachedThreadPool(new NamedThreadFactory("configs-cloud-http2"));
+
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.executor(executor);
+		if (transportConfig.getConnectTimeoutMillis() > 0) {
+			builder.connectTimeout(Duration.ofMillis(transportConfig.getConnectTimeoutMillis()));
+		}
+		client = builder.build();
+
+		readTimeout = (transportConfig.getReadTimeoutMillis() > 0)
+				? Duration.ofMillis(transportConfig.getReadTimeoutMillis()) : null;
+
+		logger.debug("HTTP/2 transport initialized.");
+	}
+
+	@Override
+	public ConfigResponse get(URI uri, Map<String, String> headers) throws IOException {
+		return send(request(uri, headers).GET().build());
+	}
+
+	@Override
+	public ConfigResponse put(URI uri, Map<String, String> headers) throws IOException {
+		return send(request(uri, headers).PUT(HttpRequest.BodyPublishers.noBody()).build());
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private HttpRequest.Builder request(URI uri, Map<String, String> headers) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+		if (readTimeout != null) {
+			builder.timeout(readTimeout);
+		}
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			builder.header(header.getKey(), header.getValue());
+		}
+		return builder;
+	}
+
+	private ConfigResponse send(HttpRequest request) throws IOException {
+		try {
+			return new Http2Response(request, client.send(request, HttpResponse.BodyHandlers.ofInputStream()));
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted calling : " + request.uri());
+		}
+	}
+
+	private static class Http2Response implements ConfigResponse {
+
+		private final HttpRequest request;
+		private final HttpResponse<InputStream> response;
+
+		Http2Response(HttpRequest request, HttpResponse<InputStream> response) {
+			this.request = request;
+			this.response = response;
+		}
+
+		@Override
+		public int getStatus() {
+			return response.statusCode();
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return response.headers().firstValue(name).orElse(null);
+		}
+
+		@Override
+		public InputStream getBody() {
+			return response.body();
+		}
+
+		@Override
+		public void close() {
+			try {
+				response.body().close();
+			} catch (IOException e) {
+				logger.debug("Failed to close response : " + e.getMessage());
+			}
+		}
+
+		@Override
+		public String toString() {
+			return request.method() + " " + request.uri() + " returned a response status of " + getStatus();
+		}
+	}
+}
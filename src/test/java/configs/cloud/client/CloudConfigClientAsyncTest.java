@@ -0,0 +1,102 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.exceptions.DeadlineExceededException;
+import configs.cloud.client.exceptions.NotFoundException;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.transport.TransportConfig;
+
+public class CloudConfigClientAsyncTest {
+
+	private StubConfigServer server;
+	private CloudConfigClient client;
+
+	@Before
+	public void start() throws Exception {
+		server = new StubConfigServer();
+		server.addConfig("Dev", "a", "dev-a", 1);
+		TransportConfig transportConfig = new TransportConfig();
+		transportConfig.setMaxConnections(1);
+		client = new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", CacheProvider.LOCAL, transportConfig,
+				new CacheConfig());
+	}
+
+	@After
+	public void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testCompletion() throws Exception {
+		assertEquals("Testing loaded value", "dev-a", client.getConfigValueAsync("a").get(5, TimeUnit.SECONDS));
+
+		CompletableFuture<String> cached = client.getConfigValueAsync("a");
+		assertTrue("Testing cached value completed at once", cached.isDone());
+		assertEquals("Testing cached value", "dev-a", cached.get());
+		assertEquals("Testing single lookup", 1, server.getDownloads("/api/configs/2/Dev/a"));
+	}
+
+	@Test
+	public void testExceptionalCompletion() throws Exception {
+		// the stub only serves configs
+		CompletableFuture<?> datasets = client.getDatasetsAsync();
+		try {
+			datasets.get(5, TimeUnit.SECONDS);
+			fail("Testing failed call");
+		} catch (ExecutionException e) {
+			assertTrue("Testing failure : " + e.getCause(), e.getCause() instanceof NotFoundException);
+		}
+	}
+
+	@Test
+	public void testDeadline() throws Exception {
+		server.setDelayMillis(1000);
+		CompletableFuture<String> value = client.withDeadline(100, TimeUnit.MILLISECONDS,
+				() -> client.getConfigValueAsync("a"));
+		try {
+			value.get(900, TimeUnit.MILLISECONDS);
+			fail("Testing deadline");
+		} catch (ExecutionException e) {
+			assertTrue("Testing deadline exceeded : " + e.getCause(), e.getCause() instanceof DeadlineExceededException);
+		}
+	}
+
+	@Test
+	public void testQueueBounded() throws Exception {
+		server.setDelayMillis(200);
+		List<CompletableFuture<String>> values = new ArrayList<>();
+		// one thread, as many connections
+		for (int i = 0; i < 100; i++) {
+			values.add(client.getConfigValueAsync("key." + i));
+		}
+
+		int rejected = 0;
+		for (CompletableFuture<String> value : values) {
+			if (value.isCompletedExceptionally()) {
+				try {
+					value.get();
+				} catch (ExecutionException e) {
+					assertTrue("Testing rejection : " + e.getCause(), e.getCause() instanceof RejectedExecutionException);
+					rejected++;
+				}
+			}
+		}
+		assertTrue("Testing calls past the queue rejected : " + rejected, rejected >= 100 - 1 - 64);
+	}
+}
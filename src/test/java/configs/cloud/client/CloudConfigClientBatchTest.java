@@ -0,0 +1,86 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.transport.TransportConfig;
+
+public class CloudConfigClientBatchTest {
+
+	private static final String LISTING_PATH = "/api/configs/2/Dev";
+
+	private StubConfigServer server;
+	private CloudConfigClient client;
+
+	@Before
+	public void start() throws Exception {
+		server = new StubConfigServer();
+		for (int i = 0; i < 20; i++) {
+			server.addConfig("Dev", "key." + i, "dev-" + i, 1);
+		}
+		client = new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", CacheProvider.LOCAL,
+				new TransportConfig(), new CacheConfig());
+	}
+
+	@After
+	public void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testFewKeysFetchedOneByOne() throws Exception {
+		Map<String, Config> configs = client.getConfigs("Dev", Arrays.asList("key.1", "key.2", "missing"));
+
+		assertEquals("Testing configs", 2, configs.size());
+		assertEquals("Testing value", "dev-1", configs.get("key.1").getValue());
+		assertNull("Testing missing key", configs.get("missing"));
+		assertEquals("Testing key fetched", 1, server.getDownloads(LISTING_PATH + "/key.2"));
+		assertEquals("Testing key fetched", 1, server.getRequests(LISTING_PATH + "/missing"));
+		assertEquals("Testing environment not listed", 0, server.getRequests(LISTING_PATH));
+	}
+
+	@Test
+	public void testManyKeysListed() throws Exception {
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			keys.add("key." + i);
+		}
+		keys.add("missing");
+		Map<String, Config> configs = client.getConfigs("Dev", keys);
+
+		assertEquals("Testing configs", 10, configs.size());
+		assertEquals("Testing environment listed", 1, server.getDownloads(LISTING_PATH));
+		assertEquals("Testing no key fetched", 0, server.getRequests(LISTING_PATH + "/key.1"));
+	}
+
+	@Test
+	public void testBatchOnAsyncExecutor() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		client.setAsyncExecutor(executor);
+		try {
+			// the only thread runs the batch, the fetches it queues cannot start
+			Future<Map<String, Config>> configs = executor
+					.submit(() -> client.getConfigs("Dev", Arrays.asList("key.1", "key.2", "key.3")));
+			assertEquals("Testing configs", 3, configs.get(5, TimeUnit.SECONDS).size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
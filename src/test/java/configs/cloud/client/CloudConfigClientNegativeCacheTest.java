@@ -0,0 +1,105 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.transport.TransportConfig;
+import net.sf.ehcache.CacheManager;
+
+@RunWith(Parameterized.class)
+public class CloudConfigClientNegativeCacheTest {
+
+	private static final String MISSING_PATH = "/api/configs/2/Dev/missing";
+	// EHCACHE expires entries in whole seconds
+	private static final long EXPIRY_MILLIS = 2100;
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> providers() {
+		return Arrays.asList(new Object[][] { { CacheProvider.LOCAL }, { CacheProvider.SNAPSHOT },
+				{ CacheProvider.OFFHEAP }, { CacheProvider.EHCACHE } });
+	}
+
+	private final CacheProvider provider;
+
+	private StubConfigServer server;
+	private CloudConfigClient client;
+
+	public CloudConfigClientNegativeCacheTest(CacheProvider provider) {
+		this.provider = provider;
+	}
+
+	@Before
+	public void start() throws Exception {
+		// a cache left by another test keeps its own time to live
+		CacheManager.getInstance().removeAllCaches();
+		server = new StubConfigServer();
+		server.addConfig("Dev", "a", "dev-a", 1);
+		// configs expire before the negative entries
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.getDefaultPolicy().setTimeToLiveSeconds(1);
+		client = new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", provider, new TransportConfig(),
+				cacheConfig);
+		client.setNegativeCacheTtlSeconds(1);
+	}
+
+	@After
+	public void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testNotFoundCached() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			assertNull("Testing missing key", client.getConfigValue("missing"));
+		}
+		assertEquals("Testing single lookup", 1, server.getRequests(MISSING_PATH));
+	}
+
+	@Test
+	public void testNotFoundExpires() throws Exception {
+		assertNull("Testing missing key", client.getConfigValue("missing"));
+		Thread.sleep(EXPIRY_MILLIS);
+
+		assertNull("Testing missing key", client.getConfigValue("missing"));
+		assertEquals("Testing lookup after expiry", 2, server.getRequests(MISSING_PATH));
+	}
+
+	@Test
+	public void testNotFoundClearedByWrite() throws Exception {
+		client.setNegativeCacheTtlSeconds(60);
+		assertNull("Testing missing key", client.getConfigValue("missing"));
+
+		assertTrue("Testing update", client.updateConfig("missing", "created"));
+		assertEquals("Testing written value", "created", client.getConfigValue("missing"));
+		Thread.sleep(EXPIRY_MILLIS);
+		assertEquals("Testing value looked up again", "created", client.getConfigValue("missing"));
+		assertEquals("Testing read back and looked up again", 2, server.getDownloads(MISSING_PATH));
+	}
+
+	@Test
+	public void testEmptyListingClearedByWrite() throws Exception {
+		client.setNegativeCacheTtlSeconds(60);
+		server.removeConfig("Dev", "a");
+		assertTrue("Testing empty listing", client.getConfigs("Dev").isEmpty());
+		assertTrue("Testing empty listing cached", client.getConfigs("Dev").isEmpty());
+		assertEquals("Testing single listing", 1, server.getRequests("/api/configs/2/Dev"));
+
+		assertTrue("Testing update", client.updateConfig("a", "created"));
+		Thread.sleep(EXPIRY_MILLIS);
+		assertEquals("Testing listed after write", 1, client.getConfigs("Dev").size());
+	}
+}
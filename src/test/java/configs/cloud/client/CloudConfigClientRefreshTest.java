@@ -0,0 +1,106 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
+import configs.cloud.client.transport.TransportConfig;
+
+public class CloudConfigClientRefreshTest {
+
+	private static final String CONFIG_PATH = "/api/configs/2/Dev/a";
+
+	private StubConfigServer server;
+	private CloudConfigClient client;
+
+	@Before
+	public void start() throws Exception {
+		server = new StubConfigServer();
+		server.addConfig("Dev", "a", "dev-a", 1);
+
+		CachePolicy policy = new CachePolicy();
+		policy.setTimeToLiveSeconds(1);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDefaultPolicy(policy);
+		TransportConfig transportConfig = new TransportConfig();
+		transportConfig.setMaxRetries(0);
+		client = new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", CacheProvider.LOCAL, transportConfig,
+				cacheConfig);
+	}
+
+	@After
+	public void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testStaleServedWhileReloading() throws Exception {
+		client.setStaleWhileRevalidateSeconds(10);
+		assertEquals("Testing loaded value", "dev-a", client.getConfigValue("a"));
+		server.updateConfig("Dev", "a", "new-a");
+		server.setDelayMillis(500);
+		Thread.sleep(1100);
+
+		long startedAt = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			assertEquals("Testing stale value", "dev-a", client.getConfigValue("a"));
+		}
+		long waited = System.currentTimeMillis() - startedAt;
+		assertTrue("Testing answered at once : " + waited, waited < 400);
+		assertEquals("Testing stale responses", 5, client.getMetrics().getStaleResponses());
+
+		waitFor(() -> client.getMetrics().getBackgroundRefreshes() == 1);
+		assertEquals("Testing reloaded value", "new-a", client.getConfigValue("a"));
+		assertEquals("Testing single reload", 2, server.getRequests(CONFIG_PATH));
+	}
+
+	@Test
+	public void testRefreshedAhead() throws Exception {
+		client.setRefreshAheadFactor(0.5);
+		assertEquals("Testing loaded value", "dev-a", client.getConfigValue("a"));
+		server.updateConfig("Dev", "a", "new-a");
+		server.setDelayMillis(300);
+		Thread.sleep(600);
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals("Testing cached value", "dev-a", client.getConfigValue("a"));
+		}
+		waitFor(() -> client.getMetrics().getBackgroundRefreshes() == 1);
+		assertEquals("Testing refreshed value", "new-a", client.getConfigValue("a"));
+		assertEquals("Testing single reload", 2, server.getRequests(CONFIG_PATH));
+		assertEquals("Testing no stale response", 0, client.getMetrics().getStaleResponses());
+	}
+
+	@Test
+	public void testStaleServedWhenReloadFails() throws Exception {
+		client.setStaleWhileRevalidateSeconds(10);
+		assertEquals("Testing loaded value", "dev-a", client.getConfigValue("a"));
+		server.setFailing(true);
+		Thread.sleep(1100);
+
+		assertEquals("Testing stale value", "dev-a", client.getConfigValue("a"));
+		waitFor(() -> server.getRequests(CONFIG_PATH) == 2);
+		// let the failed reload finish
+		Thread.sleep(100);
+
+		assertEquals("Testing stale value after failed reload", "dev-a", client.getConfigValue("a"));
+		assertEquals("Testing no refresh", 0, client.getMetrics().getBackgroundRefreshes());
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertTrue("Testing condition met in time", condition.getAsBoolean());
+	}
+}
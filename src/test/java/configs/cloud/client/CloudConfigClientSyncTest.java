@@ -0,0 +1,79 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.transport.TransportConfig;
+
+public class CloudConfigClientSyncTest {
+
+	private StubConfigServer server;
+	private CloudConfigClient client;
+
+	@Before
+	public void start() throws Exception {
+		server = new StubConfigServer();
+		server.addConfig("Dev", "a", "dev-a", 1);
+		server.addConfig("Dev", "b", "dev-b", 1);
+		server.addConfig("Dev", "c", "dev-c", 1);
+		client = new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", CacheProvider.LOCAL,
+				new TransportConfig(), new CacheConfig());
+		assertEquals("Testing configs listed", 3, client.getConfigs("Dev").size());
+	}
+
+	@After
+	public void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testChangesApplied() throws Exception {
+		server.updateConfig("Dev", "a", "new-a");
+		server.addConfig("Dev", "d", "dev-d", 1);
+		server.removeConfig("Dev", "c");
+
+		client.startSync(50, TimeUnit.MILLISECONDS);
+		waitFor(() -> client.getMetrics().getSyncedChanges() >= 3);
+
+		List<Config> configs = client.getConfigs("Dev");
+		assertEquals("Testing configs cached", 3, configs.size());
+		assertEquals("Testing changed config", "new-a", client.getConfigValue("a"));
+		assertEquals("Testing added config", "dev-d", client.getConfigValue("d"));
+		assertEquals("Testing no lookup", 0, server.getRequests("/api/configs/2/Dev/a")
+				+ server.getRequests("/api/configs/2/Dev/d"));
+
+		assertNull("Testing deleted config", client.getConfigValue("c"));
+		assertEquals("Testing deleted config not cached", 1, server.getRequests("/api/configs/2/Dev/c"));
+	}
+
+	@Test
+	public void testUnchangedListingRevalidated() throws Exception {
+		client.startSync(50, TimeUnit.MILLISECONDS);
+		waitFor(() -> client.getMetrics().getSyncs() >= 2);
+
+		assertTrue("Testing not modified", client.getMetrics().getNotModifiedListings() >= 2);
+		assertEquals("Testing no change", 0, client.getMetrics().getSyncedChanges());
+		assertEquals("Testing listing downloaded once", 1, server.getDownloads("/api/configs/2/Dev"));
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertTrue("Testing synced in time", condition.getAsBoolean());
+	}
+}
@@ -0,0 +1,109 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.transport.TransportConfig;
+
+public class CloudConfigClientWarmUpTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private StubConfigServer server;
+
+	@Before
+	public void start() throws Exception {
+		server = new StubConfigServer();
+		server.addConfig("Dev", "a", "dev-a", 1);
+		server.addConfig("Dev", "b", "dev-b", 1);
+		server.addConfig("Prod", "a", "prod-a", 1);
+	}
+
+	@After
+	public void stop() {
+		server.close();
+	}
+
+	@Test
+	public void testWarmedUpWhenBuilt() throws Exception {
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.addWarmUp(2, "Dev");
+
+		CloudConfigClient client = newClient(cacheConfig);
+		try {
+			assertTrue("Testing ready", client.isReady());
+			assertEquals("Testing configs cached", 2, client.getReadiness().get().getEntries());
+			assertEquals("Testing cached value", "dev-b", client.getConfigValue("b"));
+			assertEquals("Testing no lookup", 0, server.getRequests("/api/configs/2/Dev/b"));
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void testWarmUpTimeout() throws Exception {
+		server.setDelayMillis(1000);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.addWarmUp(2, "Dev");
+		cacheConfig.setWarmUpTimeoutMillis(100);
+
+		long startedAt = System.currentTimeMillis();
+		CloudConfigClient client = newClient(cacheConfig);
+		try {
+			long waited = System.currentTimeMillis() - startedAt;
+			assertTrue("Testing bounded wait : " + waited, waited < 900);
+			assertFalse("Testing warming up in the background", client.isReady());
+			assertEquals("Testing configs cached", 2, client.getReadiness().get().getEntries());
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void testSnapshotsRestoredBeforeWarmUp() throws Exception {
+		File directory = folder.newFolder("snapshots");
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.addWarmUp(2, "Dev");
+		cacheConfig.setSnapshotDirectory(directory.getPath());
+
+		CloudConfigClient client = newClient(cacheConfig);
+		try {
+			// written in the background
+			for (int i = 0; i < 50 && directory.list().length == 0; i++) {
+				Thread.sleep(20);
+			}
+			assertEquals("Testing snapshot written", 1, directory.list().length);
+		} finally {
+			client.close();
+		}
+
+		int downloads = server.getDownloads("/api/configs/2/Dev");
+		client = newClient(cacheConfig);
+		try {
+			assertEquals("Testing configs cached", 2, client.getReadiness().get().getEntries());
+			// the warm-up only revalidates the restored listing
+			assertTrue("Testing listing revalidated", server.getNotModified() >= 1);
+			assertEquals("Testing listing not downloaded again", downloads, server.getDownloads("/api/configs/2/Dev"));
+			assertEquals("Testing cached value", "dev-a", client.getConfigValue("a"));
+		} finally {
+			client.close();
+		}
+	}
+
+	private CloudConfigClient newClient(CacheConfig cacheConfig) {
+		return new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", CacheProvider.LOCAL,
+				new TransportConfig(), cacheConfig);
+	}
+}
@@ -0,0 +1,85 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.enums.ChangeType;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.transport.TransportConfig;
+
+public class CloudConfigClientWatchTest {
+
+	private final List<ConfigChange> changes = new CopyOnWriteArrayList<>();
+
+	private StubConfigServer server;
+	private CloudConfigClient client;
+
+	@Before
+	public void start() throws Exception {
+		server = new StubConfigServer();
+		server.addConfig("Dev", "flags.a", "on", 1);
+		server.addConfig("Dev", "other", "x", 1);
+		client = new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", CacheProvider.LOCAL,
+				new TransportConfig(), new CacheConfig());
+		client.startSync(50, TimeUnit.MILLISECONDS);
+		client.watch(2, "Dev", "flags.*", changes::addAll);
+	}
+
+	@After
+	public void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testServerChangeDeliveredOnce() throws Exception {
+		server.updateConfig("Dev", "flags.a", "off");
+		server.updateConfig("Dev", "other", "y");
+
+		waitForChanges(1);
+		// more polls, of the listing changed and then unchanged
+		waitForSyncs(client.getMetrics().getSyncs() + 3);
+
+		assertEquals("Testing delivered once", 1, changes.size());
+		ConfigChange change = changes.get(0);
+		assertEquals("Testing change type", ChangeType.UPDATED, change.getType());
+		assertEquals("Testing changed key", "flags.a", change.getKey());
+		assertEquals("Testing new value", "off", change.getConfig().getValue());
+	}
+
+	@Test
+	public void testOwnUpdateDeliveredOnce() throws Exception {
+		assertTrue("Testing update", client.updateConfig("flags.a", "off"));
+
+		waitForChanges(1);
+		// the sync then finds the same version in the listing
+		waitForSyncs(client.getMetrics().getSyncs() + 3);
+
+		assertEquals("Testing delivered once", 1, changes.size());
+		assertEquals("Testing version", 2, changes.get(0).getConfig().getVersion());
+	}
+
+	private void waitForChanges(int count) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while (changes.size() < count && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+	}
+
+	private void waitForSyncs(long syncs) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while (client.getMetrics().getSyncs() < syncs && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertTrue("Testing synced in time", client.getMetrics().getSyncs() >= syncs);
+	}
+}
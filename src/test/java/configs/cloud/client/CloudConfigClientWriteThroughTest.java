@@ -0,0 +1,91 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import net.sf.ehcache.CacheManager;
+
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.transport.TransportConfig;
+
+@RunWith(Parameterized.class)
+public class CloudConfigClientWriteThroughTest {
+
+	private static final String CONFIG_PATH = "/api/configs/2/Dev/a";
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> providers() {
+		return Arrays.asList(new Object[][] { { CacheProvider.LOCAL }, { CacheProvider.SNAPSHOT },
+				{ CacheProvider.OFFHEAP }, { CacheProvider.EHCACHE } });
+	}
+
+	private final CacheProvider provider;
+	private StubConfigServer server;
+	private CloudConfigClient client;
+
+	public CloudConfigClientWriteThroughTest(CacheProvider provider) {
+		this.provider = provider;
+	}
+
+	@Before
+	public void start() throws Exception {
+		server = new StubConfigServer();
+		server.addConfig("Dev", "a", "dev-a", 1);
+		client = new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", provider, new TransportConfig(),
+				new CacheConfig());
+	}
+
+	@After
+	public void stop() {
+		client.close();
+		server.close();
+		if (provider == CacheProvider.EHCACHE) {
+			// the cache manager is shared by the clients of the JVM
+			CacheManager.getInstance().clearAll();
+		}
+	}
+
+	@Test
+	public void testUpdatedConfigCached() throws Exception {
+		assertEquals("Testing cached value", "dev-a", client.getConfigValue("a"));
+
+		assertTrue("Testing update", client.updateConfig("a", "new-a"));
+		assertEquals("Testing updated value", "new-a", client.getConfigValue("a"));
+		assertEquals("Testing updated version", 2, client.getConfig("a").getVersion());
+		assertEquals("Testing lookup and read back only", 2, server.getDownloads(CONFIG_PATH));
+	}
+
+	@Test
+	public void testLoadInFlightNotStoredOverUpdate() throws Exception {
+		server.setDelayMillis(300);
+		CompletableFuture<String> load = CompletableFuture.supplyAsync(() -> {
+			try {
+				return client.getConfigValue("a");
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		for (int i = 0; i < 250 && server.getRequests(CONFIG_PATH) == 0; i++) {
+			Thread.sleep(20);
+		}
+		server.setDelayMillis(0);
+
+		// answered with the value before the update, after it
+		assertTrue("Testing update", client.updateConfig("a", "new-a"));
+		assertEquals("Testing load in flight", "dev-a", load.get(5, TimeUnit.SECONDS));
+		assertEquals("Testing updated value", "new-a", client.getConfigValue("a"));
+	}
+}
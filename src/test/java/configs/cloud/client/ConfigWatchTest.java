@@ -0,0 +1,72 @@
+package configs.cloud.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.enums.ChangeType;
+
+public class ConfigWatchTest {
+
+	private final List<ConfigChange> delivered = new ArrayList<>();
+	private final List<ConfigWatch> watches = new CopyOnWriteArrayList<>();
+
+	@Test
+	public void testChangeDeliveredOncePerVersion() {
+		ConfigWatch watch = watch("Dev", "flags.*");
+
+		watch.deliver(Arrays.asList(change(ChangeType.UPDATED, "Dev", "flags.a", 2),
+				change(ChangeType.UPDATED, "Dev", "other", 2), change(ChangeType.UPDATED, "Prod", "flags.a", 2)));
+		assertEquals("Testing matching changes", 1, delivered.size());
+
+		// found again, e.g. by a sync after a reconnect, or older
+		watch.deliver(Collections.singletonList(change(ChangeType.UPDATED, "Dev", "flags.a", 2)));
+		watch.deliver(Collections.singletonList(change(ChangeType.UPDATED, "Dev", "flags.a", 1)));
+		assertEquals("Testing duplicates dropped", 1, delivered.size());
+
+		watch.deliver(Collections.singletonList(change(ChangeType.UPDATED, "Dev", "flags.a", 3)));
+		assertEquals("Testing newer version", 2, delivered.size());
+	}
+
+	@Test
+	public void testRemovedThenAddedAgain() {
+		ConfigWatch watch = watch(null, "flags.a");
+
+		watch.deliver(Collections.singletonList(change(ChangeType.UPDATED, "Dev", "flags.a", 5)));
+		watch.deliver(Collections.singletonList(change(ChangeType.REMOVED, "Dev", "flags.a", 5)));
+		watch.deliver(Collections.singletonList(change(ChangeType.REMOVED, "Dev", "flags.a", 5)));
+		assertEquals("Testing removal delivered once", 2, delivered.size());
+
+		// a key added again may restart from version 1
+		watch.deliver(Collections.singletonList(change(ChangeType.ADDED, "Dev", "flags.a", 1)));
+		assertEquals("Testing added again", 3, delivered.size());
+		assertEquals("Testing change type", ChangeType.ADDED, delivered.get(2).getType());
+	}
+
+	@Test
+	public void testCancel() {
+		ConfigWatch watch = watch("Dev", "flags.a");
+		watches.add(watch);
+
+		watch.cancel();
+		assertEquals("Testing cancelled watch", 0, watches.size());
+	}
+
+	private ConfigWatch watch(String env, String keyOrPrefix) {
+		return new ConfigWatch(2, env, keyOrPrefix, delivered::addAll, watches);
+	}
+
+	private static ConfigChange change(ChangeType type, String env, String key, int version) {
+		Config config = new Config();
+		config.setKey(key);
+		config.setVersion(version);
+		return new ConfigChange(type, 2, env, config);
+	}
+}
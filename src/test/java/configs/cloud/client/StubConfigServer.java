@@ -0,0 +1,255 @@
+package configs.cloud.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.entity.Dataset;
+import configs.cloud.client.entity.Env;
+
+/**
+ * Configs.Cloud server answering the config listings, lookups and updates
+ * of dataset 2 from memory, for tests. Listings carry an ETag, the
+ * generation of the configs, and are answered 304 Not Modified when
+ * revalidated with it. A lookup of a key it does not have is answered 404
+ * Not Found. An update bumps the version of the config.
+ */
+public class StubConfigServer implements AutoCloseable {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final List<Config> configs = new CopyOnWriteArrayList<>();
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> downloads = new ConcurrentHashMap<>();
+	private final AtomicInteger notModified = new AtomicInteger();
+	private final AtomicInteger generation = new AtomicInteger(1);
+	private volatile long delayMillis;
+	private volatile boolean failing;
+
+	public StubConfigServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(executor);
+		server.createContext("/api/configs", this::handle);
+		server.start();
+	}
+
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	public void addConfig(String envsname, String key, String value, int version) {
+		Env env = new Env();
+		env.setSname(envsname);
+		Dataset dataset = new Dataset();
+		dataset.setDatasetid(2L);
+		Config config = new Config();
+		config.setKey(key);
+		config.setValue(value);
+		config.setVersion(version);
+		config.setEnv(env);
+		config.setDataset(dataset);
+		configs.add(config);
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * Changes the value of a config, or adds it, bumping its version.
+	 *
+	 * @param envsname Environment short name
+	 * @param key Key
+	 * @param value New value
+	 * @return int New version
+	 */
+	public synchronized int updateConfig(String envsname, String key, String value) {
+		Config config = findConfig(envsname, key);
+		if (config == null) {
+			addConfig(envsname, key, value, 1);
+			return 1;
+		}
+		Config updated = copy(config);
+		updated.setValue(value);
+		updated.setVersion(config.getVersion() + 1);
+		configs.set(configs.indexOf(config), updated);
+		generation.incrementAndGet();
+		return updated.getVersion();
+	}
+
+	public synchronized void removeConfig(String envsname, String key) {
+		Config config = findConfig(envsname, key);
+		if (config != null) {
+			configs.remove(config);
+			generation.incrementAndGet();
+		}
+	}
+
+	public void setDelayMillis(long delayMillis) {
+		this.delayMillis = delayMillis;
+	}
+
+	/**
+	 * @param failing true to answer the lookups and listings with 500 Internal Server Error
+	 */
+	public void setFailing(boolean failing) {
+		this.failing = failing;
+	}
+
+	/**
+	 * @param path Request path, e.g. /api/configs/2/Dev
+	 * @return int Number of requests received for the path
+	 */
+	public int getRequests(String path) {
+		AtomicInteger count = requests.get(path);
+		return (count == null) ? 0 : count.get();
+	}
+
+	/**
+	 * @param path Request path, e.g. /api/configs/2/Dev
+	 * @return int Number of requests answered with configs for the path, 304 Not Modified and 404 Not Found excluded
+	 */
+	public int getDownloads(String path) {
+		AtomicInteger count = downloads.get(path);
+		return (count == null) ? 0 : count.get();
+	}
+
+	public int getNotModified() {
+		return notModified.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/** ============================= **/
+	/**        Private Methods        **/
+	/** ============================= **/
+
+	private void handle(HttpExchange exchange) throws IOException {
+
+		String path = exchange.getRequestURI().getPath();
+		requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+
+		// /api/configs/{datasetid}[/{envsname}[/{key}]]
+		String[] parts = path.substring("/api/configs/".length()).split("/");
+		String envsname = (parts.length > 1) ? parts[1] : null;
+		String key = (parts.length > 2) ? parts[2] : null;
+
+		if ("PUT".equals(exchange.getRequestMethod())) {
+			pause(delayMillis);
+			update(envsname, key, (parts.length > 3) ? parts[3] : null, exchange.getRequestURI().getRawQuery());
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+			return;
+		}
+
+		// answered as of the request, however long the response is delayed
+		long delay = delayMillis;
+		if (failing) {
+			pause(delay);
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+			return;
+		}
+		if (key == null) {
+			String etag = "\"" + generation.get() + "\"";
+			exchange.getResponseHeaders().set("ETag", etag);
+			if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				notModified.incrementAndGet();
+				pause(delay);
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+		}
+
+		List<Config> matching = new ArrayList<>();
+		for (Config config : configs) {
+			if ((envsname == null || envsname.equals(config.getEnv().getSname()))
+					&& (key == null || key.equals(config.getKey()))) {
+				matching.add(config);
+			}
+		}
+		if (key != null && matching.isEmpty()) {
+			pause(delay);
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+
+		byte[] body = MAPPER.writeValueAsBytes(matching);
+		pause(delay);
+		downloads.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void pause(long millis) {
+		if (millis > 0) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// /api/configs/{datasetid}/{envsname}/{key}?value={value} or /api/configs/{datasetid}/{envsname}/{key}/{isenabled}
+	private synchronized void update(String envsname, String key, String isenabled, String query) throws IOException {
+		if (isenabled != null) {
+			Config config = findConfig(envsname, key);
+			if (config != null) {
+				Config updated = copy(config);
+				updated.setIsenabled(isenabled);
+				updated.setVersion(config.getVersion() + 1);
+				configs.set(configs.indexOf(config), updated);
+				generation.incrementAndGet();
+			}
+			return;
+		}
+		String value = null;
+		if (query != null && query.startsWith("value=")) {
+			value = URLDecoder.decode(query.substring("value=".length()), "UTF-8");
+		}
+		updateConfig(envsname, key, value);
+	}
+
+	private Config findConfig(String envsname, String key) {
+		for (Config config : configs) {
+			if (envsname.equals(config.getEnv().getSname()) && key.equals(config.getKey())) {
+				return config;
+			}
+		}
+		return null;
+	}
+
+	private static Config copy(Config config) {
+		Config copy = new Config();
+		copy.setKey(config.getKey());
+		copy.setValue(config.getValue());
+		copy.setIsenabled(config.getIsenabled());
+		copy.setVersion(config.getVersion());
+		copy.setEnv(config.getEnv());
+		copy.setDataset(config.getDataset());
+		return copy;
+	}
+}
@@ -0,0 +1,83 @@
+package configs.cloud.client.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import configs.cloud.client.enums.EvictionAlgorithm;
+import configs.cloud.client.enums.RefreshMode;
+
+public class CacheConfigTest {
+
+	@Test
+	public void testDefaults() {
+		CachePolicy policy = new CachePolicy();
+		assertEquals("Testing max entries", CachePolicy.DEFAULT_MAX_ENTRIES, policy.getMaxEntries());
+		assertEquals("Testing time to live", CachePolicy.DEFAULT_TIME_TO_LIVE_SECONDS, policy.getTimeToLiveSeconds());
+		assertEquals("Testing time to idle", 0, policy.getTimeToIdleSeconds());
+		assertEquals("Testing eviction", EvictionAlgorithm.LRU, policy.getEvictionAlgorithm());
+	}
+
+	@Test
+	public void testUnsetSettingsTakeProviderDefaults() {
+		CachePolicy provider = new CachePolicy();
+		provider.setMaxEntries(1000);
+		provider.setTimeToLiveSeconds(20);
+		provider.setTimeToIdleSeconds(30);
+		provider.setEvictionAlgorithm(EvictionAlgorithm.LFU);
+
+		CachePolicy policy = new CachePolicy();
+		policy.setTimeToLiveSeconds(0);
+		policy.setRefreshMode(RefreshMode.STALE_WHILE_REVALIDATE);
+		CachePolicy applied = policy.withDefaults(provider);
+
+		assertEquals("Testing set time to live kept", 0, applied.getTimeToLiveSeconds());
+		assertEquals("Testing unset max entries", 1000, applied.getMaxEntries());
+		assertEquals("Testing unset time to idle", 30, applied.getTimeToIdleSeconds());
+		assertEquals("Testing unset eviction", EvictionAlgorithm.LFU, applied.getEvictionAlgorithm());
+		assertEquals("Testing refresh mode", RefreshMode.STALE_WHILE_REVALIDATE, applied.getRefreshMode());
+		assertEquals("Testing policy unchanged", CachePolicy.DEFAULT_MAX_ENTRIES, policy.getMaxEntries());
+	}
+
+	@Test
+	public void testDatasetPolicyOverridesDefault() {
+		CachePolicy large = new CachePolicy();
+		large.setMaxEntries(20000);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDatasetPolicy(2, large);
+
+		assertSame("Testing dataset policy", large, cacheConfig.getPolicy(2));
+		assertSame("Testing default policy", cacheConfig.getDefaultPolicy(), cacheConfig.getPolicy(3));
+		assertSame("Testing no dataset", cacheConfig.getDefaultPolicy(), cacheConfig.getPolicy(null));
+
+		cacheConfig.setDatasetPolicy(2, null);
+		assertSame("Testing dataset policy removed", cacheConfig.getDefaultPolicy(), cacheConfig.getPolicy(2));
+	}
+
+	@Test
+	public void testWithDefaultsCopiesConfig() {
+		CachePolicy provider = new CachePolicy();
+		provider.setTimeToLiveSeconds(20);
+		CachePolicy large = new CachePolicy();
+		large.setMaxEntries(20000);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDatasetPolicy(2, large);
+		cacheConfig.addWarmUp(2, "Dev");
+		cacheConfig.setWarmUpTimeoutMillis(100);
+
+		CacheConfig applied = cacheConfig.withDefaults(provider);
+		assertEquals("Testing dataset entries", 20000, applied.getPolicy(2).getMaxEntries());
+		assertEquals("Testing dataset time to live", 20, applied.getPolicy(2).getTimeToLiveSeconds());
+		assertEquals("Testing default time to live", 20, applied.getPolicy(3).getTimeToLiveSeconds());
+		assertEquals("Testing warm-ups", 1, applied.getWarmUps().size());
+		assertEquals("Testing warm-up timeout", 100, applied.getWarmUpTimeoutMillis());
+		assertEquals("Testing config unchanged", CachePolicy.DEFAULT_TIME_TO_LIVE_SECONDS,
+				cacheConfig.getPolicy(2).getTimeToLiveSeconds());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxEntries() {
+		new CachePolicy().setMaxEntries(0);
+	}
+}
@@ -0,0 +1,88 @@
+package configs.cloud.client.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.entity.Dataset;
+import configs.cloud.client.entity.Env;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
+
+public class EhcacheServiceTest {
+
+	@Test
+	public void testDatasetLimitSharedByEnvironments() {
+		CachePolicy policy = new CachePolicy();
+		policy.setMaxEntries(100);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDatasetPolicy(9001, policy);
+		EhcacheService cache = new EhcacheService(cacheConfig);
+
+		for (int i = 0; i < 200; i++) {
+			cache.storeConfigToCache(9001, "Dev", config(9001, "Dev", "key." + i));
+			cache.storeConfigToCache(9001, "Prod", config(9001, "Prod", "key." + i));
+		}
+
+		int dev = cache.getConfigListFromCache(9001, "Dev").size();
+		int prod = cache.getConfigListFromCache(9001, "Prod").size();
+		assertTrue("Testing dataset limit : " + dev + " + " + prod, dev + prod <= 100);
+		assertEquals("Testing limit divided evenly", dev, prod);
+	}
+
+	@Test
+	public void testListingByEnvironment() {
+		EhcacheService cache = new EhcacheService();
+		cache.storeConfigToCache(9002, Arrays.asList(config(9002, "Dev", "a"), config(9002, "Dev", "b"),
+				config(9002, "Prod", "a")));
+
+		assertEquals("Testing env listing", 2, cache.getConfigListFromCache(9002, "Dev").size());
+		assertEquals("Testing dataset listing", 3, cache.getConfigListFromCache(9002).size());
+
+		cache.removeConfigFromCache(9002, "Dev", "a");
+		assertNull("Testing removed config", cache.getConfigFromCache(9002, "Dev", "a"));
+		assertEquals("Testing other env kept", "a", cache.getConfigFromCache(9002, "Prod", "a").getKey());
+	}
+
+	@Test
+	public void testProviderDefaultsKept() {
+		CachePolicy policy = new CachePolicy();
+		policy.setTimeToLiveSeconds(60);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDatasetPolicy(9004, policy);
+		EhcacheService cache = new EhcacheService(cacheConfig);
+		cache.storeConfigToCache(9003, "Dev", config(9003, "Dev", "a"));
+		cache.storeConfigToCache(9004, "Dev", config(9004, "Dev", "a"));
+
+		CacheConfiguration defaults = CacheManager.getInstance().getCache("config_cache_9003:Dev").getCacheConfiguration();
+		assertEquals("Testing default entries", 1000, defaults.getMaxEntriesLocalHeap());
+		assertEquals("Testing default time to live", 1000, defaults.getTimeToLiveSeconds());
+		assertEquals("Testing default time to idle", 1000, defaults.getTimeToIdleSeconds());
+
+		CacheConfiguration dataset = CacheManager.getInstance().getCache("config_cache_9004:Dev").getCacheConfiguration();
+		assertEquals("Testing dataset time to live", 60, dataset.getTimeToLiveSeconds());
+		assertEquals("Testing dataset time to idle left to the provider", 1000, dataset.getTimeToIdleSeconds());
+		assertEquals("Testing dataset time to live reported", 60, cache.getTimeToLiveSeconds(9004));
+	}
+
+	private static Config config(Integer datasetId, String envsname, String key) {
+		Dataset dataset = new Dataset();
+		dataset.setDatasetid(datasetId.longValue());
+		Env env = new Env();
+		env.setSname(envsname);
+		Config config = new Config();
+		config.setDataset(dataset);
+		config.setEnv(env);
+		config.setKey(key);
+		config.setValue(key);
+		return config;
+	}
+}
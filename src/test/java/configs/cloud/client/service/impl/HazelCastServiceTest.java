@@ -0,0 +1,142 @@
+package configs.cloud.client.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.entity.Dataset;
+import configs.cloud.client.entity.Env;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
+
+public class HazelCastServiceTest {
+
+	private static HazelcastInstance member;
+	private static HazelCastService client;
+
+	@BeforeClass
+	public static void start() {
+		// Hazelcast 3.2 serializes strings with JDK internals removed after Java 8, a client then
+		// waits forever for the members
+		Assume.assumeTrue("Java 8", System.getProperty("java.specification.version").startsWith("1."));
+
+		com.hazelcast.config.Config memberConfig = new com.hazelcast.config.Config();
+		JoinConfig join = memberConfig.getNetworkConfig().getJoin();
+		join.getMulticastConfig().setEnabled(false);
+		join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+		member = Hazelcast.newHazelcastInstance(memberConfig);
+
+		CachePolicy policy = new CachePolicy();
+		policy.setTimeToLiveSeconds(1);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDatasetPolicy(2, policy);
+		ClientConfig clientConfig = new ClientConfig();
+		clientConfig.getNetworkConfig().addAddress("127.0.0.1:" + member.getCluster().getLocalMember()
+				.getInetSocketAddress().getPort());
+		client = new HazelCastService(clientConfig, cacheConfig);
+	}
+
+	@AfterClass
+	public static void stop() {
+		if (client != null) {
+			client.shutdown();
+		}
+		if (member != null) {
+			member.shutdown();
+		}
+	}
+
+	@Test
+	public void testConfigExpires() throws Exception {
+		client.storeConfigToCache(2, "Dev", config(2, "Dev", "a", 1));
+		client.storeConfigToCache(3, "Dev", config(3, "Dev", "a", 1));
+		assertEquals("Testing time to live", 1, client.getTimeToLiveSeconds(2));
+		assertEquals("Testing stored config", "a", client.getConfigFromCache(2, "Dev", "a").getKey());
+
+		Thread.sleep(2100);
+		assertNull("Testing expired config", client.getConfigFromCache(2, "Dev", "a"));
+		assertEquals("Testing default policy", "a", client.getConfigFromCache(3, "Dev", "a").getKey());
+	}
+
+	@Test
+	public void testListingExpires() throws Exception {
+		client.storeConfigToCache(2, Arrays.asList(config(2, "Prod", "a", 1), config(2, "Prod", "b", 1)));
+		assertEquals("Testing stored configs", 2, member.getMap("config_cache_2").size());
+
+		Thread.sleep(2100);
+		assertEquals("Testing expired configs", 0, member.getMap("config_cache_2").size());
+	}
+
+	@Test
+	public void testNearCache() throws Exception {
+		client.storeConfigToCache(4, "Dev", config(4, "Dev", "a", 1));
+		IMap<String, Config> map = member.getMap("config_cache_4");
+		long gets = map.getLocalMapStats().getGetOperationCount();
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals("Testing cached config", 1, client.getConfigFromCache(4, "Dev", "a").getVersion());
+		}
+		assertEquals("Testing single read from the cluster", gets + 1, map.getLocalMapStats().getGetOperationCount());
+
+		// changed on the cluster, the near cache is invalidated
+		map.put("Dev:a", config(4, "Dev", "a", 2));
+		long end = System.currentTimeMillis() + 5000;
+		while (client.getConfigFromCache(4, "Dev", "a").getVersion() != 2 && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertEquals("Testing changed config", 2, client.getConfigFromCache(4, "Dev", "a").getVersion());
+	}
+
+	@Test
+	public void testEnvListing() {
+		client.storeConfigToCache(5, Arrays.asList(config(5, "Dev", "a", 1), config(5, "Dev", "b", 1),
+				config(5, "Prod", "a", 1)));
+
+		List<Config> configs = client.getConfigListFromCache(5, "Dev");
+		assertEquals("Testing env listing", 2, configs.size());
+		for (Config config : configs) {
+			assertEquals("Testing env of the config", "Dev", config.getEnv().getSname());
+		}
+		assertNull("Testing empty env", client.getConfigListFromCache(5, "Qa"));
+		assertEquals("Testing dataset listing", 3, client.getConfigListFromCache(5).size());
+	}
+
+	@Test
+	public void testBulkRead() {
+		client.storeConfigToCache(6, Arrays.asList(config(6, "Dev", "a", 1), config(6, "Dev", "b", 1),
+				config(6, "Prod", "c", 1)));
+
+		Map<String, Config> configs = client.getConfigsFromCache(6, "Dev", Arrays.asList("a", "b", "c", "missing"));
+		assertEquals("Testing configs read", 2, configs.size());
+		assertEquals("Testing config by key", "b", configs.get("b").getKey());
+	}
+
+	private static Config config(long datasetId, String envsname, String key, int version) {
+		Dataset dataset = new Dataset();
+		dataset.setDatasetid(datasetId);
+		Env env = new Env();
+		env.setSname(envsname);
+		Config config = new Config();
+		config.setDataset(dataset);
+		config.setEnv(env);
+		config.setKey(key);
+		config.setValue(key);
+		config.setVersion(version);
+		return config;
+	}
+}
@@ -0,0 +1,50 @@
+package configs.cloud.client.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.entity.Env;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
+
+public class LocalCacheServiceTest {
+
+	@Test
+	public void testDatasetPolicies() throws Exception {
+		CachePolicy small = new CachePolicy();
+		small.setMaxEntries(10);
+		small.setTimeToLiveSeconds(1);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDatasetPolicy(3, small);
+		LocalCacheService cache = new LocalCacheService(cacheConfig);
+
+		for (int i = 0; i < 100; i++) {
+			cache.storeConfigToCache(2, "Dev", config("key." + i));
+			cache.storeConfigToCache(3, "Dev", config("key." + i));
+		}
+		assertEquals("Testing default entries", 100, cache.getConfigListFromCache(2, "Dev").size());
+		assertTrue("Testing dataset entries", cache.getConfigListFromCache(3, "Dev").size() <= 10);
+		assertEquals("Testing default time to live", 1000, cache.getTimeToLiveSeconds(2));
+		assertEquals("Testing dataset time to live", 1, cache.getTimeToLiveSeconds(3));
+
+		cache.storeConfigToCache(3, "Dev", config("ttl"));
+		Thread.sleep(1100);
+		assertNull("Testing dataset expiry", cache.getConfigFromCache(3, "Dev", "ttl"));
+		assertNotNull("Testing default kept", cache.getConfigFromCache(2, "Dev", "key.0"));
+	}
+
+	private static Config config(String key) {
+		Env env = new Env();
+		env.setSname("Dev");
+		Config config = new Config();
+		config.setEnv(env);
+		config.setKey(key);
+		config.setValue(key);
+		return config;
+	}
+}
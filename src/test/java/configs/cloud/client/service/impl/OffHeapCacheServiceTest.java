@@ -0,0 +1,75 @@
+package configs.cloud.client.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.entity.Env;
+
+public class OffHeapCacheServiceTest {
+
+	@Test
+	public void testIndexGrows() {
+		OffHeapCacheService cache = new OffHeapCacheService(4 * 1024 * 1024, 0);
+
+		// past the initial 1024 slots, colliding probes included
+		List<Config> configs = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			configs.add(config("Dev", "key." + i, "v" + i));
+		}
+		cache.storeConfigToCache(2, configs);
+		cache.storeConfigToCache(2, "Dev", config("Dev", "key.42", "updated"));
+
+		assertEquals("Testing listing", 5000, cache.getConfigListFromCache(2, "Dev").size());
+		assertEquals("Testing lookup", "v4999", cache.getConfigFromCache(2, "Dev", "key.4999").getValue());
+		assertEquals("Testing superseded record", "updated", cache.getConfigFromCache(2, "Dev", "key.42").getValue());
+		assertNull("Testing other dataset", cache.getConfigFromCache(3, "Dev", "key.42"));
+		assertNull("Testing other env", cache.getConfigFromCache(2, "Prod", "key.42"));
+	}
+
+	@Test
+	public void testClearedWhenFull() {
+		OffHeapCacheService cache = new OffHeapCacheService(64 * 1024, 0);
+
+		cache.storeConfigToCache(2, "Dev", config("Dev", "first", "v"));
+		for (int i = 0; i < 1000; i++) {
+			cache.storeConfigToCache(2, "Dev", config("Dev", "key." + i, "v" + i));
+		}
+
+		assertNull("Testing cleared record", cache.getConfigFromCache(2, "Dev", "first"));
+		assertEquals("Testing record stored after clearing", "v999", cache.getConfigFromCache(2, "Dev", "key.999").getValue());
+		assertTrue("Testing records kept : " + cache.getConfigListFromCache(2).size(),
+				cache.getConfigListFromCache(2).size() < 1000);
+	}
+
+	@Test
+	public void testRemoveAndExpire() throws Exception {
+		OffHeapCacheService cache = new OffHeapCacheService(1024 * 1024, 1);
+		cache.storeConfigToCache(2, "Dev", config("Dev", "a", "v"));
+		cache.storeConfigToCache(2, "Dev", config("Dev", "b", "v"));
+
+		cache.removeConfigFromCache(2, "Dev", "a");
+		assertNull("Testing removed config", cache.getConfigFromCache(2, "Dev", "a"));
+		assertEquals("Testing other config", "v", cache.getConfigFromCache(2, "Dev", "b").getValue());
+
+		Thread.sleep(1100);
+		assertNull("Testing expired config", cache.getConfigFromCache(2, "Dev", "b"));
+		assertTrue("Testing expired listing", cache.getConfigListFromCache(2, "Dev").isEmpty());
+	}
+
+	private static Config config(String envsname, String key, String value) {
+		Env env = new Env();
+		env.setSname(envsname);
+		Config config = new Config();
+		config.setEnv(env);
+		config.setKey(key);
+		config.setValue(value);
+		return config;
+	}
+}
@@ -0,0 +1,92 @@
+package configs.cloud.client.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.entity.Env;
+import configs.cloud.client.service.CacheConfig;
+import configs.cloud.client.service.CachePolicy;
+
+public class SnapshotCacheServiceTest {
+
+	@Test
+	public void testConfigsExpire() throws Exception {
+		CachePolicy policy = new CachePolicy();
+		policy.setTimeToLiveSeconds(1);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDatasetPolicy(2, policy);
+		SnapshotCacheService cache = new SnapshotCacheService(cacheConfig);
+
+		cache.storeConfigToCache(2, Arrays.asList(config("Dev", "a"), config("Dev", "b")));
+		cache.storeConfigToCache(3, Arrays.asList(config("Dev", "a")));
+		assertEquals("Testing time to live", 1, cache.getTimeToLiveSeconds(2));
+		assertEquals("Testing listing", 2, cache.getConfigListFromCache(2, "Dev").size());
+
+		Thread.sleep(1100);
+		assertNull("Testing expired config", cache.getConfigFromCache(2, "Dev", "a"));
+		assertTrue("Testing expired listing", cache.getConfigListFromCache(2).isEmpty());
+		assertEquals("Testing default policy", "a", cache.getConfigFromCache(3, "Dev", "a").getKey());
+	}
+
+	@Test
+	public void testStoreConfigs() {
+		SnapshotCacheService cache = new SnapshotCacheService();
+		cache.storeConfigToCache(2, Arrays.asList(config("Dev", "a")));
+
+		cache.storeConfigsToCache(2, "Dev", Arrays.asList(config("Dev", "b"), config("Dev", "c")));
+		assertEquals("Testing configs added to the listing", 3, cache.getConfigListFromCache(2, "Dev").size());
+		assertEquals("Testing bulk read", 3, cache.getConfigsFromCache(2, "Dev", Arrays.asList("a", "b", "c", "d")).size());
+	}
+
+	@Test
+	public void testEmptyListingDropsSnapshot() {
+		SnapshotCacheService cache = new SnapshotCacheService();
+		cache.storeConfigToCache(2, Arrays.asList(config("Dev", "a"), config("Prod", "a")));
+
+		cache.storeEmptyListingToCache(2, "Dev", 30);
+		assertTrue("Testing empty listing", cache.isEmptyListingInCache(2, "Dev"));
+		assertNull("Testing env dropped", cache.getConfigFromCache(2, "Dev", "a"));
+		assertEquals("Testing other env kept", 1, cache.getConfigListFromCache(2).size());
+
+		cache.storeEmptyListingToCache(2, null, 30);
+		assertTrue("Testing dataset dropped", cache.getConfigListFromCache(2).isEmpty());
+	}
+
+	@Test
+	public void testMissingKeysBounded() {
+		CachePolicy policy = new CachePolicy();
+		policy.setMaxEntries(100);
+		CacheConfig cacheConfig = new CacheConfig();
+		cacheConfig.setDefaultPolicy(policy);
+		SnapshotCacheService cache = new SnapshotCacheService(cacheConfig);
+
+		for (int i = 0; i < 10000; i++) {
+			cache.storeMissingConfigToCache(2, "Dev", "missing." + i, 30);
+		}
+		int remembered = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (cache.isConfigMissingInCache(2, "Dev", "missing." + i)) {
+				remembered++;
+			}
+		}
+		assertTrue("Testing bounded negative entries : " + remembered, remembered <= 100);
+		assertFalse("Testing unknown key", cache.isConfigMissingInCache(2, "Dev", "other"));
+	}
+
+	private static Config config(String envsname, String key) {
+		Env env = new Env();
+		env.setSname(envsname);
+		Config config = new Config();
+		config.setEnv(env);
+		config.setKey(key);
+		config.setValue(key);
+		return config;
+	}
+}
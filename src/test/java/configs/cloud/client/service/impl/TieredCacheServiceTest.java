@@ -0,0 +1,112 @@
+package configs.cloud.client.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.entity.Dataset;
+import configs.cloud.client.entity.Env;
+import configs.cloud.client.service.CacheConfig;
+
+public class TieredCacheServiceTest {
+
+	private static HazelCastService l2;
+	private static TieredCacheService cache;
+
+	@BeforeClass
+	public static void start() {
+		l2 = new HazelCastService();
+		cache = new TieredCacheService(l2, new CacheConfig());
+		try {
+			l2.storeConfigToCache(1, "Dev", config(1, "Dev", "probe", 1));
+		} catch (RuntimeException e) {
+			// Hazelcast 3.2 serializes strings with JDK internals removed after Java 8
+			l2.shutdown();
+			Assume.assumeNoException(e);
+		}
+	}
+
+	@AfterClass
+	public static void stop() {
+		if (l2 != null) {
+			l2.shutdown();
+		}
+	}
+
+	@Test
+	public void testOwnStoreKeptInL1() throws Exception {
+		cache.storeConfigToCache(2, "Dev", config(2, "Dev", "a", 1));
+		// events of the store, were they not ignored, would have dropped it by now
+		Thread.sleep(500);
+
+		// removed from L2 only
+		l2.removeConfigFromCache(2, "Dev", "a");
+		assertEquals("Testing config served by L1", "a", cache.getConfigFromCache(2, "Dev", "a").getKey());
+	}
+
+	@Test
+	public void testReadFromL2KeptInL1() throws Exception {
+		l2.storeConfigToCache(3, "Dev", config(3, "Dev", "a", 1));
+		assertEquals("Testing config read from L2", "a", cache.getConfigFromCache(3, "Dev", "a").getKey());
+		Thread.sleep(500);
+
+		l2.removeConfigFromCache(3, "Dev", "a");
+		assertEquals("Testing config served by L1", "a", cache.getConfigFromCache(3, "Dev", "a").getKey());
+	}
+
+	@Test
+	public void testEmptyListingDropsL1() {
+		cache.storeConfigToCache(4, "Dev", config(4, "Dev", "a", 1));
+		cache.storeConfigToCache(4, "Prod", config(4, "Prod", "a", 1));
+		l2.removeConfigFromCache(4, "Dev", "a");
+		l2.removeConfigFromCache(4, "Prod", "a");
+
+		cache.storeEmptyListingToCache(4, "Dev", 30);
+		assertNull("Testing env dropped from L1", cache.getConfigFromCache(4, "Dev", "a"));
+		assertEquals("Testing other env kept", "a", cache.getConfigFromCache(4, "Prod", "a").getKey());
+
+		cache.storeEmptyListingToCache(4, null, 30);
+		assertNull("Testing dataset dropped from L1", cache.getConfigFromCache(4, "Prod", "a"));
+	}
+
+	@Test
+	public void testChangeByOtherMemberDropsL1() throws Exception {
+		cache.storeConfigToCache(5, "Dev", config(5, "Dev", "a", 1));
+
+		HazelcastInstance other = Hazelcast.newHazelcastInstance();
+		try {
+			Assume.assumeTrue("Members joined", other.getCluster().getMembers().size() > 1);
+			other.getMap("config_cache_5").put("Dev:a", config(5, "Dev", "a", 2));
+
+			long end = System.currentTimeMillis() + 5000;
+			while (cache.getConfigFromCache(5, "Dev", "a").getVersion() != 2 && System.currentTimeMillis() < end) {
+				Thread.sleep(10);
+			}
+			assertEquals("Testing change read from L2", 2, cache.getConfigFromCache(5, "Dev", "a").getVersion());
+		} finally {
+			other.shutdown();
+		}
+	}
+
+	private static Config config(long datasetId, String envsname, String key, int version) {
+		Dataset dataset = new Dataset();
+		dataset.setDatasetid(datasetId);
+		Env env = new Env();
+		env.setSname(envsname);
+		Config config = new Config();
+		config.setDataset(dataset);
+		config.setEnv(env);
+		config.setKey(key);
+		config.setValue(key);
+		config.setVersion(version);
+		return config;
+	}
+}
@@ -0,0 +1,79 @@
+package configs.cloud.client.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import configs.cloud.client.transport.CircuitBreaker.State;
+
+public class CircuitBreakerTest {
+
+	@Test
+	public void testOpensAfterConsecutiveFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		breaker.recordFailure();
+		assertEquals("Testing failures reset by a success", State.CLOSED, breaker.getState());
+		assertTrue("Testing closed circuit", breaker.allowRequest());
+
+		breaker.recordFailure();
+		assertEquals("Testing open circuit", State.OPEN, breaker.getState());
+		assertFalse("Testing calls refused while open", breaker.allowRequest());
+	}
+
+	@Test
+	public void testSingleTrialWhenHalfOpen() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20);
+		breaker.recordFailure();
+		Thread.sleep(40);
+
+		assertTrue("Testing trial call", breaker.allowRequest());
+		assertEquals("Testing half open circuit", State.HALF_OPEN, breaker.getState());
+		assertFalse("Testing second call during the trial", breaker.allowRequest());
+
+		breaker.recordSuccess();
+		assertEquals("Testing circuit closed by the trial", State.CLOSED, breaker.getState());
+		assertTrue("Testing calls after the trial", breaker.allowRequest());
+	}
+
+	@Test
+	public void testFailedTrialReopens() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(5, 20);
+		for (int i = 0; i < 5; i++) {
+			breaker.recordFailure();
+		}
+		Thread.sleep(40);
+
+		assertTrue("Testing trial call", breaker.allowRequest());
+		breaker.recordFailure();
+		assertEquals("Testing circuit reopened by the trial", State.OPEN, breaker.getState());
+		assertFalse("Testing calls refused after the trial", breaker.allowRequest());
+	}
+
+	@Test
+	public void testReleasedTrial() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20);
+		breaker.recordFailure();
+		Thread.sleep(40);
+
+		assertTrue("Testing trial call", breaker.allowRequest());
+		breaker.releaseTrial();
+		assertEquals("Testing circuit still half open", State.HALF_OPEN, breaker.getState());
+		assertTrue("Testing another trial once released", breaker.allowRequest());
+	}
+
+	@Test
+	public void testDisabled() {
+		CircuitBreaker breaker = new CircuitBreaker(0, 60000);
+		for (int i = 0; i < 10; i++) {
+			breaker.recordFailure();
+		}
+		assertTrue("Testing disabled breaker", breaker.allowRequest());
+	}
+}
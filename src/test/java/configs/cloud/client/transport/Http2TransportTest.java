@@ -0,0 +1,125 @@
+package configs.cloud.client.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import configs.cloud.client.CloudConfigClient;
+import configs.cloud.client.StubConfigServer;
+import configs.cloud.client.enums.CacheProvider;
+import configs.cloud.client.enums.TransportProvider;
+import configs.cloud.client.service.CacheConfig;
+
+public class Http2TransportTest {
+
+	private StubConfigServer server;
+	private Http2Transport transport;
+
+	@Before
+	public void start() throws Exception {
+		// the Java 11 class, only on the classpath of Java 11+ builds
+		Assume.assumeTrue("HTTP/2 transport available", Http2Transport.isAvailable());
+		server = new StubConfigServer();
+		server.addConfig("Dev", "a", "dev-a", 1);
+		TransportConfig transportConfig = new TransportConfig();
+		transportConfig.setReadTimeoutMillis(200);
+		transport = new Http2Transport(transportConfig);
+	}
+
+	@After
+	public void stop() {
+		if (transport != null) {
+			transport.close();
+		}
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testGet() throws Exception {
+		Map<String, String> headers = new HashMap<>();
+		headers.put("X-Auth-Token", "key");
+		ConfigResponse response = transport.get(uri("/api/configs/2/Dev"), headers);
+
+		assertEquals("Testing status", 200, response.getStatus());
+		assertNotNull("Testing etag", response.getHeader("ETag"));
+		String body = read(response);
+		assertTrue("Testing body : " + body, body.contains("dev-a"));
+		assertEquals("Testing download", 1, server.getDownloads("/api/configs/2/Dev"));
+	}
+
+	@Test
+	public void testConditionalGet() throws Exception {
+		ConfigResponse response = transport.get(uri("/api/configs/2/Dev"), new HashMap<>());
+		String etag = response.getHeader("ETag");
+		response.close();
+
+		Map<String, String> headers = new HashMap<>();
+		headers.put("If-None-Match", etag);
+		response = transport.get(uri("/api/configs/2/Dev"), headers);
+		assertEquals("Testing not modified", 304, response.getStatus());
+		response.close();
+		assertEquals("Testing revalidation", 1, server.getNotModified());
+	}
+
+	@Test
+	public void testPut() throws Exception {
+		ConfigResponse response = transport.put(uri("/api/configs/2/Dev/a?value=new-a"), new HashMap<>());
+		assertEquals("Testing status", 200, response.getStatus());
+		response.close();
+
+		response = transport.get(uri("/api/configs/2/Dev/a"), new HashMap<>());
+		String body = read(response);
+		assertTrue("Testing updated value : " + body, body.contains("new-a"));
+	}
+
+	@Test
+	public void testReadTimeout() throws Exception {
+		server.setDelayMillis(1000);
+		try {
+			transport.get(uri("/api/configs/2/Dev"), new HashMap<>());
+			fail("Testing read timeout");
+		} catch (IOException e) {
+			// expected, HttpTimeoutException
+		}
+	}
+
+	@Test
+	public void testClient() throws Exception {
+		TransportConfig transportConfig = new TransportConfig();
+		transportConfig.setTransportProvider(TransportProvider.HTTP2);
+		CloudConfigClient client = new CloudConfigClient("key", server.getUrl(), true, 2, "Dev", CacheProvider.LOCAL,
+				transportConfig, new CacheConfig());
+		try {
+			assertEquals("Testing value", "dev-a", client.getConfigValue("a"));
+			assertTrue("Testing update", client.updateConfig("a", "new-a"));
+			assertEquals("Testing updated value", "new-a", client.getConfigValue("a"));
+		} finally {
+			client.close();
+		}
+	}
+
+	private URI uri(String path) {
+		return URI.create(server.getUrl() + path);
+	}
+
+	private static String read(ConfigResponse response) throws IOException {
+		try (InputStream body = response.getBody(); Scanner scanner = new Scanner(body, "UTF-8")) {
+			return scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+		}
+	}
+}
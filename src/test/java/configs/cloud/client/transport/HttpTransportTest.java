@@ -0,0 +1,132 @@
+package configs.cloud.client.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import configs.cloud.client.ClientMetrics;
+import configs.cloud.client.exceptions.DeadlineExceededException;
+import configs.cloud.client.transport.CircuitBreaker.State;
+
+public class HttpTransportTest {
+
+	private static final String ENDPOINT = "http://localhost/api/configs";
+
+	private HttpTransport transport;
+
+	@After
+	public void close() {
+		if (transport != null) {
+			transport.close();
+		}
+	}
+
+	@Test
+	public void testHalfOpenTrialTimingOut() throws Exception {
+		TransportConfig transportConfig = new TransportConfig();
+		transportConfig.setCircuitFailureThreshold(1);
+		transportConfig.setCircuitOpenMillis(20);
+		transportConfig.setMaxRetries(0);
+		transport = new HttpTransport(transportConfig, new ClientMetrics());
+
+		try {
+			transport.execute(ENDPOINT, true, () -> {
+				throw new IOException("Connection refused");
+			});
+			fail("Testing failed call");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals("Testing open circuit", State.OPEN, transport.getCircuitBreaker(ENDPOINT).getState());
+		Thread.sleep(40);
+
+		try {
+			Deadline.after(50, TimeUnit.MILLISECONDS).call(() -> transport.execute(ENDPOINT, true, () -> {
+				Thread.sleep(1000);
+				return new TestResponse(200);
+			}));
+			fail("Testing trial call past its deadline");
+		} catch (DeadlineExceededException e) {
+			// expected
+		}
+
+		CircuitBreaker breaker = transport.getCircuitBreaker(ENDPOINT);
+		assertEquals("Testing circuit half open", State.HALF_OPEN, breaker.getState());
+		assertEquals("Testing next trial", 200, transport.execute(ENDPOINT, true, () -> new TestResponse(200)).getStatus());
+		assertEquals("Testing circuit closed by the next trial", State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testSaturatedDispatcherFailsFast() throws Exception {
+		TransportConfig transportConfig = new TransportConfig();
+		transportConfig.setMaxConnections(1);
+		transport = new HttpTransport(transportConfig, new ClientMetrics());
+
+		// the dispatcher runs 2 requests per connection
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(2);
+		for (int i = 0; i < 2; i++) {
+			Thread caller = new Thread(() -> {
+				try {
+					Deadline.after(10, TimeUnit.SECONDS).call(() -> transport.execute(ENDPOINT, true, () -> {
+						started.countDown();
+						release.await();
+						return new TestResponse(200);
+					}));
+				} catch (Exception e) {
+					// not checked
+				}
+			});
+			caller.setDaemon(true);
+			caller.start();
+		}
+		assertTrue("Testing busy dispatcher", started.await(5, TimeUnit.SECONDS));
+
+		long start = System.nanoTime();
+		try {
+			Deadline.after(5, TimeUnit.SECONDS).call(() -> transport.execute(ENDPOINT, true, () -> new TestResponse(200)));
+			fail("Testing call on a saturated dispatcher");
+		} catch (DeadlineExceededException e) {
+			assertTrue("Testing failed at once", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	private static class TestResponse implements ConfigResponse {
+
+		private final int status;
+
+		TestResponse(int status) {
+			this.status = status;
+		}
+
+		@Override
+		public int getStatus() {
+			return status;
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return null;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package configs.cloud.client.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(2);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(FAST);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(SLOW);
+		}
+
+		assertEquals("Testing count", 100, histogram.getCount());
+		assertEquals("Testing p50", 2, histogram.getPercentileMillis(50), 0.5);
+		assertEquals("Testing p95", 200, histogram.getPercentileMillis(95), 40);
+	}
+
+	@Test
+	public void testPercentileFollowsLatencyShift() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram(500, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 1000; i++) {
+			histogram.record(FAST);
+		}
+		assertEquals("Testing p95 of fast calls", 2, histogram.getPercentileMillis(95), 0.5);
+
+		Thread.sleep(600);
+		for (int i = 0; i < 100; i++) {
+			histogram.record(SLOW);
+		}
+		// the fast calls of the previous window still count
+		assertEquals("Testing p50 of both windows", 2, histogram.getPercentileMillis(50), 0.5);
+
+		Thread.sleep(600);
+		for (int i = 0; i < 100; i++) {
+			histogram.record(SLOW);
+		}
+		assertEquals("Testing fast calls dropped", 200, histogram.getCount());
+		assertEquals("Testing p50 of slow calls", 200, histogram.getPercentileMillis(50), 40);
+	}
+
+	@Test
+	public void testIdleWindowsDropped() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram(50, TimeUnit.MILLISECONDS);
+		histogram.record(SLOW);
+		Thread.sleep(120);
+
+		assertEquals("Testing no count", 0, histogram.getCount());
+		assertTrue("Testing no percentile", histogram.getPercentileMillis(99) == 0);
+	}
+}
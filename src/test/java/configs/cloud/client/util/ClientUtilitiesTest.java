@@ -0,0 +1,83 @@
+package configs.cloud.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import configs.cloud.client.ClientMetrics;
+import configs.cloud.client.Constant;
+import configs.cloud.client.StubConfigServer;
+import configs.cloud.client.transport.HttpTransport;
+import configs.cloud.client.transport.TransportConfig;
+
+public class ClientUtilitiesTest {
+
+	private static final String LISTING_PATH = "/api/configs/2/Dev";
+
+	private StubConfigServer server;
+	private HttpTransport transport;
+
+	@Before
+	public void start() throws Exception {
+		server = new StubConfigServer();
+		server.addConfig("Dev", "a", "dev-a", 1);
+		server.addConfig("Prod", "a", "prod-a", 1);
+		transport = new HttpTransport(new TransportConfig(), new ClientMetrics());
+	}
+
+	@After
+	public void stop() {
+		transport.close();
+		server.close();
+	}
+
+	@Test
+	public void testListingRevalidated() throws Exception {
+		ConfigListing listing = getListing(null);
+		assertEquals("Testing configs", 1, listing.getConfigs().size());
+		assertNotNull("Testing etag", listing.getEtag());
+
+		assertSame("Testing unchanged listing", listing, getListing(listing));
+		assertEquals("Testing not modified", 1, server.getNotModified());
+		assertEquals("Testing downloads", 1, server.getDownloads(LISTING_PATH));
+	}
+
+	@Test
+	public void testChangedListingDownloaded() throws Exception {
+		ConfigListing listing = getListing(null);
+		server.addConfig("Dev", "b", "dev-b", 1);
+
+		ConfigListing changed = getListing(listing);
+		assertNotSame("Testing changed listing", listing, changed);
+		assertEquals("Testing configs", 2, changed.getConfigs().size());
+		assertNotEquals("Testing new etag", listing.getEtag(), changed.getEtag());
+		assertEquals("Testing not modified", 0, server.getNotModified());
+	}
+
+	@Test
+	public void testListingWithoutValidators() throws Exception {
+		getListing(null);
+
+		// nothing to revalidate, e.g. a listing kept before the server sent validators
+		getListing(new ConfigListing(new ArrayList<>(), null, null));
+		assertEquals("Testing unconditional request", 2, server.getDownloads(LISTING_PATH));
+	}
+
+	private ConfigListing getListing(ConfigListing previous) throws Exception {
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put(Constant.DATASETID, "2");
+		parameters.put(Constant.ENV_SHORTNAME, "Dev");
+		return ClientUtilities.getConfigListingCall(transport, parameters, server.getUrl(),
+				Constant.GET_ALL_CONFIGS_FOR_ENV, "key", previous);
+	}
+}
@@ -0,0 +1,144 @@
+package configs.cloud.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import configs.cloud.client.ClientMetrics;
+import configs.cloud.client.exceptions.DeadlineExceededException;
+import configs.cloud.client.transport.Deadline;
+
+public class SingleFlightTest {
+
+	private final ClientMetrics metrics = new ClientMetrics();
+	private final SingleFlight<String, String> flights = new SingleFlight<>(metrics);
+
+	@Test
+	public void testConcurrentLoadsCoalesced() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> load(() -> flights.execute("k", () -> {
+			loads.incrementAndGet();
+			loading.countDown();
+			release.await();
+			return "v";
+		})));
+		assertTrue("Testing load started", loading.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<String> waiter = CompletableFuture.supplyAsync(() -> load(() -> flights.execute("k", () -> {
+			loads.incrementAndGet();
+			return "other";
+		})));
+		waitForCoalesced(1);
+		release.countDown();
+
+		assertEquals("Testing leader value", "v", leader.get(5, TimeUnit.SECONDS));
+		assertEquals("Testing shared value", "v", waiter.get(5, TimeUnit.SECONDS));
+		assertEquals("Testing single load", 1, loads.get());
+	}
+
+	@Test
+	public void testLeaderDeadlineNotShared() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> load(() ->
+				Deadline.after(100, TimeUnit.MILLISECONDS).call(() -> flights.execute("k", () -> {
+					loading.countDown();
+					Thread.sleep(200);
+					throw new DeadlineExceededException("Deadline exceeded");
+				}))));
+		assertTrue("Testing load started", loading.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<String> waiter = CompletableFuture.supplyAsync(() -> load(() -> flights.execute("k", () -> "v")));
+		waitForCoalesced(1);
+
+		assertEquals("Testing waiter loading again", "v", waiter.get(5, TimeUnit.SECONDS));
+		try {
+			leader.get(5, TimeUnit.SECONDS);
+			fail("Testing leader past its deadline");
+		} catch (ExecutionException e) {
+			assertTrue("Testing leader failure", e.getCause().getCause() instanceof DeadlineExceededException);
+		}
+	}
+
+	@Test
+	public void testLeaderErrorReleasesWaiters() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> load(() -> flights.execute("k", () -> {
+			loading.countDown();
+			release.await();
+			throw new AssertionError("loader error");
+		})));
+		assertTrue("Testing load started", loading.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<String> waiter = CompletableFuture.supplyAsync(() -> load(() -> flights.execute("k", () -> "v")));
+		waitForCoalesced(1);
+		release.countDown();
+
+		try {
+			waiter.get(5, TimeUnit.SECONDS);
+			fail("Testing waiter sharing the error");
+		} catch (ExecutionException e) {
+			// expected, without waiting for the timeout
+		}
+		try {
+			leader.get(5, TimeUnit.SECONDS);
+			fail("Testing leader error");
+		} catch (ExecutionException e) {
+			assertTrue("Testing leader error", e.getCause() instanceof AssertionError);
+		}
+	}
+
+	@Test
+	public void testAwaitLoadInFlight() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		AtomicInteger loaded = new AtomicInteger();
+
+		flights.await("k");
+
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> load(() -> flights.execute("k", () -> {
+			loading.countDown();
+			Thread.sleep(200);
+			loaded.incrementAndGet();
+			return "v";
+		})));
+		assertTrue("Testing load started", loading.await(5, TimeUnit.SECONDS));
+
+		flights.await("k");
+		assertEquals("Testing load over", 1, loaded.get());
+		assertEquals("Testing leader value", "v", leader.get(5, TimeUnit.SECONDS));
+		assertEquals("Testing no coalesced request", 0, metrics.getCoalescedRequests());
+	}
+
+	private void waitForCoalesced(long count) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while (metrics.getCoalescedRequests() < count && System.currentTimeMillis() < end) {
+			Thread.sleep(5);
+		}
+		// let the waiter block on the flight
+		Thread.sleep(20);
+	}
+
+	private static <T> T load(Callable<T> callable) {
+		try {
+			return callable.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
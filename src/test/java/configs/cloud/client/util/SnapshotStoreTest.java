@@ -0,0 +1,109 @@
+package configs.cloud.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import configs.cloud.client.entity.Config;
+import configs.cloud.client.entity.Env;
+
+public class SnapshotStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+	private SnapshotStore store;
+
+	@Before
+	public void create() throws Exception {
+		directory = folder.newFolder("snapshots");
+		store = new SnapshotStore(directory);
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		store.save(2, "Dev", new ConfigListing(Arrays.asList(config("a"), config("b")), "\"e1\"", null));
+		store.save(2, "Dev", new ConfigListing(Arrays.asList(config("c")), "\"e2\"", null));
+
+		List<SnapshotStore.Snapshot> snapshots = store.load();
+		assertEquals("Testing snapshots", 1, snapshots.size());
+		SnapshotStore.Snapshot snapshot = snapshots.get(0);
+		assertEquals("Testing dataset", Integer.valueOf(2), snapshot.getDatasetId());
+		assertEquals("Testing environment", "Dev", snapshot.getEnvsname());
+		assertEquals("Testing etag", "\"e2\"", snapshot.getListing().getEtag());
+		assertNull("Testing last modified", snapshot.getListing().getLastModified());
+		assertEquals("Testing configs", "c", snapshot.getListing().getConfigs().get(0).getKey());
+		assertEquals("Testing no temporary file left", 1, directory.list().length);
+
+		if (Files.getFileStore(directory.toPath()).supportsFileAttributeView("posix")) {
+			assertEquals("Testing owner only", "rw-------", PosixFilePermissions
+					.toString(Files.getPosixFilePermissions(new File(directory, directory.list()[0]).toPath())));
+		}
+	}
+
+	@Test
+	public void testCorruptedSnapshotIgnored() throws Exception {
+		store.save(2, "Dev", new ConfigListing(Arrays.asList(config("a")), "\"e1\"", null));
+		store.save(2, null, new ConfigListing(Arrays.asList(config("a")), "\"e1\"", null));
+
+		try (RandomAccessFile file = new RandomAccessFile(new File(directory, "dataset-2-Dev.snapshot"), "rw")) {
+			file.seek(file.length() - 2);
+			int value = file.read();
+			file.seek(file.length() - 2);
+			file.write(value ^ 1);
+		}
+
+		List<SnapshotStore.Snapshot> snapshots = store.load();
+		assertEquals("Testing valid snapshot only", 1, snapshots.size());
+		assertNull("Testing dataset snapshot", snapshots.get(0).getEnvsname());
+	}
+
+	@Test
+	public void testTruncatedSnapshotIgnored() throws Exception {
+		store.save(2, "Dev", new ConfigListing(Arrays.asList(config("a"), config("b")), "\"e1\"", null));
+		File file = new File(directory, "dataset-2-Dev.snapshot");
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() / 2);
+		}
+		assertTrue("Testing truncated body", store.load().isEmpty());
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(10);
+		}
+		assertTrue("Testing truncated header", store.load().isEmpty());
+	}
+
+	@Test
+	public void testDelete() throws Exception {
+		store.save(2, "Dev", new ConfigListing(Arrays.asList(config("a")), "\"e1\"", null));
+		store.delete(2, "Dev");
+		store.delete(2, "Prod");
+
+		assertTrue("Testing deleted snapshot", store.load().isEmpty());
+		assertEquals("Testing no file left", 0, directory.list().length);
+	}
+
+	private static Config config(String key) {
+		Env env = new Env();
+		env.setSname("Dev");
+		Config config = new Config();
+		config.setEnv(env);
+		config.setKey(key);
+		config.setValue(key);
+		return config;
+	}
+}
@@ -0,0 +1,115 @@
+package configs.cloud.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TinyLfuCacheTest {
+
+	@Test
+	public void testFrequentEntriesSurviveScan() {
+		AtomicInteger evicted = new AtomicInteger();
+		TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, (key, value) -> evicted.incrementAndGet());
+
+		for (int i = 0; i < 50; i++) {
+			cache.put("hot." + i, "v", 0);
+		}
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 50; i++) {
+				cache.get("hot." + i);
+			}
+		}
+
+		// one-off lookups, each missed then loaded
+		for (int i = 0; i < 10000; i++) {
+			if (cache.get("scan." + i) == null) {
+				cache.put("scan." + i, "v", 0);
+			}
+		}
+
+		int hot = 0;
+		for (int i = 0; i < 50; i++) {
+			if (cache.get("hot." + i) != null) {
+				hot++;
+			}
+		}
+		assertTrue("Testing bounded size : " + cache.size(), cache.size() <= 100);
+		assertTrue("Testing frequent entries kept : " + hot, hot >= 45);
+		assertEquals("Testing removal listener", 50 + 10000 - cache.size(), evicted.get());
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, TimeUnit.MILLISECONDS.toNanos(300), null);
+		cache.put("ttl", "v", TimeUnit.MILLISECONDS.toNanos(200));
+		cache.put("idle", "v", 0);
+		cache.put("read", "v", 0);
+
+		for (int i = 0; i < 4; i++) {
+			Thread.sleep(100);
+			cache.get("read");
+		}
+		assertNull("Testing time to live", cache.get("ttl"));
+		assertNull("Testing idle time", cache.get("idle"));
+		assertEquals("Testing entry read within its idle time", "v", cache.get("read"));
+		assertEquals("Testing values", 1, cache.values().size());
+	}
+
+	@Test
+	public void testExpiredReadNotBlocked() throws Exception {
+		CountDownLatch removing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> removed = new CopyOnWriteArrayList<>();
+		TinyLfuCache<String, String> cache = new TinyLfuCache<>(10, (key, value) -> {
+			removed.add(key);
+			if (key.equals("slow")) {
+				removing.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		cache.put("slow", "v", 0);
+		cache.put("ttl", "v", TimeUnit.MILLISECONDS.toNanos(10));
+		Thread.sleep(20);
+
+		// the listener holds the eviction lock
+		CompletableFuture<Void> remove = CompletableFuture.runAsync(() -> cache.remove("slow"));
+		removing.await();
+		try {
+			assertNull("Testing expired entry", CompletableFuture.supplyAsync(() -> cache.get("ttl")).get(1, TimeUnit.SECONDS));
+			assertEquals("Testing expired entry out of the map", 0, cache.size());
+		} finally {
+			release.countDown();
+		}
+		remove.get(1, TimeUnit.SECONDS);
+
+		cache.put("next", "v", 0);
+		assertEquals("Testing expired entry discarded once", 1, removed.stream().filter("ttl"::equals).count());
+	}
+
+	@Test
+	public void testReplace() {
+		TinyLfuCache<String, String> cache = new TinyLfuCache<>(10, null);
+		String first = new String("a");
+		cache.put("k", first, 0);
+
+		assertTrue("Testing replace", cache.replace("k", first, "b"));
+		assertEquals("Testing replaced value", "b", cache.get("k"));
+		assertFalse("Testing stale replace", cache.replace("k", first, "c"));
+		cache.remove("k");
+		assertNull("Testing removed entry", cache.get("k"));
+	}
+}